@@ -0,0 +1,124 @@
+package dev.kruhlmann.imgfloat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetPatch;
+import dev.kruhlmann.imgfloat.service.ChannelEventLog;
+import dev.kruhlmann.imgfloat.service.ChannelEventPublisher;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Measures publishing one asset patch to a channel topic with a growing number of subscribers, through the
+ * broker and STOMP encoding of every outbound frame. Compares converting the event through the messaging
+ * template with publishing a frame that was serialized once. Run with the GC profiler to compare the allocation
+ * per broadcast.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+
+    private static final String CHANNEL = "caster";
+
+    @Param({ "1", "4", "16", "64" })
+    public int subscribers;
+
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate template;
+    private ChannelEventPublisher publisher;
+    private AssetEvent event;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        StompEncoder encoder = new StompEncoder();
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        outbound.subscribe((message) -> this.blackhole.consume(encode(encoder, message)));
+        broker = new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            broker.handleMessage(subscribe("session-" + i));
+        }
+
+        MappingJackson2MessageConverter jsonConverter = new MappingJackson2MessageConverter();
+        jsonConverter.setObjectMapper(objectMapper);
+        template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(
+            new CompositeMessageConverter(
+                List.of(new StringMessageConverter(), new ByteArrayMessageConverter(), jsonConverter)
+            )
+        );
+        publisher = new ChannelEventPublisher(template, objectMapper, new ChannelEventLog(128, "30m"));
+        event = AssetEvent.updated(
+            CHANNEL,
+            new AssetPatch("asset", 120.5, 48.0, 320.0, 180.0, 15.0, null, null, null, null, null, null, null, null, null)
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public void convertPerBroadcast() {
+        template.convertAndSend("/topic/channel/" + CHANNEL, event);
+    }
+
+    @Benchmark
+    public void publishSerializedFrame() {
+        publisher.publish(CHANNEL, event);
+    }
+
+    private static byte[] encode(StompEncoder encoder, Message<?> message) {
+        // Mirrors the per-session work of the STOMP sub-protocol handler
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        accessor.updateStompCommandAsServerMessage();
+        accessor.setMessageId(accessor.getSessionId());
+        return encoder.encode(accessor.getMessageHeaders(), (byte[]) message.getPayload());
+    }
+
+    private static Message<byte[]> subscribe(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/channel/" + CHANNEL);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
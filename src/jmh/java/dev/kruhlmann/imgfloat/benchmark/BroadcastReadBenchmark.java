@@ -0,0 +1,137 @@
+package dev.kruhlmann.imgfloat.benchmark;
+
+import dev.kruhlmann.imgfloat.config.SecurityConfig;
+import dev.kruhlmann.imgfloat.config.SessionConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Filter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+/**
+ * Measures the filter overhead of an anonymous broadcast overlay read, the highest-volume request the server
+ * answers. The same canvas request runs through the session filter and either the application's regular
+ * security chain, which resolves a security context and issues a CSRF token and cookie, or the full filter chain
+ * proxy, which hands broadcast reads to the stateless chain. The controller returns a constant so the
+ * difference is the per-request cost of the filters. Run with the GC profiler to compare the allocation per
+ * request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastReadBenchmark {
+
+    @Param({ "session", "stateless" })
+    public String chain;
+
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Without a Spring Boot application the root logger stays at DEBUG, which would dominate the measurement
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(BroadcastReadConfig.class, SecurityConfig.class, SessionConfig.class);
+        context.refresh();
+
+        Filter securityFilter = "session".equals(chain)
+            ? new FilterChainProxy(context.getBean("securityFilterChain", SecurityFilterChain.class))
+            : context.getBean("springSecurityFilterChain", Filter.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+            .addFilters(context.getBean("springSessionRepositoryFilter", Filter.class), securityFilter)
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult readCanvas() throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.get("/api/channels/caster/canvas")).andReturn();
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class BroadcastReadConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ClientRegistrationRepository clientRegistrationRepository() {
+            return new InMemoryClientRegistrationRepository(
+                ClientRegistration.withRegistrationId("twitch")
+                    .clientId("benchmark")
+                    .clientSecret("benchmark")
+                    .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                    .redirectUri("{baseUrl}/login/oauth2/code/twitch")
+                    .authorizationUri("https://id.twitch.tv/oauth2/authorize")
+                    .tokenUri("https://id.twitch.tv/oauth2/token")
+                    .build()
+            );
+        }
+
+        @Bean
+        OAuth2AuthorizedClientRepository authorizedClientRepository() {
+            return new HttpSessionOAuth2AuthorizedClientRepository();
+        }
+
+        @Bean
+        CanvasController canvasController() {
+            return new CanvasController();
+        }
+    }
+
+    @RestController
+    static class CanvasController {
+
+        @GetMapping("/api/channels/{broadcaster}/canvas")
+        Map<String, Object> canvas(@PathVariable("broadcaster") String broadcaster) {
+            return Map.of("width", 1920, "height", 1080);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package dev.kruhlmann.imgfloat.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.jcodec.api.awt.AWTSequenceEncoder;
+
+/**
+ * Deterministic media corpus for the benchmarks. Fixtures are generated from a fixed seed rather than checked
+ * in, so every run measures the same content without keeping binaries in the repository.
+ */
+public final class MediaFixtures {
+
+    private static final long SEED = 0x1f1f_a0a7L;
+
+    private MediaFixtures() {}
+
+    public static Fixture create(String name, Path directory) throws IOException {
+        return switch (name) {
+            case "png-small" -> image(directory.resolve("small.png"), "png", "image/png", 112, 112);
+            case "png-large" -> image(directory.resolve("large.png"), "png", "image/png", 1920, 1080);
+            case "jpeg" -> image(directory.resolve("photo.jpg"), "jpeg", "image/jpeg", 1280, 720);
+            case "gif-8-frames" -> gif(directory.resolve("emote.gif"), 112, 112, 8);
+            case "gif-60-frames" -> gif(directory.resolve("long.gif"), 320, 240, 60);
+            case "mp4-short" -> mp4(directory.resolve("clip.mp4"), 640, 360, 50);
+            default -> throw new IllegalArgumentException("Unknown fixture " + name);
+        };
+    }
+
+    private static Fixture image(Path file, String format, String mediaType, int width, int height)
+        throws IOException {
+        ImageIO.write(frame(width, height, 0, format.equals("png")), format, file.toFile());
+        return new Fixture(file, mediaType);
+    }
+
+    private static Fixture gif(Path file, int width, int height, int frames) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            for (int i = 0; i < frames; i++) {
+                BufferedImage frame = frame(width, height, i, false);
+                writer.writeToSequence(new IIOImage(frame, null, gifFrameMetadata(writer, frame, 2 + (i % 4))), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return new Fixture(file, "image/gif");
+    }
+
+    private static Fixture mp4(Path file, int width, int height, int frames) throws IOException {
+        AWTSequenceEncoder encoder = AWTSequenceEncoder.createSequenceEncoder(file.toFile(), 25);
+        for (int i = 0; i < frames; i++) {
+            encoder.encodeImage(frame(width, height, i, false));
+        }
+        encoder.finish();
+        return new Fixture(file, "video/mp4");
+    }
+
+    private static BufferedImage frame(int width, int height, int index, boolean alpha) {
+        BufferedImage image = new BufferedImage(
+            width,
+            height,
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB
+        );
+        Graphics2D graphics = image.createGraphics();
+        try {
+            float shift = (index * 7) % width;
+            graphics.setPaint(new GradientPaint(shift, 0, Color.MAGENTA, width - shift, height, Color.CYAN));
+            graphics.fillRect(0, 0, width, height);
+            Random random = new Random(SEED + index);
+            for (int i = 0; i < 40; i++) {
+                graphics.setColor(new Color(random.nextInt(0xffffff)));
+                graphics.fillOval(random.nextInt(width), random.nextInt(height), width / 8 + 1, height / 8 + 1);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static IIOMetadata gifFrameMetadata(ImageWriter writer, BufferedImage frame, int delayInHundredths)
+        throws IOException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delayInHundredths));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+
+    public static void deleteRecursively(Path directory) throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public record Fixture(Path file, String mediaType) {}
+}
@@ -0,0 +1,67 @@
+package dev.kruhlmann.imgfloat.benchmark;
+
+import dev.kruhlmann.imgfloat.service.media.GifTranscoder;
+import dev.kruhlmann.imgfloat.service.media.MediaOptimizationService;
+import dev.kruhlmann.imgfloat.service.media.MediaPreviewService;
+import dev.kruhlmann.imgfloat.service.media.OptimizedAsset;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MediaOptimizationService#optimizeAsset} for each fixture: PNG recompression for the still
+ * images, GIF to MP4 transcoding for the animations and dimension probing plus preview extraction for video.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediaOptimizationBenchmark {
+
+    @Param({ "png-small", "png-large", "jpeg", "gif-8-frames", "gif-60-frames", "mp4-short" })
+    public String fixture;
+
+    private Path directory;
+    private MediaFixtures.Fixture media;
+    private GifTranscoder gifTranscoder;
+    private MediaOptimizationService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("imgfloat-benchmark");
+        media = MediaFixtures.create(fixture, directory);
+        gifTranscoder = new GifTranscoder(0);
+        service = new MediaOptimizationService(new MediaPreviewService(), gifTranscoder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        gifTranscoder.shutdown();
+        MediaFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public OptimizedAsset optimizeAsset() throws IOException {
+        OptimizedAsset optimized = service.optimizeAsset(media.file(), media.mediaType());
+        if (optimized != null && !optimized.file().equals(media.file())) {
+            Files.deleteIfExists(optimized.file());
+        }
+        return optimized;
+    }
+}
@@ -0,0 +1,53 @@
+package dev.kruhlmann.imgfloat.benchmark;
+
+import dev.kruhlmann.imgfloat.service.media.MediaPreviewService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures grabbing and encoding the first frame of a short video, the preview path taken for every video
+ * upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediaPreviewBenchmark {
+
+    private Path directory;
+    private MediaFixtures.Fixture video;
+    private MediaPreviewService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("imgfloat-benchmark");
+        video = MediaFixtures.create("mp4-short", directory);
+        service = new MediaPreviewService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MediaFixtures.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public byte[] extractVideoPreview() {
+        return service.extractVideoPreview(video.file(), video.mediaType());
+    }
+}
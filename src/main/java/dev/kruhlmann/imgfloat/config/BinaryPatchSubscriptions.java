@@ -0,0 +1,206 @@
+package dev.kruhlmann.imgfloat.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetPatch;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+/**
+ * Delivers asset patches in a compact binary layout to subscriptions that ask for it with the
+ * {@value #FORMAT_HEADER}{@code : }{@value #BINARY_FORMAT} SUBSCRIBE header. All other events, and all events on
+ * other subscriptions, stay JSON.
+ *
+ * <p>A frame is a kind byte ({@code 1} for a patch), the event's sequence number as a varint ({@code 0} when it
+ * has none), the asset reference, a varint bit mask of the patch fields
+ * that are present and their values in {@link AssetPatch} order: numbers as big-endian float32, integers as
+ * zigzag varints and booleans as one byte. Asset ids are sent once per subscription: the reference is a varint
+ * of {@code index << 1}, with the low bit set and the length-prefixed UTF-8 id following when the index is new.
+ * Frames are base64 encoded because SockJS only carries text.
+ *
+ * <p>Frames are encoded as they are delivered, after any slow consumer policy ran, so a dropped or merged patch
+ * can never carry the only definition of an asset id.
+ */
+class BinaryPatchSubscriptions implements ChannelInterceptor {
+
+    static final String FORMAT_HEADER = "imgfloat-format";
+    static final String BINARY_FORMAT = "binary";
+    static final MimeType CONTENT_TYPE = new MimeType("application", "vnd.imgfloat.patch");
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryPatchSubscriptions.class);
+    private static final int PATCH_FRAME = 1;
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Map<String, AssetIds>> sessions = new ConcurrentHashMap<>();
+
+    BinaryPatchSubscriptions(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String sessionId = accessor.getSessionId();
+        if (sessionId == null || accessor.getMessageType() == null) {
+            return message;
+        }
+        switch (accessor.getMessageType()) {
+            case SUBSCRIBE -> {
+                if (BINARY_FORMAT.equals(accessor.getFirstNativeHeader(FORMAT_HEADER))) {
+                    sessions
+                        .computeIfAbsent(sessionId, (id) -> new ConcurrentHashMap<>())
+                        .put(accessor.getSubscriptionId(), new AssetIds());
+                }
+            }
+            case UNSUBSCRIBE -> sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+                subscriptions.remove(accessor.getSubscriptionId());
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+            case DISCONNECT -> sessions.remove(sessionId);
+            default -> {}
+        }
+        return message;
+    }
+
+    /**
+     * @return the frame to deliver to the subscriber of {@code message}, which is {@code message} itself unless
+     *     it is a patch for a binary subscription
+     */
+    Message<?> toClientFrame(Message<?> message) {
+        if (message.getHeaders().get(AssetEvent.COALESCE_KEY_HEADER) == null) {
+            return message;
+        }
+        AssetIds assetIds = subscription(message);
+        if (assetIds == null || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        try {
+            JsonNode event = objectMapper.readTree(json);
+            JsonNode patch = event.get("patch");
+            if (patch == null) {
+                return message;
+            }
+            long seq = event.path("seq").asLong(0);
+            byte[] binary = encode(seq, objectMapper.treeToValue(patch, AssetPatch.class), assetIds);
+            byte[] frame = Base64.getEncoder().encode(binary);
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.copyHeaders(message.getHeaders());
+            accessor.setContentType(CONTENT_TYPE);
+            return MessageBuilder.createMessage(frame, accessor.getMessageHeaders());
+        } catch (IOException e) {
+            LOG.debug("Unable to encode patch as binary, sending JSON", e);
+            return message;
+        }
+    }
+
+    private AssetIds subscription(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        if (sessionId == null || subscriptionId == null) {
+            return null;
+        }
+        Map<String, AssetIds> subscriptions = sessions.get(sessionId);
+        return subscriptions == null ? null : subscriptions.get(subscriptionId);
+    }
+
+    static byte[] encode(long seq, AssetPatch patch, AssetIds assetIds) {
+        FrameWriter out = new FrameWriter();
+        out.write(PATCH_FRAME);
+        out.writeVarint(seq);
+        assetIds.writeReference(out, patch.id());
+        Object[] fields = {
+            patch.x(),
+            patch.y(),
+            patch.width(),
+            patch.height(),
+            patch.rotation(),
+            patch.speed(),
+            patch.muted(),
+            patch.zIndex(),
+            patch.hidden(),
+            patch.audioLoop(),
+            patch.audioDelayMillis(),
+            patch.audioSpeed(),
+            patch.audioPitch(),
+            patch.audioVolume(),
+        };
+        int mask = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                mask |= 1 << i;
+            }
+        }
+        out.writeVarint(mask);
+        for (Object field : fields) {
+            if (field instanceof Double number) {
+                out.writeFloat(number.floatValue());
+            } else if (field instanceof Integer number) {
+                out.writeVarint(Integer.toUnsignedLong((number << 1) ^ (number >> 31)));
+            } else if (field instanceof Boolean flag) {
+                out.write(flag ? 1 : 0);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Asset ids already sent on one subscription. Deliveries to a subscription run in order on one thread at a
+     * time, the lock only guards against a subscription being used from two channels.
+     */
+    static final class AssetIds {
+
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        synchronized void writeReference(FrameWriter out, String assetId) {
+            Integer known = indices.get(assetId);
+            if (known != null) {
+                out.writeVarint(known << 1);
+                return;
+            }
+            int index = indices.size();
+            indices.put(assetId, index);
+            byte[] id = assetId.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint((index << 1) | 1);
+            out.writeVarint(id.length);
+            out.write(id, 0, id.length);
+        }
+    }
+
+    static final class FrameWriter extends ByteArrayOutputStream {
+
+        FrameWriter() {
+            super(32);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeFloat(float value) {
+            int bits = Float.floatToIntBits(value);
+            write(bits >>> 24);
+            write(bits >>> 16);
+            write(bits >>> 8);
+            write(bits);
+        }
+    }
+}
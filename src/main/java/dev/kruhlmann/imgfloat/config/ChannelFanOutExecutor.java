@@ -0,0 +1,349 @@
+package dev.kruhlmann.imgfloat.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Executor for the client outbound channel that gives every {@code /topic/channel/{channel}} its own delivery
+ * queue. Each queue is drained in order by at most one worker at a time, so subscribers that stop reading only
+ * hold up their own channel while other channels keep being served by the remaining workers. When a channel's
+ * queue is full the configured {@link SlowConsumerPolicy} decides what happens to the next message. Broadcasts
+ * are passed through {@code clientFrames} as they are delivered, which may re-encode them for the subscriber.
+ * Frames that are not channel broadcasts, such as receipts and heartbeats, go straight to the worker pool.
+ */
+class ChannelFanOutExecutor implements TaskExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelFanOutExecutor.class);
+    private static final String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+    private static final int DELIVERIES_PER_TURN = 32;
+
+    enum SlowConsumerPolicy {
+        /** Discard the message that does not fit. */
+        DROP,
+        /**
+         * Merge the message into a queued patch for the same subscriber and asset. Messages that cannot be merged,
+         * such as asset creation and removal, are queued past the capacity because dropping them would leave the
+         * subscriber's canvas out of step.
+         */
+        COALESCE,
+        /** Discard everything queued for the subscriber with the most backlog and close its session. */
+        DISCONNECT;
+
+        static SlowConsumerPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final ThreadPoolExecutor workers;
+    private final int queueCapacity;
+    private final SlowConsumerPolicy policy;
+    private final ObjectMapper objectMapper;
+    private final UnaryOperator<Message<?>> clientFrames;
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter overflow;
+
+    ChannelFanOutExecutor(
+        int threads,
+        int queueCapacity,
+        SlowConsumerPolicy policy,
+        ObjectMapper objectMapper,
+        UnaryOperator<Message<?>> clientFrames,
+        MeterRegistry meterRegistry
+    ) {
+        this.workers = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new CustomizableThreadFactory("clientOutboundChannel-")
+        );
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.objectMapper = objectMapper;
+        this.clientFrames = clientFrames;
+        new ExecutorServiceMetrics(workers, "clientOutboundChannelExecutor", Tags.empty()).bindTo(meterRegistry);
+        Gauge.builder("imgfloat.websocket.fanout.queued", queued, AtomicInteger::get)
+            .description("Channel broadcasts waiting in per-channel delivery queues")
+            .register(meterRegistry);
+        Gauge.builder("imgfloat.websocket.fanout.channels", shards, Map::size)
+            .description("Channels with broadcasts waiting for delivery")
+            .register(meterRegistry);
+        this.overflow = Counter.builder("imgfloat.websocket.fanout.overflow")
+            .description("Broadcasts handled by the slow consumer policy because a channel queue was full")
+            .tag("policy", policy.name().toLowerCase(Locale.ROOT))
+            .register(meterRegistry);
+        LOG.info(
+            "Delivering channel broadcasts on {} threads with {} queued per channel and {} policy",
+            threads,
+            queueCapacity,
+            policy.name().toLowerCase(Locale.ROOT)
+        );
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task instanceof MessageHandlingRunnable delivery) {
+            String channel = channelOf(delivery.getMessage());
+            if (channel != null) {
+                enqueue(channel, new Delivery(delivery));
+                return;
+            }
+        }
+        workers.execute(task);
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void enqueue(String channel, Delivery delivery) {
+        while (true) {
+            Shard shard = shards.computeIfAbsent(channel, Shard::new);
+            synchronized (shard) {
+                if (shard.retired) {
+                    continue;
+                }
+                if (shard.queue.size() >= queueCapacity && !handleOverflow(shard, delivery)) {
+                    return;
+                }
+                shard.queue.addLast(delivery);
+                queued.incrementAndGet();
+                if (!shard.scheduled) {
+                    shard.scheduled = true;
+                    workers.execute(() -> drain(shard));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return whether the delivery should still be queued
+     */
+    private boolean handleOverflow(Shard shard, Delivery delivery) {
+        overflow.increment();
+        return switch (policy) {
+            case DROP -> false;
+            case COALESCE -> !coalesce(shard, delivery);
+            case DISCONNECT -> {
+                String slowest = disconnectSlowestSession(shard);
+                yield !Objects.equals(slowest, sessionOf(delivery.message()));
+            }
+        };
+    }
+
+    /**
+     * @return whether the delivery was merged into a queued one
+     */
+    private boolean coalesce(Shard shard, Delivery delivery) {
+        String key = coalesceKey(delivery.message());
+        String session = sessionOf(delivery.message());
+        if (key == null) {
+            return false;
+        }
+        Iterator<Delivery> queuedDeliveries = shard.queue.descendingIterator();
+        while (queuedDeliveries.hasNext()) {
+            Delivery candidate = queuedDeliveries.next();
+            Message<?> queuedMessage = candidate.message();
+            if (key.equals(coalesceKey(queuedMessage)) && Objects.equals(session, sessionOf(queuedMessage))) {
+                candidate.replacement = merge(candidate.message(), delivery.message());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Message<?> merge(Message<?> older, Message<?> newer) {
+        if (!(older.getPayload() instanceof byte[] olderBytes) || !(newer.getPayload() instanceof byte[] newerBytes)) {
+            return newer;
+        }
+        try {
+            JsonNode merged = objectMapper.readTree(olderBytes);
+            JsonNode update = objectMapper.readTree(newerBytes);
+            if (!(merged instanceof ObjectNode target) || !(update instanceof ObjectNode source)) {
+                return newer;
+            }
+            deepMerge(target, source);
+            return MessageBuilder.createMessage(objectMapper.writeValueAsBytes(target), newer.getHeaders());
+        } catch (IOException e) {
+            LOG.debug("Unable to merge queued broadcasts, keeping the latest", e);
+            return newer;
+        }
+    }
+
+    private static void deepMerge(ObjectNode target, ObjectNode source) {
+        source
+            .fields()
+            .forEachRemaining((field) -> {
+                JsonNode existing = target.get(field.getKey());
+                if (existing instanceof ObjectNode existingObject && field.getValue() instanceof ObjectNode update) {
+                    deepMerge(existingObject, update);
+                } else {
+                    target.set(field.getKey(), field.getValue());
+                }
+            });
+    }
+
+    private String disconnectSlowestSession(Shard shard) {
+        Map<String, Integer> backlog = new HashMap<>();
+        for (Delivery queuedDelivery : shard.queue) {
+            String session = sessionOf(queuedDelivery.message());
+            if (session != null) {
+                backlog.merge(session, 1, Integer::sum);
+            }
+        }
+        String slowest = backlog
+            .entrySet()
+            .stream()
+            .max(Map.Entry.comparingByValue())
+            .map(Map.Entry::getKey)
+            .orElse(null);
+        if (slowest == null) {
+            return null;
+        }
+        MessageHandler handler = null;
+        Iterator<Delivery> deliveries = shard.queue.iterator();
+        while (deliveries.hasNext()) {
+            Delivery candidate = deliveries.next();
+            if (slowest.equals(sessionOf(candidate.message()))) {
+                handler = candidate.task().getMessageHandler();
+                deliveries.remove();
+                queued.decrementAndGet();
+            }
+        }
+        MessageHandler sessionHandler = handler;
+        LOG.warn("Disconnecting WebSocket session {} that is not keeping up with broadcasts", slowest);
+        workers.execute(() -> sendError(sessionHandler, slowest));
+        return slowest;
+    }
+
+    private static void sendError(MessageHandler handler, String sessionId) {
+        // The STOMP handler closes the session after delivering an ERROR frame
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
+        accessor.setMessage("Too many undelivered messages");
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        try {
+            handler.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        } catch (MessagingException e) {
+            LOG.debug("Unable to notify slow WebSocket session {}", sessionId, e);
+        }
+    }
+
+    private void drain(Shard shard) {
+        for (int i = 0; i < DELIVERIES_PER_TURN; i++) {
+            Delivery next;
+            synchronized (shard) {
+                next = shard.queue.pollFirst();
+                if (next == null) {
+                    shard.scheduled = false;
+                    shard.retired = true;
+                    shards.remove(shard.channel, shard);
+                    return;
+                }
+            }
+            queued.decrementAndGet();
+            try {
+                next.run(clientFrames);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to deliver broadcast on {}", shard.channel, e);
+            }
+        }
+        // Yield the worker so one busy channel cannot monopolise it
+        workers.execute(() -> drain(shard));
+    }
+
+    static String channelOf(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return null;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith(CHANNEL_TOPIC_PREFIX)) {
+            return null;
+        }
+        return destination.substring(CHANNEL_TOPIC_PREFIX.length());
+    }
+
+    private static String sessionOf(Message<?> message) {
+        return SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    }
+
+    private static String coalesceKey(Message<?> message) {
+        return message.getHeaders().get(AssetEvent.COALESCE_KEY_HEADER, String.class);
+    }
+
+    private static final class Shard {
+
+        private final String channel;
+        private final Deque<Delivery> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+
+        private Shard(String channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static final class Delivery {
+
+        private final MessageHandlingRunnable task;
+        private Message<?> replacement;
+
+        private Delivery(MessageHandlingRunnable task) {
+            this.task = task;
+        }
+
+        MessageHandlingRunnable task() {
+            return task;
+        }
+
+        Message<?> message() {
+            return replacement != null ? replacement : task.getMessage();
+        }
+
+        void run(UnaryOperator<Message<?>> clientFrames) {
+            Message<?> frame = clientFrames.apply(message());
+            if (frame == task.getMessage()) {
+                task.run();
+            } else {
+                task.getMessageHandler().handleMessage(frame);
+            }
+        }
+    }
+}
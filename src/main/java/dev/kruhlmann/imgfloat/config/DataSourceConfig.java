@@ -0,0 +1,61 @@
+package dev.kruhlmann.imgfloat.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Splits database access between a single writer connection and a pool of read-only connections. SQLite in WAL
+ * mode lets readers run alongside the writer, so read-only transactions, which includes every repository read
+ * outside of a write transaction, no longer queue behind writes and session updates. The connection is picked
+ * when a transaction first touches the database, once it is known to be read-only.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writerDataSource(DataSourceProperties properties) {
+        HikariDataSource writer = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        writer.setPoolName("writer");
+        return writer;
+    }
+
+    @Bean
+    public HikariDataSource readerDataSource(
+        DataSourceProperties properties,
+        @Value("${IMGFLOAT_DB_READER_POOL_SIZE:0}") int poolSize
+    ) {
+        int readers = poolSize > 0 ? poolSize : Math.max(2, Runtime.getRuntime().availableProcessors());
+        HikariDataSource reader = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        reader.setPoolName("reader");
+        reader.setMaximumPoolSize(readers);
+        reader.setMinimumIdle(1);
+        // Fail loudly if a write is ever routed to a reader instead of competing with the writer for the lock
+        reader.setConnectionInitSql("PRAGMA query_only = true");
+        LOG.info("Using {} read-only database connections", readers);
+        return reader;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+        @Qualifier("writerDataSource") DataSource writer,
+        @Qualifier("readerDataSource") DataSource reader
+    ) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writer);
+        dataSource.setReadOnlyDataSource(reader);
+        return dataSource;
+    }
+}
@@ -0,0 +1,143 @@
+package dev.kruhlmann.imgfloat.config;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Diagnostic mode that runs {@code EXPLAIN QUERY PLAN} once for every distinct query Hibernate issues and logs
+ * the filtered queries SQLite answers with a full table scan, so a missing index shows up on a small database
+ * long before it hurts on a large one. Queries without a {@code WHERE} clause read whole tables on purpose and
+ * are not reported.
+ *
+ * <p>Plans are explained on a separate thread once the query is done with the connection. Outside a read-only
+ * transaction the audit is routed to the writer, which holds a single connection that the inspected statement
+ * may still be using.
+ */
+@Component
+public class QueryPlanAudit implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanAudit.class);
+
+    private final boolean enabled;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final Set<String> explained = ConcurrentHashMap.newKeySet();
+    private final List<FullScan> fullScans = new CopyOnWriteArrayList<>();
+    private final ExecutorService explainer;
+
+    public QueryPlanAudit(
+        @Value("${IMGFLOAT_QUERY_PLAN_AUDIT:false}") boolean enabled,
+        ObjectProvider<JdbcTemplate> jdbcTemplate
+    ) {
+        this.enabled = enabled;
+        this.jdbcTemplate = jdbcTemplate;
+        this.explainer = enabled
+            ? Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "query-plan-audit");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+        if (enabled) {
+            logger.info("Auditing query plans for full table scans");
+        }
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        if (enabled) {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+        boolean filtered = statement.contains(" where ");
+        boolean query =
+            statement.startsWith("select") || statement.startsWith("update") || statement.startsWith("delete");
+        if (filtered && query && explained.add(sql)) {
+            explainer.execute(() -> explain(sql));
+        }
+        return sql;
+    }
+
+    /**
+     * @return the full scans found so far, after the plans of all queries issued before the call were explained
+     */
+    public List<FullScan> fullScans() {
+        if (explainer != null) {
+            try {
+                explainer.submit(() -> {}).get(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warn("Timed out waiting for query plans to be explained", e);
+            }
+        }
+        return List.copyOf(fullScans);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (explainer != null) {
+            explainer.shutdownNow();
+        }
+    }
+
+    private void explain(String sql) {
+        try {
+            ConnectionCallback<List<String>> explainPlan = (connection) -> {
+                List<String> details = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+                    int parameters = statement.getParameterMetaData().getParameterCount();
+                    for (int i = 1; i <= parameters; i++) {
+                        statement.setNull(i, Types.NULL);
+                    }
+                    try (ResultSet plan = statement.executeQuery()) {
+                        while (plan.next()) {
+                            String detail = plan.getString("detail");
+                            if (detail.startsWith("SCAN ") && !detail.startsWith("SCAN CONSTANT ROW")) {
+                                details.add(detail);
+                            }
+                        }
+                    }
+                }
+                return details;
+            };
+            List<String> scans = jdbcTemplate.getObject().execute(explainPlan);
+            if (scans != null && !scans.isEmpty()) {
+                fullScans.add(new FullScan(sql, scans));
+                logger.warn("Full table scan ({}) in query: {}", String.join(", ", scans), sql);
+            }
+        } catch (DataAccessException ex) {
+            logger.debug("Unable to explain query plan for {}", sql, ex);
+        }
+    }
+
+    public record FullScan(String sql, List<String> details) {}
+}
@@ -1,213 +1,220 @@
 package dev.kruhlmann.imgfloat.config;
 
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.ApplicationArguments;
-import org.springframework.boot.ApplicationRunner;
-import org.springframework.dao.DataAccessException;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Brings the database schema up to date before JPA starts. Migrations are applied in version order, each in its
+ * own transaction, and recorded with a checksum in {@code schema_version} so a current database only costs a
+ * single query at startup. Hibernate no longer changes the schema, so every schema change needs a migration
+ * here.
+ *
+ * <p>Migrations that copy data run in chunks that commit together with their position, so an interrupted
+ * backfill continues where it stopped on the next start.
+ */
 @Component
-public class SchemaMigration implements ApplicationRunner {
+@DependsOnDatabaseInitialization
+public class SchemaMigration {
 
     private static final Logger logger = LoggerFactory.getLogger(SchemaMigration.class);
+    private static final int BACKFILL_CHUNK_SIZE = 500;
 
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Migration> migrations;
 
-    public SchemaMigration(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public SchemaMigration(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.migrations = List.of(
+            new Migration(1, "Create tables", CREATE_TABLES, null),
+            new Migration(
+                2,
+                "Add channel canvas columns",
+                List.of("channels.canvas_width REAL 1920", "channels.canvas_height REAL 1080"),
+                this::addChannelCanvasColumns
+            ),
+            new Migration(3, "Split assets into typed tables", ASSET_TYPE_BACKFILL, this::backfillAssetTypes),
+            new Migration(
+                4,
+                "Add content hash columns",
+                List.of("assets.content_hash", "script_asset_attachments.content_hash", "visual_assets.preview_hash"),
+                this::addContentHashColumns
+            ),
+            new Migration(
+                5,
+                "Store authorized client timestamps as epoch millis",
+                List.of(NORMALIZE_TIMESTAMP),
+                this::normalizeAuthorizedClientTimestamps
+            ),
+            new Migration(6, "Add lookup indexes", LOOKUP_INDEXES, null),
+            new Migration(
+                7,
+                "Replace session attributes on insert",
+                List.of(SESSION_ATTRIBUTE_UPSERT_TRIGGER),
+                this::createSessionAttributeUpsertTrigger,
+                2
+            ),
+            new Migration(8, "Drop database session tables", DROP_SESSION_TABLES, null),
+            new Migration(9, "Make system administrator usernames unique", UNIQUE_SYSTEM_ADMINISTRATORS, null)
+        );
     }
 
-    @Override
-    public void run(ApplicationArguments args) {
-        ensureSessionAttributeUpsertTrigger();
-        ensureChannelCanvasColumns();
-        ensureAssetTables();
-        ensureAuthorizedClientTable();
-        normalizeAuthorizedClientTimestamps();
-    }
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute(
+            """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INTEGER PRIMARY KEY,
+                description TEXT NOT NULL,
+                checksum TEXT NOT NULL,
+                applied_at INTEGER,
+                backfill_cursor TEXT
+            )
+            """
+        );
+        Map<Integer, String> applied = new HashMap<>();
+        jdbcTemplate.query("SELECT version, checksum FROM schema_version WHERE applied_at IS NOT NULL", (rs) -> {
+            applied.put(rs.getInt("version"), rs.getString("checksum"));
+        });
 
-    private void ensureSessionAttributeUpsertTrigger() {
-        try {
-            jdbcTemplate.execute(
-                """
-                CREATE TRIGGER IF NOT EXISTS SPRING_SESSION_ATTRIBUTES_UPSERT
-                BEFORE INSERT ON SPRING_SESSION_ATTRIBUTES
-                FOR EACH ROW
-                BEGIN
-                    DELETE FROM SPRING_SESSION_ATTRIBUTES
-                    WHERE SESSION_PRIMARY_ID = NEW.SESSION_PRIMARY_ID
-                      AND ATTRIBUTE_NAME = NEW.ATTRIBUTE_NAME;
-                END;
-                """
+        for (Migration migration : migrations) {
+            String checksum = applied.get(migration.version());
+            if (checksum != null) {
+                if (!checksum.equals(migration.checksum())) {
+                    logger.warn(
+                        "Schema migration {} ({}) changed after it was applied",
+                        migration.version(),
+                        migration.description()
+                    );
+                }
+                continue;
+            }
+            logger.info("Applying schema migration {}: {}", migration.version(), migration.description());
+            jdbcTemplate.update(
+                "INSERT OR IGNORE INTO schema_version (version, description, checksum) VALUES (?, ?, ?)",
+                migration.version(),
+                migration.description(),
+                migration.checksum()
             );
-            logger.info("Ensured SPRING_SESSION_ATTRIBUTES upsert trigger exists");
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to ensure SPRING_SESSION_ATTRIBUTES upsert trigger", ex);
+            if (migration.step() == null) {
+                transactionTemplate.executeWithoutResult((status) -> {
+                    migration.statements().forEach(jdbcTemplate::execute);
+                    markApplied(migration);
+                });
+            } else {
+                migration.step().apply(migration);
+                transactionTemplate.executeWithoutResult((status) -> markApplied(migration));
+            }
         }
     }
 
-    private void ensureChannelCanvasColumns() {
-        List<String> columns;
-        try {
-            columns = jdbcTemplate.query("PRAGMA table_info(channels)", (rs, rowNum) -> rs.getString("name"));
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to inspect channels table for canvas columns", ex);
-            return;
-        }
-
-        if (columns.isEmpty()) {
-            // Table does not exist yet; Hibernate will create it with the correct columns.
-            return;
-        }
+    private void markApplied(Migration migration) {
+        jdbcTemplate.update(
+            "UPDATE schema_version SET checksum = ?, applied_at = ?, backfill_cursor = NULL WHERE version = ?",
+            migration.checksum(),
+            System.currentTimeMillis(),
+            migration.version()
+        );
+    }
 
-        addColumnIfMissing("channels", columns, "canvas_width", "REAL", "1920");
-        addColumnIfMissing("channels", columns, "canvas_height", "REAL", "1080");
+    private void addChannelCanvasColumns(Migration migration) {
+        transactionTemplate.executeWithoutResult((status) -> {
+            List<String> columns = columns("channels");
+            addColumnIfMissing("channels", columns, "canvas_width", "REAL", "1920");
+            addColumnIfMissing("channels", columns, "canvas_height", "REAL", "1080");
+        });
     }
 
-    private void ensureAssetTables() {
-        List<String> columns;
-        try {
-            columns = jdbcTemplate.query("PRAGMA table_info(assets)", (rs, rowNum) -> rs.getString("name"));
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to inspect assets table for asset columns", ex);
+    private void backfillAssetTypes(Migration migration) {
+        List<String> columns = columns("assets");
+        transactionTemplate.executeWithoutResult((status) ->
+            addColumnIfMissing("assets", columns, "asset_type", "TEXT", "'OTHER'")
+        );
+        if (!columns.contains("media_type")) {
+            // Databases created after the split never had the per-type columns on assets
             return;
         }
 
-        if (columns.isEmpty()) {
-            return;
+        String cursor = jdbcTemplate.queryForObject(
+            "SELECT COALESCE(backfill_cursor, '') FROM schema_version WHERE version = ?",
+            String.class,
+            migration.version()
+        );
+        while (true) {
+            List<String> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM assets WHERE id > ? ORDER BY id LIMIT ?",
+                String.class,
+                cursor,
+                BACKFILL_CHUNK_SIZE
+            );
+            if (ids.isEmpty()) {
+                return;
+            }
+            String from = cursor;
+            String to = ids.get(ids.size() - 1);
+            transactionTemplate.executeWithoutResult((status) -> {
+                ASSET_TYPE_BACKFILL.forEach((statement) -> jdbcTemplate.update(statement, from, to));
+                jdbcTemplate.update(
+                    "UPDATE schema_version SET backfill_cursor = ? WHERE version = ?",
+                    to,
+                    migration.version()
+                );
+            });
+            logger.info("Backfilled asset types up to asset {}", to);
+            cursor = to;
         }
-
-        String table = "assets";
-        addColumnIfMissing(table, columns, "asset_type", "TEXT", "'OTHER'");
-        ensureAssetTypeTables(columns);
     }
 
-    private void ensureAssetTypeTables(List<String> assetColumns) {
-        try {
-            jdbcTemplate.execute(
-                """
-                CREATE TABLE IF NOT EXISTS visual_assets (
-                    id TEXT PRIMARY KEY,
-                    name TEXT NOT NULL,
-                    preview TEXT,
-                    x REAL NOT NULL DEFAULT 0,
-                    y REAL NOT NULL DEFAULT 0,
-                    width REAL NOT NULL DEFAULT 0,
-                    height REAL NOT NULL DEFAULT 0,
-                    rotation REAL NOT NULL DEFAULT 0,
-                    speed REAL,
-                    muted BOOLEAN,
-                    media_type TEXT,
-                    original_media_type TEXT,
-                    z_index INTEGER,
-                    audio_volume REAL,
-                    hidden BOOLEAN
-                )
-                """
+    private void addContentHashColumns(Migration migration) {
+        transactionTemplate.executeWithoutResult((status) -> {
+            addColumnIfMissing("assets", columns("assets"), "content_hash", "VARCHAR(255)", "NULL");
+            addColumnIfMissing(
+                "script_asset_attachments",
+                columns("script_asset_attachments"),
+                "content_hash",
+                "VARCHAR(255)",
+                "NULL"
             );
-            jdbcTemplate.execute(
-                """
-                CREATE TABLE IF NOT EXISTS audio_assets (
-                    id TEXT PRIMARY KEY,
-                    name TEXT NOT NULL,
-                    media_type TEXT,
-                    original_media_type TEXT,
-                    audio_loop BOOLEAN,
-                    audio_delay_millis INTEGER,
-                    audio_speed REAL,
-                    audio_pitch REAL,
-                    audio_volume REAL,
-                    hidden BOOLEAN
-                )
-                """
-            );
-            jdbcTemplate.execute(
-                """
-                CREATE TABLE IF NOT EXISTS script_assets (
-                    id TEXT PRIMARY KEY,
-                    name TEXT NOT NULL,
-                    media_type TEXT,
-                    original_media_type TEXT
-                )
-                """
-            );
-            jdbcTemplate.execute(
-                """
-                CREATE TABLE IF NOT EXISTS script_asset_attachments (
-                    id TEXT PRIMARY KEY,
-                    script_asset_id TEXT NOT NULL,
-                    name TEXT NOT NULL,
-                    media_type TEXT,
-                    original_media_type TEXT,
-                    asset_type TEXT
-                )
-                """
+            addColumnIfMissing("visual_assets", columns("visual_assets"), "preview_hash", "VARCHAR(255)", "NULL");
+        });
+    }
+
+    private void normalizeAuthorizedClientTimestamps(Migration migration) {
+        for (String column : List.of("access_token_issued_at", "access_token_expires_at", "refresh_token_issued_at")) {
+            // SECURITY: This is ok, because the column names are controlled internally and not from user input.
+            int updated = transactionTemplate.execute((status) ->
+                jdbcTemplate.update(NORMALIZE_TIMESTAMP.replace("{column}", column))
             );
-            backfillAssetTypes(assetColumns);
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to ensure asset type tables", ex);
+            if (updated > 0) {
+                logger.info("Normalized {} rows in oauth2_authorized_client.{}", updated, column);
+            }
         }
     }
 
-    private void backfillAssetTypes(List<String> assetColumns) {
-        if (!assetColumns.contains("media_type")) {
+    private void createSessionAttributeUpsertTrigger(Migration migration) {
+        if (columns("SPRING_SESSION_ATTRIBUTES").isEmpty()) {
+            // Sessions are no longer kept in the database, so new databases never get the session tables
             return;
         }
-        try {
-            jdbcTemplate.execute(
-                """
-                UPDATE assets
-                SET asset_type = CASE
-                    WHEN media_type LIKE 'audio/%' THEN 'AUDIO'
-                    WHEN media_type LIKE 'video/%' THEN 'VIDEO'
-                    WHEN media_type LIKE 'image/%' THEN 'IMAGE'
-                    WHEN media_type LIKE 'application/javascript%' THEN 'SCRIPT'
-                    WHEN media_type LIKE 'text/javascript%' THEN 'SCRIPT'
-                    ELSE COALESCE(asset_type, 'OTHER')
-                END
-                WHERE asset_type IS NULL OR asset_type = '' OR asset_type = 'OTHER'
-                """
-            );
-            jdbcTemplate.execute(
-                """
-                INSERT OR IGNORE INTO visual_assets (
-                    id, name, preview, x, y, width, height, rotation, speed, muted, media_type,
-                    original_media_type, z_index, audio_volume, hidden
-                )
-                SELECT id, name, preview, x, y, width, height, rotation, speed, muted, media_type,
-                       original_media_type, z_index, audio_volume, hidden
-                FROM assets
-                WHERE asset_type IN ('IMAGE', 'VIDEO', 'OTHER')
-                """
-            );
-            jdbcTemplate.execute(
-                """
-                INSERT OR IGNORE INTO audio_assets (
-                    id, name, media_type, original_media_type, audio_loop, audio_delay_millis,
-                    audio_speed, audio_pitch, audio_volume, hidden
-                )
-                SELECT id, name, media_type, original_media_type, audio_loop, audio_delay_millis,
-                       audio_speed, audio_pitch, audio_volume, hidden
-                FROM assets
-                WHERE asset_type = 'AUDIO'
-                """
-            );
-            jdbcTemplate.execute(
-                """
-                INSERT OR IGNORE INTO script_assets (
-                    id, name, media_type, original_media_type
-                )
-                SELECT id, name, media_type, original_media_type
-                FROM assets
-                WHERE asset_type = 'SCRIPT'
-                """
-            );
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to backfill asset type tables", ex);
-        }
+        transactionTemplate.executeWithoutResult((status) -> jdbcTemplate.execute(SESSION_ATTRIBUTE_UPSERT_TRIGGER));
+    }
+
+    private List<String> columns(String tableName) {
+        return jdbcTemplate.query("PRAGMA table_info(" + tableName + ")", (rs, rowNum) -> rs.getString("name"));
     }
 
     private void addColumnIfMissing(
@@ -222,93 +229,297 @@ public class SchemaMigration implements ApplicationRunner {
         }
 
         // SECURITY: This is ok, because tableName and columnName are controlled internally and not from user input.
-        try {
-            jdbcTemplate.execute(
-                "ALTER TABLE " + tableName + " ADD COLUMN " + columnName + " " + dataType + " DEFAULT " + defaultValue
-            );
-            jdbcTemplate.execute(
-                "UPDATE " +
-                    tableName +
-                    " SET " +
-                    columnName +
-                    " = " +
-                    defaultValue +
-                    " WHERE " +
-                    columnName +
-                    " IS NULL"
-            );
-            logger.info("Added missing column '{}' to {} table", columnName, tableName);
-        } catch (DataAccessException ex) {
-            logger.warn("Failed to add column '{}' to {} table", columnName, tableName, ex);
-        }
+        jdbcTemplate.execute(
+            "ALTER TABLE " + tableName + " ADD COLUMN " + columnName + " " + dataType + " DEFAULT " + defaultValue
+        );
+        jdbcTemplate.execute(
+            "UPDATE " + tableName + " SET " + columnName + " = " + defaultValue + " WHERE " + columnName + " IS NULL"
+        );
+        logger.info("Added missing column '{}' to {} table", columnName, tableName);
     }
 
-    private void ensureAuthorizedClientTable() {
-        try {
-            jdbcTemplate.execute(
-                """
-                CREATE TABLE IF NOT EXISTS oauth2_authorized_client (
-                    client_registration_id VARCHAR(100) NOT NULL,
-                    principal_name VARCHAR(200) NOT NULL,
-                    access_token_type VARCHAR(100),
-                    access_token_value TEXT,
-                    access_token_issued_at INTEGER,
-                    access_token_expires_at INTEGER,
-                    access_token_scopes VARCHAR(1000),
-                    refresh_token_value TEXT,
-                    refresh_token_issued_at INTEGER,
-                    PRIMARY KEY (client_registration_id, principal_name)
-                )
-                """
-            );
-            logger.info("Ensured oauth2_authorized_client table exists");
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to ensure oauth2_authorized_client table", ex);
-        }
-    }
+    private static final List<String> CREATE_TABLES = List.of(
+        """
+        CREATE TABLE IF NOT EXISTS channels (
+            broadcaster varchar(255) not null,
+            canvas_height float not null,
+            canvas_width float not null,
+            created_at timestamp not null,
+            updated_at timestamp not null,
+            primary key (broadcaster)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS channel_admins (
+            channel_id varchar(255) not null,
+            admin_username varchar(255)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS assets (
+            id varchar(255) not null,
+            asset_type varchar(255) not null check (asset_type in ('IMAGE','VIDEO','AUDIO','SCRIPT','OTHER')),
+            broadcaster varchar(255) not null,
+            content_hash varchar(255),
+            created_at timestamp not null,
+            updated_at timestamp not null,
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS visual_assets (
+            id varchar(255) not null,
+            audio_volume float,
+            height float not null,
+            hidden boolean not null,
+            media_type varchar(255),
+            muted boolean,
+            name varchar(255) not null,
+            original_media_type varchar(255),
+            preview varchar(255),
+            preview_hash varchar(255),
+            rotation float not null,
+            speed float,
+            width float not null,
+            x float not null,
+            y float not null,
+            z_index integer,
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS audio_assets (
+            id varchar(255) not null,
+            audio_delay_millis integer,
+            audio_loop boolean,
+            audio_pitch float,
+            audio_speed float,
+            audio_volume float,
+            hidden boolean not null,
+            media_type varchar(255),
+            name varchar(255) not null,
+            original_media_type varchar(255),
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS script_assets (
+            id varchar(255) not null,
+            media_type varchar(255),
+            name varchar(255) not null,
+            original_media_type varchar(255),
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS script_asset_attachments (
+            id varchar(255) not null,
+            asset_type varchar(255) not null check (asset_type in ('IMAGE','VIDEO','AUDIO','SCRIPT','OTHER')),
+            content_hash varchar(255),
+            media_type varchar(255),
+            name varchar(255) not null,
+            original_media_type varchar(255),
+            script_asset_id varchar(255) not null,
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS asset_blobs (
+            hash varchar(255) not null,
+            created_at timestamp not null,
+            height integer not null,
+            media_type varchar(255),
+            preview_hash varchar(255),
+            reference_count integer not null,
+            size_bytes bigint not null,
+            source_hash varchar(255),
+            updated_at timestamp not null,
+            width integer not null,
+            primary key (hash)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS settings (
+            id integer not null,
+            canvas_frames_per_second integer not null,
+            created_at timestamp not null,
+            max_asset_audio_pitch_fraction float not null,
+            max_asset_playback_speed_fraction float not null,
+            max_asset_volume_fraction float not null,
+            max_canvas_side_length_pixels integer not null,
+            min_asset_audio_pitch_fraction float not null,
+            min_asset_playback_speed_fraction float not null,
+            min_asset_volume_fraction float not null,
+            updated_at timestamp not null,
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS system_administrators (
+            id varchar(255) not null,
+            created_at timestamp not null,
+            twitch_username varchar(255) not null,
+            updated_at timestamp not null,
+            primary key (id)
+        )
+        """,
+        """
+        CREATE TABLE IF NOT EXISTS oauth2_authorized_client (
+            client_registration_id VARCHAR(100) NOT NULL,
+            principal_name VARCHAR(200) NOT NULL,
+            access_token_type VARCHAR(100),
+            access_token_value TEXT,
+            access_token_issued_at INTEGER,
+            access_token_expires_at INTEGER,
+            access_token_scopes VARCHAR(1000),
+            refresh_token_value TEXT,
+            refresh_token_issued_at INTEGER,
+            PRIMARY KEY (client_registration_id, principal_name)
+        )
+        """
+    );
+
+    private static final List<String> ASSET_TYPE_BACKFILL = List.of(
+        """
+        UPDATE assets
+        SET asset_type = CASE
+            WHEN media_type LIKE 'audio/%' THEN 'AUDIO'
+            WHEN media_type LIKE 'video/%' THEN 'VIDEO'
+            WHEN media_type LIKE 'image/%' THEN 'IMAGE'
+            WHEN media_type LIKE 'application/javascript%' THEN 'SCRIPT'
+            WHEN media_type LIKE 'text/javascript%' THEN 'SCRIPT'
+            ELSE COALESCE(asset_type, 'OTHER')
+        END
+        WHERE id > ? AND id <= ? AND (asset_type IS NULL OR asset_type = '' OR asset_type = 'OTHER')
+        """,
+        """
+        INSERT OR IGNORE INTO visual_assets (
+            id, name, preview, x, y, width, height, rotation, speed, muted, media_type,
+            original_media_type, z_index, audio_volume, hidden
+        )
+        SELECT id, name, preview, COALESCE(x, 0), COALESCE(y, 0), COALESCE(width, 0), COALESCE(height, 0),
+               COALESCE(rotation, 0), speed, muted, media_type, original_media_type, z_index, audio_volume,
+               COALESCE(hidden, 0)
+        FROM assets
+        WHERE id > ? AND id <= ? AND asset_type IN ('IMAGE', 'VIDEO', 'OTHER')
+        """,
+        """
+        INSERT OR IGNORE INTO audio_assets (
+            id, name, media_type, original_media_type, audio_loop, audio_delay_millis,
+            audio_speed, audio_pitch, audio_volume, hidden
+        )
+        SELECT id, name, media_type, original_media_type, audio_loop, audio_delay_millis,
+               audio_speed, audio_pitch, audio_volume, COALESCE(hidden, 0)
+        FROM assets
+        WHERE id > ? AND id <= ? AND asset_type = 'AUDIO'
+        """,
+        """
+        INSERT OR IGNORE INTO script_assets (
+            id, name, media_type, original_media_type
+        )
+        SELECT id, name, media_type, original_media_type
+        FROM assets
+        WHERE id > ? AND id <= ? AND asset_type = 'SCRIPT'
+        """
+    );
+
+    private static final String NORMALIZE_TIMESTAMP =
+        """
+        UPDATE oauth2_authorized_client
+        SET {column} = CASE
+            WHEN {column} LIKE '%-%' THEN CAST(strftime('%s', {column}) AS INTEGER) * 1000
+            WHEN typeof({column}) = 'text' AND {column} GLOB '[0-9]*' THEN CAST({column} AS INTEGER)
+            ELSE {column}
+        END
+        WHERE {column} IS NOT NULL AND typeof({column}) != 'integer'
+        """;
+
+    private static final List<String> LOOKUP_INDEXES = List.of(
+        "CREATE INDEX IF NOT EXISTS idx_asset_blobs_source_hash ON asset_blobs (source_hash)",
+        "CREATE INDEX IF NOT EXISTS idx_assets_broadcaster ON assets (broadcaster)",
+        """
+        CREATE INDEX IF NOT EXISTS idx_script_asset_attachments_script_asset_id
+        ON script_asset_attachments (script_asset_id)
+        """,
+        "CREATE INDEX IF NOT EXISTS idx_channel_admins_admin_username ON channel_admins (admin_username)",
+        // Only a lookup index; migration 9 makes it unique, as the dialect skips the entity's unique constraint
+        """
+        CREATE INDEX IF NOT EXISTS idx_system_administrators_twitch_username
+        ON system_administrators (twitch_username)
+        """
+    );
+
+    private static final String SESSION_ATTRIBUTE_UPSERT_TRIGGER =
+        """
+        CREATE TRIGGER IF NOT EXISTS SPRING_SESSION_ATTRIBUTES_UPSERT
+        BEFORE INSERT ON SPRING_SESSION_ATTRIBUTES
+        FOR EACH ROW
+        BEGIN
+            DELETE FROM SPRING_SESSION_ATTRIBUTES
+            WHERE SESSION_PRIMARY_ID = NEW.SESSION_PRIMARY_ID
+              AND ATTRIBUTE_NAME = NEW.ATTRIBUTE_NAME;
+        END;
+        """;
 
-    private void normalizeAuthorizedClientTimestamps() {
-        normalizeTimestampColumn("access_token_issued_at");
-        normalizeTimestampColumn("access_token_expires_at");
-        normalizeTimestampColumn("refresh_token_issued_at");
+    private static final List<String> DROP_SESSION_TABLES = List.of(
+        "DROP TRIGGER IF EXISTS SPRING_SESSION_ATTRIBUTES_UPSERT",
+        "DROP TABLE IF EXISTS SPRING_SESSION_ATTRIBUTES",
+        "DROP TABLE IF EXISTS SPRING_SESSION"
+    );
+
+    private static final List<String> UNIQUE_SYSTEM_ADMINISTRATORS = List.of(
+        // Keep the first grant of every username so the unique index can be built
+        """
+        DELETE FROM system_administrators
+        WHERE rowid NOT IN (SELECT min(rowid) FROM system_administrators GROUP BY twitch_username)
+        """,
+        "DROP INDEX IF EXISTS idx_system_administrators_twitch_username",
+        """
+        CREATE UNIQUE INDEX idx_system_administrators_twitch_username
+        ON system_administrators (twitch_username)
+        """
+    );
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Migration migration);
     }
 
-    private void normalizeTimestampColumn(String column) {
-        try {
-            int updated = jdbcTemplate.update(
-                "UPDATE oauth2_authorized_client " +
-                    "SET " +
-                    column +
-                    " = CASE " +
-                    "WHEN " +
-                    column +
-                    " LIKE '%-%' THEN CAST(strftime('%s', " +
-                    column +
-                    ") AS INTEGER) * 1000 " +
-                    "WHEN typeof(" +
-                    column +
-                    ") = 'text' AND " +
-                    column +
-                    " GLOB '[0-9]*' THEN CAST(" +
-                    column +
-                    " AS INTEGER) " +
-                    "WHEN typeof(" +
-                    column +
-                    ") = 'integer' THEN " +
-                    column +
-                    " " +
-                    "ELSE " +
-                    column +
-                    " END " +
-                    "WHERE " +
-                    column +
-                    " IS NOT NULL"
-            );
-            if (updated > 0) {
-                logger.info("Normalized {} rows in oauth2_authorized_client.{}", updated, column);
+    /**
+     * A schema change. Plain migrations run their statements in one transaction; migrations with a step run it
+     * instead and list the statements it uses so edits to them change the checksum. The step itself is code the
+     * checksum cannot see, so a step that changes after it shipped gets the next revision, which is included in
+     * the checksum from revision 2 on.
+     */
+    private record Migration(
+        int version,
+        String description,
+        List<String> statements,
+        MigrationStep step,
+        int stepRevision
+    ) {
+        Migration(int version, String description, List<String> statements, MigrationStep step) {
+            this(version, description, statements, step, 1);
+        }
+
+        String checksum() {
+            CRC32 crc = new CRC32();
+            crc.update(description.getBytes(StandardCharsets.UTF_8));
+            statements.forEach((statement) -> crc.update(statement.getBytes(StandardCharsets.UTF_8)));
+            if (stepRevision > 1) {
+                // Revision 1 is left out so the checksums of unchanged migrations stay as they were recorded
+                crc.update(("step revision " + stepRevision).getBytes(StandardCharsets.UTF_8));
             }
-        } catch (DataAccessException ex) {
-            logger.warn("Unable to normalize oauth2_authorized_client.{} timestamps", column, ex);
+            return Long.toHexString(crc.getValue());
+        }
+    }
+
+    /** Creates the schema before the entity manager factory validates its queries against it. */
+    @Component
+    static class EntityManagerFactoryDependsOnSchemaMigration extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnSchemaMigration() {
+            super(SchemaMigration.class);
         }
     }
 }
@@ -1,31 +1,45 @@
 package dev.kruhlmann.imgfloat.config;
 
+import dev.kruhlmann.imgfloat.model.OauthSessionUser;
+import dev.kruhlmann.imgfloat.service.SystemAdministratorService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.client.endpoint.DefaultAuthorizationCodeTokenResponseClient;
 import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
 import org.springframework.security.oauth2.client.endpoint.OAuth2AuthorizationCodeGrantRequest;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.AccessDeniedHandler;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfException;
 import org.springframework.security.web.csrf.CsrfFilter;
 import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.WebUtils;
@@ -37,13 +51,59 @@ public class SecurityConfig {
 
     private static final Logger LOG = LoggerFactory.getLogger(SecurityConfig.class);
 
+    private static final String[] BROADCAST_READ_PATHS = {
+        "/view/*/broadcast",
+        "/api/channels/*/assets/visible",
+        "/api/channels/*/canvas",
+        "/api/channels/*/events",
+        "/api/channels/*/assets/*/content",
+        "/api/channels/*/assets/*/preview",
+    };
+
+    /**
+     * Serves the public, read-only routes polled by broadcast overlays, which make up most of the traffic. These
+     * never need a session, an authentication or a CSRF token, so this chain neither looks up nor creates a
+     * session, keeps no security context and writes no XSRF-TOKEN cookie. Every other request falls through to
+     * {@link #securityFilterChain}.
+     */
     @Bean
+    @Order(1)
+    SecurityFilterChain broadcastReadFilterChain(HttpSecurity http) throws Exception {
+        RequestMatcher[] broadcastReads = Arrays.stream(BROADCAST_READ_PATHS)
+            .map((path) -> new AntPathRequestMatcher(path, HttpMethod.GET.name()))
+            .toArray(RequestMatcher[]::new);
+        http
+            .securityMatcher(new OrRequestMatcher(broadcastReads))
+            .authorizeHttpRequests((auth) -> auth.anyRequest().permitAll())
+            .sessionManagement((session) -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .securityContext((context) ->
+                context.securityContextRepository(new RequestAttributeSecurityContextRepository())
+            )
+            .requestCache((cache) -> cache.disable())
+            .csrf((csrf) -> csrf.disable())
+            .anonymous((anonymous) -> anonymous.disable())
+            .servletApi((servletApi) -> servletApi.disable())
+            .logout((logout) -> logout.disable());
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
     SecurityFilterChain securityFilterChain(
         HttpSecurity http,
-        OAuth2AuthorizedClientRepository authorizedClientRepository
+        OAuth2AuthorizedClientRepository authorizedClientRepository,
+        ObjectProvider<SystemAdministratorService> systemAdministratorService,
+        @Value("${IMGFLOAT_METRICS_PUBLIC:false}") boolean metricsPublic
     ) throws Exception {
         CsrfTokenRequestAttributeHandler csrfRequestHandler = new CsrfTokenRequestAttributeHandler();
         csrfRequestHandler.setCsrfRequestAttributeName("_csrf");
+        AuthorizationManager<RequestAuthorizationContext> metricsAccess = metricsPublic
+            ? (authentication, context) -> new AuthorizationDecision(true)
+            : (authentication, context) ->
+                new AuthorizationDecision(
+                    authentication.get() instanceof OAuth2AuthenticationToken token &&
+                    systemAdministratorService.getObject().isSysadmin(OauthSessionUser.from(token).login())
+                );
 
         http
             .authorizeHttpRequests((auth) ->
@@ -65,6 +125,8 @@ public class SecurityConfig {
                         "/cookies"
                     )
                     .permitAll()
+                    .requestMatchers("/actuator/prometheus")
+                    .access(metricsAccess)
                     .requestMatchers(HttpMethod.GET, "/view/*/broadcast")
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels")
@@ -75,6 +137,8 @@ public class SecurityConfig {
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels/*/canvas")
                     .permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/channels/*/events")
+                    .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels/*/assets/*/content")
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels/*/assets/*/preview")
@@ -0,0 +1,49 @@
+package dev.kruhlmann.imgfloat.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.util.StringUtils;
+
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionConfig.class);
+
+    @Bean(destroyMethod = "shutdown")
+    public SessionRepository<MapSession> sessionRepository(
+        @Value("${server.servlet.session.timeout:30m}") String timeout,
+        @Value("${IMGFLOAT_SESSION_SNAPSHOT_PATH:}") String snapshotPath,
+        @Value("${IMGFLOAT_SESSION_SNAPSHOT_INTERVAL:1m}") String snapshotInterval,
+        @Value("${IMGFLOAT_DB_PATH:}") String dbPath,
+        MeterRegistry meterRegistry
+    ) {
+        Path snapshotFile = null;
+        if (StringUtils.hasText(snapshotPath)) {
+            snapshotFile = Path.of(snapshotPath);
+        } else if (StringUtils.hasText(dbPath)) {
+            snapshotFile = Path.of(dbPath + ".sessions");
+        }
+        if (snapshotFile == null) {
+            LOG.warn("No session snapshot file configured, sessions will not survive a restart");
+        } else {
+            LOG.info("Keeping sessions in memory with snapshots in {}", snapshotFile);
+        }
+        return new SnapshotSessionRepository(
+            DurationStyle.detectAndParse(timeout),
+            snapshotFile,
+            DurationStyle.detectAndParse(snapshotInterval),
+            meterRegistry
+        );
+    }
+}
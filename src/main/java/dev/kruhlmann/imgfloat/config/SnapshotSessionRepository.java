@@ -0,0 +1,187 @@
+package dev.kruhlmann.imgfloat.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+/**
+ * Keeps HTTP sessions in memory so that touching a session on every request never waits for the database.
+ * Expired sessions are swept periodically. When a snapshot file is configured, the sessions are written to it
+ * at the same interval and on shutdown and read back on startup, so a restart does not log anyone out; only
+ * changes since the last snapshot are lost on a crash.
+ */
+class SnapshotSessionRepository implements SessionRepository<MapSession> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotSessionRepository.class);
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final MapSessionRepository delegate = new MapSessionRepository(sessions);
+    private final Path snapshotFile;
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean dirty;
+
+    SnapshotSessionRepository(
+        Duration maxInactiveInterval,
+        Path snapshotFile,
+        Duration snapshotInterval,
+        MeterRegistry meterRegistry
+    ) {
+        this.snapshotFile = snapshotFile;
+        delegate.setDefaultMaxInactiveInterval(maxInactiveInterval);
+        restore();
+        Gauge.builder("imgfloat.sessions.active", sessions, Map::size)
+            .description("HTTP sessions held in memory")
+            .register(meterRegistry);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "session-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public MapSession createSession() {
+        return delegate.createSession();
+    }
+
+    @Override
+    public void save(MapSession session) {
+        delegate.save(session);
+        dirty = true;
+    }
+
+    @Override
+    public MapSession findById(String id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+        dirty = true;
+    }
+
+    public void shutdown() {
+        maintenance.shutdownNow();
+        sweep();
+        snapshot();
+    }
+
+    private void maintain() {
+        try {
+            sweep();
+            if (dirty) {
+                snapshot();
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Session maintenance failed", ex);
+        }
+    }
+
+    void sweep() {
+        if (sessions.values().removeIf(Session::isExpired)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes every session to the snapshot file. Sessions are serialized one by one, so a session holding an
+     * attribute that cannot be serialized is left out instead of failing the whole snapshot.
+     */
+    void snapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        dirty = false;
+        List<byte[]> serialized = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(session);
+                }
+                serialized.add(bytes.toByteArray());
+            } catch (IOException ex) {
+                logger.warn("Leaving session out of the snapshot: {}", ex.getMessage());
+            }
+        }
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temporary);
+            createPrivateFile(temporary);
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(serialized.size());
+                for (byte[] session : serialized) {
+                    out.writeInt(session.length);
+                    out.write(session);
+                }
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            dirty = true;
+            logger.warn("Unable to write session snapshot to {}", snapshotFile, ex);
+        }
+    }
+
+    private void restore() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshotFile))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                logger.warn("Ignoring session snapshot {} written by another version", snapshotFile);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = in.readNBytes(in.readInt());
+                try (ObjectInputStream session = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    if (session.readObject() instanceof MapSession restored && !restored.isExpired()) {
+                        sessions.put(restored.getId(), restored);
+                    }
+                } catch (IOException | ClassNotFoundException ex) {
+                    logger.warn("Skipping session that cannot be restored: {}", ex.getMessage());
+                }
+            }
+            logger.info("Restored {} sessions from {}", sessions.size(), snapshotFile);
+        } catch (IOException ex) {
+            logger.warn("Unable to read session snapshot {}", snapshotFile, ex);
+        }
+    }
+
+    private static void createPrivateFile(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException ex) {
+            Files.createFile(file);
+        }
+    }
+}
@@ -1,15 +1,58 @@
 package dev.kruhlmann.imgfloat.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final int fanOutThreads;
+    private final int channelQueueCapacity;
+    private final ChannelFanOutExecutor.SlowConsumerPolicy slowConsumerPolicy;
+    private final int sendTimeLimitMillis;
+    private final BinaryPatchSubscriptions binaryPatchSubscriptions;
+
+    public WebSocketConfig(
+        MeterRegistry meterRegistry,
+        ObjectMapper objectMapper,
+        @Value("${IMGFLOAT_WEBSOCKET_FANOUT_THREADS:0}") int fanOutThreads,
+        @Value("${IMGFLOAT_WEBSOCKET_CHANNEL_QUEUE_CAPACITY:1000}") int channelQueueCapacity,
+        @Value("${IMGFLOAT_WEBSOCKET_SLOW_CONSUMER_POLICY:coalesce}") String slowConsumerPolicy,
+        @Value("${IMGFLOAT_WEBSOCKET_SEND_TIME_LIMIT_MS:10000}") int sendTimeLimitMillis
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.fanOutThreads = fanOutThreads > 0 ? fanOutThreads : Runtime.getRuntime().availableProcessors() * 2;
+        this.channelQueueCapacity = channelQueueCapacity;
+        this.slowConsumerPolicy = ChannelFanOutExecutor.SlowConsumerPolicy.parse(slowConsumerPolicy);
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.binaryPatchSubscriptions = new BinaryPatchSubscriptions(objectMapper);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    ChannelFanOutExecutor channelFanOutExecutor() {
+        return new ChannelFanOutExecutor(
+            fanOutThreads,
+            channelQueueCapacity,
+            slowConsumerPolicy,
+            objectMapper,
+            binaryPatchSubscriptions::toClientFrame,
+            meterRegistry
+        );
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
@@ -19,5 +62,37 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
         config.setApplicationDestinationPrefixes("/app");
+        config
+            .configureBrokerChannel()
+            .interceptors(
+                new WebSocketMetricsInterceptor(
+                    meterRegistry,
+                    "imgfloat.websocket.messages.published",
+                    "Messages published to the broker, before fan-out to subscribers"
+                )
+            );
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMillis);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(binaryPatchSubscriptions);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration
+            .executor(channelFanOutExecutor())
+            .interceptors(
+                new WebSocketMetricsInterceptor(
+                    meterRegistry,
+                    "imgfloat.websocket.messages.delivered",
+                    "Messages queued for delivery to individual subscribers"
+                )
+            );
     }
 }
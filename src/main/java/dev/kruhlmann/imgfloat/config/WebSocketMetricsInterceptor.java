@@ -0,0 +1,57 @@
+package dev.kruhlmann.imgfloat.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * Counts STOMP messages sent on a channel by destination. Channel topics are collapsed into a single
+ * {@code /topic/channel/{channel}} label so the number of series does not grow with the number of channels.
+ */
+class WebSocketMetricsInterceptor implements ChannelInterceptor {
+
+    private static final String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+
+    private final MeterRegistry meterRegistry;
+    private final String metricName;
+    private final String description;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    WebSocketMetricsInterceptor(MeterRegistry meterRegistry, String metricName, String description) {
+        this.meterRegistry = meterRegistry;
+        this.metricName = metricName;
+        this.description = description;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return;
+        }
+        String destination = destinationLabel(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        counters
+            .computeIfAbsent(destination, (label) ->
+                Counter.builder(metricName).description(description).tag("destination", label).register(meterRegistry)
+            )
+            .increment();
+    }
+
+    static String destinationLabel(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+        if (destination.startsWith(CHANNEL_TOPIC_PREFIX)) {
+            return CHANNEL_TOPIC_PREFIX + "{channel}";
+        }
+        if (destination.startsWith("/topic/")) {
+            return "/topic/other";
+        }
+        return "other";
+    }
+}
@@ -7,28 +7,42 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 import dev.kruhlmann.imgfloat.model.AdminRequest;
 import dev.kruhlmann.imgfloat.model.AssetView;
 import dev.kruhlmann.imgfloat.model.CanvasSettingsRequest;
+import dev.kruhlmann.imgfloat.model.ChannelSync;
 import dev.kruhlmann.imgfloat.model.CodeAssetRequest;
 import dev.kruhlmann.imgfloat.model.OauthSessionUser;
 import dev.kruhlmann.imgfloat.model.PlaybackRequest;
 import dev.kruhlmann.imgfloat.model.ScriptAssetAttachmentView;
 import dev.kruhlmann.imgfloat.model.TransformRequest;
 import dev.kruhlmann.imgfloat.model.TwitchUserProfile;
+import dev.kruhlmann.imgfloat.model.UploadJob;
 import dev.kruhlmann.imgfloat.model.VisibilityRequest;
+import dev.kruhlmann.imgfloat.service.AssetTransformCoalescer;
+import dev.kruhlmann.imgfloat.service.AssetUploadService;
 import dev.kruhlmann.imgfloat.service.AuthorizationService;
 import dev.kruhlmann.imgfloat.service.ChannelDirectoryService;
+import dev.kruhlmann.imgfloat.service.ChannelEventLog;
 import dev.kruhlmann.imgfloat.service.TwitchUserLookupService;
+import dev.kruhlmann.imgfloat.service.media.AssetResource;
+import dev.kruhlmann.imgfloat.service.media.MediaUpload;
 import dev.kruhlmann.imgfloat.util.LogSanitizer;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
@@ -41,7 +55,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
@@ -57,19 +73,28 @@ public class ChannelApiController {
     private final OAuth2AuthorizedClientRepository authorizedClientRepository;
     private final TwitchUserLookupService twitchUserLookupService;
     private final AuthorizationService authorizationService;
+    private final AssetUploadService assetUploadService;
+    private final AssetTransformCoalescer assetTransformCoalescer;
+    private final ChannelEventLog channelEventLog;
 
     public ChannelApiController(
         ChannelDirectoryService channelDirectoryService,
         OAuth2AuthorizedClientService authorizedClientService,
         OAuth2AuthorizedClientRepository authorizedClientRepository,
         TwitchUserLookupService twitchUserLookupService,
-        AuthorizationService authorizationService
+        AuthorizationService authorizationService,
+        AssetUploadService assetUploadService,
+        AssetTransformCoalescer assetTransformCoalescer,
+        ChannelEventLog channelEventLog
     ) {
         this.channelDirectoryService = channelDirectoryService;
         this.authorizedClientService = authorizedClientService;
         this.authorizedClientRepository = authorizedClientRepository;
         this.twitchUserLookupService = twitchUserLookupService;
         this.authorizationService = authorizationService;
+        this.assetUploadService = assetUploadService;
+        this.assetTransformCoalescer = assetTransformCoalescer;
+        this.channelEventLog = channelEventLog;
     }
 
     @PostMapping("/admins")
@@ -117,7 +142,7 @@ public class ChannelApiController {
     }
 
     @GetMapping("/admins/suggestions")
-    public Collection<TwitchUserProfile> listAdminSuggestions(
+    public CompletableFuture<List<TwitchUserProfile>> listAdminSuggestions(
         @PathVariable("broadcaster") String broadcaster,
         OAuth2AuthenticationToken oauthToken,
         HttpServletRequest request
@@ -136,7 +161,7 @@ public class ChannelApiController {
                 logSessionUsername,
                 logBroadcaster
             );
-            return List.of();
+            return CompletableFuture.completedFuture(List.of());
         }
         String accessToken = Optional.ofNullable(authorizedClient)
             .map(OAuth2AuthorizedClient::getAccessToken)
@@ -152,7 +177,7 @@ public class ChannelApiController {
                 logSessionUsername,
                 logBroadcaster
             );
-            return List.of();
+            return CompletableFuture.completedFuture(List.of());
         }
         return twitchUserLookupService.fetchModerators(broadcaster, channel.getAdmins(), accessToken, clientId);
     }
@@ -178,6 +203,17 @@ public class ChannelApiController {
         return channelDirectoryService.getAssetsForAdmin(broadcaster);
     }
 
+    @GetMapping("/events")
+    public ChannelSync resumeEvents(
+        @PathVariable("broadcaster") String broadcaster,
+        @RequestParam(value = "epoch", required = false) String epoch,
+        @RequestParam(value = "since", required = false) Long since
+    ) {
+        return channelEventLog.resume(broadcaster, epoch, since, () ->
+            List.copyOf(channelDirectoryService.getAssetsForAdmin(broadcaster))
+        );
+    }
+
     @GetMapping("/assets/visible")
     public Collection<AssetView> listVisible(@PathVariable("broadcaster") String broadcaster) {
         return channelDirectoryService.getVisibleAssets(broadcaster);
@@ -209,7 +245,7 @@ public class ChannelApiController {
     }
 
     @PostMapping(value = "/assets", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<AssetView> createAsset(
+    public ResponseEntity<UploadJob> createAsset(
         @PathVariable("broadcaster") String broadcaster,
         @org.springframework.web.bind.annotation.RequestPart("file") MultipartFile file,
         OAuth2AuthenticationToken oauthToken
@@ -228,16 +264,33 @@ public class ChannelApiController {
         try {
             String logOriginalFilename = LogSanitizer.sanitize(file.getOriginalFilename());
             LOG.info("User {} uploading asset {} to {}", logSessionUsername, logOriginalFilename, logBroadcaster);
-            return channelDirectoryService
-                .createAsset(broadcaster, file)
-                .map(ResponseEntity::ok)
-                .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Unable to read image"));
+            channelDirectoryService.enforceUploadLimit(file.getSize());
+            UploadJob job = assetUploadService.submit(broadcaster, MediaUpload.from(file));
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/channels/" + job.broadcaster() + "/uploads/" + job.id()))
+                .body(job);
         } catch (IOException e) {
-            LOG.error("Failed to process asset upload for {} by {}", logBroadcaster, logSessionUsername, e);
+            LOG.error("Failed to read asset upload for {} by {}", logBroadcaster, logSessionUsername, e);
             throw new ResponseStatusException(BAD_REQUEST, "Failed to process image", e);
         }
     }
 
+    @GetMapping("/uploads/{jobId}")
+    public UploadJob getUploadJob(
+        @PathVariable("broadcaster") String broadcaster,
+        @PathVariable("jobId") String jobId,
+        OAuth2AuthenticationToken oauthToken
+    ) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userIsBroadcasterOrChannelAdminForBroadcasterOrThrowHttpError(
+            broadcaster,
+            sessionUsername
+        );
+        return assetUploadService
+            .findJob(broadcaster, jobId)
+            .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Upload not found"));
+    }
+
     @PostMapping("/assets/code")
     public ResponseEntity<AssetView> createCodeAsset(
         @PathVariable("broadcaster") String broadcaster,
@@ -285,6 +338,7 @@ public class ChannelApiController {
         @PathVariable("broadcaster") String broadcaster,
         @PathVariable("assetId") String assetId,
         @Valid @RequestBody TransformRequest request,
+        @RequestParam(value = "interim", defaultValue = "false") boolean interim,
         OAuth2AuthenticationToken oauthToken
     ) {
         String sessionUsername = OauthSessionUser.from(oauthToken).login();
@@ -295,9 +349,15 @@ public class ChannelApiController {
             broadcaster,
             sessionUsername
         );
+        if (interim) {
+            if (!assetTransformCoalescer.submit(broadcaster, assetId, request)) {
+                throw createAsset404();
+            }
+            return ResponseEntity.accepted().build();
+        }
         LOG.debug("Applying transform to asset {} on {} by {}", logAssetId, logBroadcaster, logSessionUsername);
-        return channelDirectoryService
-            .updateTransform(broadcaster, assetId, request)
+        return assetTransformCoalescer
+            .commit(broadcaster, assetId, request)
             .map(ResponseEntity::ok)
             .orElseThrow(() -> {
                 LOG.warn(
@@ -369,30 +429,28 @@ public class ChannelApiController {
     }
 
     @GetMapping("/assets/{assetId}/content")
-    public ResponseEntity<byte[]> getAssetContent(
+    public ResponseEntity<Resource> getAssetContent(
         @PathVariable("broadcaster") String broadcaster,
-        @PathVariable("assetId") String assetId
+        @PathVariable("assetId") String assetId,
+        @RequestParam(value = "v", required = false) String version,
+        @RequestHeader HttpHeaders requestHeaders
     ) {
         String logBroadcaster = LogSanitizer.sanitize(broadcaster);
         String logAssetId = LogSanitizer.sanitize(assetId);
         LOG.debug("Serving asset {} for broadcaster {}", logAssetId, logBroadcaster);
         return channelDirectoryService
             .getAssetContent(assetId)
-            .map((content) ->
-                ResponseEntity.ok()
-                    .header("X-Content-Type-Options", "nosniff")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, contentDispositionFor(content.mediaType()))
-                    .contentType(MediaType.parseMediaType(content.mediaType()))
-                    .body(content.bytes())
-            )
+            .map((content) -> streamContent(content, version, requestHeaders))
             .orElseThrow(() -> createAsset404());
     }
 
     @GetMapping("/script-assets/{assetId}/attachments/{attachmentId}/content")
-    public ResponseEntity<byte[]> getScriptAttachmentContent(
+    public ResponseEntity<Resource> getScriptAttachmentContent(
         @PathVariable("broadcaster") String broadcaster,
         @PathVariable("assetId") String assetId,
-        @PathVariable("attachmentId") String attachmentId
+        @PathVariable("attachmentId") String attachmentId,
+        @RequestParam(value = "v", required = false) String version,
+        @RequestHeader HttpHeaders requestHeaders
     ) {
         String logBroadcaster = LogSanitizer.sanitize(broadcaster);
         String logAssetId = LogSanitizer.sanitize(assetId);
@@ -405,35 +463,108 @@ public class ChannelApiController {
         );
         return channelDirectoryService
             .getScriptAttachmentContent(broadcaster, assetId, attachmentId)
-            .map((content) ->
-                ResponseEntity.ok()
-                    .header("X-Content-Type-Options", "nosniff")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, contentDispositionFor(content.mediaType()))
-                    .contentType(MediaType.parseMediaType(content.mediaType()))
-                    .body(content.bytes())
-            )
+            .map((content) -> streamContent(content, version, requestHeaders))
             .orElseThrow(() -> createAsset404());
     }
 
     @GetMapping("/assets/{assetId}/preview")
     public ResponseEntity<byte[]> getAssetPreview(
         @PathVariable("broadcaster") String broadcaster,
-        @PathVariable("assetId") String assetId
+        @PathVariable("assetId") String assetId,
+        @RequestParam(value = "v", required = false) String version
     ) {
         String logBroadcaster = LogSanitizer.sanitize(broadcaster);
         String logAssetId = LogSanitizer.sanitize(assetId);
         LOG.debug("Serving preview for asset {} for broadcaster {}", logAssetId, logBroadcaster);
         return channelDirectoryService
             .getAssetPreview(assetId, true)
-            .map((content) ->
-                ResponseEntity.ok()
+            .map((content) -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                     .header("X-Content-Type-Options", "nosniff")
-                    .contentType(MediaType.parseMediaType(content.mediaType()))
-                    .body(content.bytes())
-            )
+                    .cacheControl(cacheControlFor(content.digest(), version))
+                    .contentType(MediaType.parseMediaType(content.mediaType()));
+                if (content.digest() != null) {
+                    response.eTag(strongETag(content.digest()));
+                }
+                return response.body(content.bytes());
+            })
             .orElseThrow(() -> createAsset404());
     }
 
+    /**
+     * Streams a stored asset from disk. Spring MVC answers {@code Range} requests for {@link Resource}
+     * bodies with 206 partial responses, so browsers can seek in videos without downloading the whole
+     * file; a stale {@code If-Range} validator falls back to the full representation. Matching
+     * {@code If-None-Match} / {@code If-Modified-Since} requests are answered with 304 by Spring MVC.
+     */
+    private ResponseEntity<Resource> streamContent(AssetResource content, String version, HttpHeaders requestHeaders) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Content-Type-Options", "nosniff");
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, contentDispositionFor(content.mediaType()));
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(MediaType.parseMediaType(content.mediaType()));
+        headers.setCacheControl(cacheControlFor(content.digest(), version));
+        if (content.digest() != null) {
+            headers.setETag(strongETag(content.digest()));
+        }
+        if (content.lastModified() != null) {
+            headers.setLastModified(content.lastModified());
+        }
+
+        if (requestHeaders.containsKey(HttpHeaders.RANGE) && !ifRangeMatches(requestHeaders, content)) {
+            try {
+                // An InputStreamResource body keeps Spring MVC from applying the request's Range header.
+                headers.setContentLength(content.contentLength());
+                return new ResponseEntity<>(
+                    new InputStreamResource(content.resource().getInputStream()),
+                    headers,
+                    HttpStatus.OK
+                );
+            } catch (IOException e) {
+                LOG.warn("Unable to open asset stream", e);
+                throw createAsset404();
+            }
+        }
+        return new ResponseEntity<>(content.resource(), headers, HttpStatus.OK);
+    }
+
+    private boolean ifRangeMatches(HttpHeaders requestHeaders, AssetResource content) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return content.digest() != null && ifRange.equals(strongETag(content.digest()));
+        }
+        if (content.lastModified() == null) {
+            return false;
+        }
+        try {
+            long ifRangeSeconds = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) / 1000;
+            return ifRangeSeconds == content.lastModified().getEpochSecond();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * URLs carrying the current content digest as {@code v} are content-addressed and never change, so
+     * they may be cached forever. Anything else is revalidated against its ETag on every use.
+     */
+    private CacheControl cacheControlFor(String digest, String version) {
+        if (digest != null && digest.equals(version)) {
+            return CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+        }
+        return CacheControl.noCache();
+    }
+
+    private String strongETag(String digest) {
+        return "\"" + digest + "\"";
+    }
+
     private String contentDispositionFor(String mediaType) {
         if (
             mediaType != null &&
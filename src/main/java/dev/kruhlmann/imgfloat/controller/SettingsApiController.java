@@ -6,6 +6,7 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 import dev.kruhlmann.imgfloat.model.OauthSessionUser;
 import dev.kruhlmann.imgfloat.model.Settings;
+import dev.kruhlmann.imgfloat.service.AssetContentCache;
 import dev.kruhlmann.imgfloat.service.AuthorizationService;
 import dev.kruhlmann.imgfloat.service.SettingsService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -41,10 +42,16 @@ public class SettingsApiController {
 
     private final SettingsService settingsService;
     private final AuthorizationService authorizationService;
+    private final AssetContentCache assetContentCache;
 
-    public SettingsApiController(SettingsService settingsService, AuthorizationService authorizationService) {
+    public SettingsApiController(
+        SettingsService settingsService,
+        AuthorizationService authorizationService,
+        AssetContentCache assetContentCache
+    ) {
         this.settingsService = settingsService;
         this.authorizationService = authorizationService;
+        this.assetContentCache = assetContentCache;
     }
 
     @PutMapping("/set")
@@ -62,4 +69,11 @@ public class SettingsApiController {
 
         return ResponseEntity.ok().body(newSettings);
     }
+
+    @GetMapping("/asset-cache")
+    public ResponseEntity<AssetContentCache.Stats> getAssetCacheStats(OAuth2AuthenticationToken oauthToken) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userIsSystemAdministratorOrThrowHttpError(sessionUsername);
+        return ResponseEntity.ok(assetContentCache.stats());
+    }
 }
@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
@@ -13,7 +14,7 @@ import java.util.Locale;
 import java.util.UUID;
 
 @Entity
-@Table(name = "assets")
+@Table(name = "assets", indexes = @Index(name = "idx_assets_broadcaster", columnList = "broadcaster"))
 public class Asset {
 
     @Id
@@ -26,6 +27,9 @@ public class Asset {
     @Column(name = "asset_type", nullable = false)
     private AssetType assetType;
 
+    @Column(name = "content_hash")
+    private String contentHash;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -79,6 +83,14 @@ public class Asset {
         this.assetType = assetType == null ? AssetType.OTHER : assetType;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,130 @@
+package dev.kruhlmann.imgfloat.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/**
+ * A stored file addressed by the SHA-256 of its content. Assets, previews and script attachments point at
+ * blobs through their content hashes; the reference count tracks how many of them do so the file can be
+ * removed once the last one is deleted. Blobs produced from an upload also remember the hash of the
+ * original upload and the optimization result, so an identical upload can reuse them without being
+ * optimized again.
+ */
+@Entity
+@Table(name = "asset_blobs", indexes = @Index(name = "idx_asset_blobs_source_hash", columnList = "source_hash"))
+public class AssetBlob {
+
+    @Id
+    private String hash;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "reference_count", nullable = false)
+    private int referenceCount;
+
+    @Column(name = "source_hash")
+    private String sourceHash;
+
+    @Column(name = "media_type")
+    private String mediaType;
+
+    private int width;
+    private int height;
+
+    @Column(name = "preview_hash")
+    private String previewHash;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public AssetBlob() {}
+
+    public AssetBlob(String hash, long sizeBytes) {
+        this.hash = hash;
+        this.sizeBytes = sizeBytes;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void prepare() {
+        Instant now = Instant.now();
+        if (this.createdAt == null) {
+            this.createdAt = now;
+        }
+        this.updatedAt = now;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+
+    public void setReferenceCount(int referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
+    public void setSourceHash(String sourceHash) {
+        this.sourceHash = sourceHash;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public String getPreviewHash() {
+        return previewHash;
+    }
+
+    public void setPreviewHash(String previewHash) {
+        this.previewHash = previewHash;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
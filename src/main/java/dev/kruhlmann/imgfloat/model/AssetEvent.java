@@ -11,14 +11,25 @@ public class AssetEvent {
         VISIBILITY,
         PLAY,
         DELETED,
+        UPLOAD_PROGRESS,
+        UPLOAD_COMPLETED,
+        UPLOAD_FAILED,
     }
 
+    /**
+     * Message header carrying the asset a patch applies to. Queued patches with the same key may be merged when a
+     * subscriber falls behind. It is not a STOMP header and is never sent to clients.
+     */
+    public static final String COALESCE_KEY_HEADER = "imgfloatCoalesceKey";
+
     private Type type;
     private String channel;
     private AssetView payload;
     private String assetId;
     private Boolean play;
     private AssetPatch patch;
+    private UploadJob upload;
+    private Long seq;
 
     public static AssetEvent created(String channel, AssetView asset) {
         AssetEvent event = new AssetEvent();
@@ -75,6 +86,37 @@ public class AssetEvent {
         return event;
     }
 
+    public static AssetEvent upload(String channel, UploadJob job) {
+        AssetEvent event = new AssetEvent();
+        event.type = switch (job.status()) {
+            case COMPLETED -> Type.UPLOAD_COMPLETED;
+            case FAILED -> Type.UPLOAD_FAILED;
+            default -> Type.UPLOAD_PROGRESS;
+        };
+        event.channel = channel;
+        event.upload = job;
+        if (job.asset() != null) {
+            event.assetId = job.asset().id();
+        }
+        return event;
+    }
+
+    /**
+     * @return a copy of this event stamped with its position in the channel's event sequence
+     */
+    public AssetEvent withSeq(long seq) {
+        AssetEvent event = new AssetEvent();
+        event.type = type;
+        event.channel = channel;
+        event.payload = payload;
+        event.assetId = assetId;
+        event.play = play;
+        event.patch = patch;
+        event.upload = upload;
+        event.seq = seq;
+        return event;
+    }
+
     public Type getType() {
         return type;
     }
@@ -98,4 +140,12 @@ public class AssetEvent {
     public AssetPatch getPatch() {
         return patch;
     }
+
+    public UploadJob getUpload() {
+        return upload;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
 }
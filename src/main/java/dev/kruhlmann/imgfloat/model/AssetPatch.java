@@ -114,7 +114,21 @@ public record AssetPatch(
         boolean muted,
         int zIndex,
         double audioVolume
-    ) {}
+    ) {
+        public static VisualSnapshot of(VisualAsset asset) {
+            return new VisualSnapshot(
+                asset.getX(),
+                asset.getY(),
+                asset.getWidth(),
+                asset.getHeight(),
+                asset.getRotation(),
+                asset.getSpeed(),
+                asset.isMuted(),
+                asset.getZIndex(),
+                asset.getAudioVolume()
+            );
+        }
+    }
 
     public record AudioSnapshot(
         boolean audioLoop,
@@ -37,8 +37,8 @@ public record AssetView(
             asset.getId(),
             asset.getBroadcaster(),
             visual.getName(),
-            "/api/channels/" + broadcaster + "/assets/" + asset.getId() + "/content",
-            hasPreview ? "/api/channels/" + broadcaster + "/assets/" + asset.getId() + "/preview" : null,
+            contentUrl(broadcaster, asset),
+            hasPreview ? previewUrl(broadcaster, asset, visual) : null,
             visual.getX(),
             visual.getY(),
             visual.getWidth(),
@@ -63,12 +63,46 @@ public record AssetView(
         );
     }
 
+    /**
+     * Copies the transform fields of {@code visual} onto this view, leaving name, visibility and media untouched.
+     */
+    public AssetView withTransform(VisualAsset visual) {
+        return new AssetView(
+            id,
+            broadcaster,
+            name,
+            url,
+            previewUrl,
+            visual.getX(),
+            visual.getY(),
+            visual.getWidth(),
+            visual.getHeight(),
+            visual.getRotation(),
+            visual.getSpeed(),
+            visual.isMuted(),
+            mediaType,
+            originalMediaType,
+            assetType,
+            scriptAttachments,
+            visual.getZIndex(),
+            audioLoop,
+            audioDelayMillis,
+            audioSpeed,
+            audioPitch,
+            visual.getAudioVolume(),
+            hidden,
+            hasPreview,
+            createdAt,
+            updatedAt
+        );
+    }
+
     public static AssetView fromAudio(String broadcaster, Asset asset, AudioAsset audio) {
         return new AssetView(
             asset.getId(),
             asset.getBroadcaster(),
             audio.getName(),
-            "/api/channels/" + broadcaster + "/assets/" + asset.getId() + "/content",
+            contentUrl(broadcaster, asset),
             null,
             0,
             0,
@@ -99,7 +133,7 @@ public record AssetView(
             asset.getId(),
             asset.getBroadcaster(),
             script.getName(),
-            "/api/channels/" + broadcaster + "/assets/" + asset.getId() + "/content",
+            contentUrl(broadcaster, asset),
             null,
             0,
             0,
@@ -124,4 +158,22 @@ public record AssetView(
             asset.getUpdatedAt()
         );
     }
+
+    private static String contentUrl(String broadcaster, Asset asset) {
+        String base = "/api/channels/" + broadcaster + "/assets/" + asset.getId();
+        return base + "/content" + versionQuery(asset.getContentHash());
+    }
+
+    private static String previewUrl(String broadcaster, Asset asset, VisualAsset visual) {
+        String base = "/api/channels/" + broadcaster + "/assets/" + asset.getId();
+        return base + "/preview" + versionQuery(visual.getPreviewHash());
+    }
+
+    /**
+     * Content-addressed URLs carry the stored digest, so a changed file gets a new URL and the old one can
+     * be cached as immutable.
+     */
+    static String versionQuery(String digest) {
+        return digest == null || digest.isBlank() ? "" : "?v=" + digest;
+    }
 }
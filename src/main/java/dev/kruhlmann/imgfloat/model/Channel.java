@@ -6,6 +6,7 @@ import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
@@ -25,7 +26,11 @@ public class Channel {
     private String broadcaster;
 
     @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "channel_admins", joinColumns = @JoinColumn(name = "channel_id"))
+    @CollectionTable(
+        name = "channel_admins",
+        joinColumns = @JoinColumn(name = "channel_id"),
+        indexes = @Index(name = "idx_channel_admins_admin_username", columnList = "admin_username")
+    )
     @Column(name = "admin_username")
     private Set<String> admins = new HashSet<>();
 
@@ -0,0 +1,20 @@
+package dev.kruhlmann.imgfloat.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
+/**
+ * Brings a broadcast client up to date with a channel. Either {@code events} holds the events after the client's
+ * last sequence number, or {@code assets} holds a full snapshot when those events are no longer available.
+ * {@code seq} is the sequence number the client is up to date with afterwards.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChannelSync(String epoch, long seq, List<AssetEvent> events, List<AssetView> assets) {
+    public static ChannelSync delta(String epoch, long seq, List<AssetEvent> events) {
+        return new ChannelSync(epoch, seq, events, null);
+    }
+
+    public static ChannelSync snapshot(String epoch, long seq, List<AssetView> assets) {
+        return new ChannelSync(epoch, seq, null, assets);
+    }
+}
@@ -5,13 +5,17 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import java.util.UUID;
 
 @Entity
-@Table(name = "script_asset_attachments")
+@Table(
+    name = "script_asset_attachments",
+    indexes = @Index(name = "idx_script_asset_attachments_script_asset_id", columnList = "script_asset_id")
+)
 public class ScriptAssetAttachment {
 
     @Id
@@ -26,6 +30,9 @@ public class ScriptAssetAttachment {
     private String mediaType;
     private String originalMediaType;
 
+    @Column(name = "content_hash")
+    private String contentHash;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "asset_type", nullable = false)
     private AssetType assetType;
@@ -93,6 +100,14 @@ public class ScriptAssetAttachment {
         this.originalMediaType = originalMediaType;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public AssetType getAssetType() {
         return assetType == null ? AssetType.OTHER : assetType;
     }
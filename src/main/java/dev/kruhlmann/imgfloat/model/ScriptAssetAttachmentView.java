@@ -19,7 +19,8 @@ public record ScriptAssetAttachmentView(
             attachment.getName(),
             "/api/channels/" + broadcaster + "/script-assets/" + attachment.getScriptAssetId() + "/attachments/" +
             attachment.getId() +
-            "/content",
+            "/content" +
+            AssetView.versionQuery(attachment.getContentHash()),
             attachment.getMediaType(),
             attachment.getOriginalMediaType(),
             attachment.getAssetType()
@@ -0,0 +1,49 @@
+package dev.kruhlmann.imgfloat.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * State of an asset upload that was accepted for background processing. The finished asset is attached once
+ * processing completes; a failed job carries a message suitable for showing to the uploader.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadJob(
+    String id,
+    String broadcaster,
+    String name,
+    Status status,
+    AssetView asset,
+    String error,
+    Instant createdAt,
+    Instant updatedAt
+) {
+    public enum Status {
+        QUEUED,
+        PROCESSING,
+        COMPLETED,
+        FAILED,
+    }
+
+    public static UploadJob queued(String broadcaster, String name) {
+        Instant now = Instant.now();
+        return new UploadJob(UUID.randomUUID().toString(), broadcaster, name, Status.QUEUED, null, null, now, now);
+    }
+
+    public UploadJob processing() {
+        return new UploadJob(id, broadcaster, name, Status.PROCESSING, null, null, createdAt, Instant.now());
+    }
+
+    public UploadJob completed(AssetView asset) {
+        return new UploadJob(id, broadcaster, name, Status.COMPLETED, asset, null, createdAt, Instant.now());
+    }
+
+    public UploadJob failed(String error) {
+        return new UploadJob(id, broadcaster, name, Status.FAILED, null, error, createdAt, Instant.now());
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -18,6 +18,7 @@ public class VisualAsset {
     private String name;
 
     private String preview;
+    private String previewHash;
 
     private double x;
     private double y;
@@ -93,6 +94,14 @@ public class VisualAsset {
         this.preview = preview;
     }
 
+    public String getPreviewHash() {
+        return previewHash;
+    }
+
+    public void setPreviewHash(String previewHash) {
+        this.previewHash = previewHash;
+    }
+
     public double getX() {
         return x;
     }
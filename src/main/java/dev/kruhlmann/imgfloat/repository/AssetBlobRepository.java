@@ -0,0 +1,9 @@
+package dev.kruhlmann.imgfloat.repository;
+
+import dev.kruhlmann.imgfloat.model.AssetBlob;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AssetBlobRepository extends JpaRepository<AssetBlob, String> {
+    Optional<AssetBlob> findFirstBySourceHash(String sourceHash);
+}
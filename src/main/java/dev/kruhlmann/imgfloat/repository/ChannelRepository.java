@@ -3,7 +3,12 @@ package dev.kruhlmann.imgfloat.repository;
 import dev.kruhlmann.imgfloat.model.Channel;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ChannelRepository extends JpaRepository<Channel, String> {
     List<Channel> findTop50ByBroadcasterContainingIgnoreCaseOrderByBroadcasterAsc(String broadcasterFragment);
+
+    @Query("select c.broadcaster from Channel c join c.admins admin where admin = :username order by c.broadcaster")
+    List<String> findBroadcastersByAdmin(@Param("username") String username);
 }
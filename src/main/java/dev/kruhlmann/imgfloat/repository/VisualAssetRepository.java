@@ -7,5 +7,4 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface VisualAssetRepository extends JpaRepository<VisualAsset, String> {
     List<VisualAsset> findByIdIn(Collection<String> ids);
-    List<VisualAsset> findByIdInAndHiddenFalse(Collection<String> ids);
 }
@@ -0,0 +1,180 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.AssetBlob;
+import dev.kruhlmann.imgfloat.repository.AssetBlobRepository;
+import dev.kruhlmann.imgfloat.service.media.OptimizedAsset;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Reference-counted, content-addressed storage for asset media. The same file uploaded to many channels is
+ * stored (and optimized) once; each asset, preview or attachment that points at it holds one reference.
+ */
+@Service
+public class AssetBlobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetBlobService.class);
+
+    private final AssetBlobRepository assetBlobRepository;
+    private final AssetStorageService assetStorageService;
+
+    public AssetBlobService(AssetBlobRepository assetBlobRepository, AssetStorageService assetStorageService) {
+        this.assetBlobRepository = assetBlobRepository;
+        this.assetStorageService = assetStorageService;
+    }
+
+    public static String sourceHash(Path upload) throws IOException {
+        return AssetStorageService.sha256Hex(upload);
+    }
+
+    /**
+     * Takes new references on the media previously produced from an upload with the given hash, if it is
+     * still stored, so the caller can skip optimizing the upload again.
+     */
+    public synchronized Optional<StoredMedia> reuse(String sourceHash) {
+        Optional<AssetBlob> existing = assetBlobRepository
+            .findFirstBySourceHash(sourceHash)
+            .filter((blob) -> blob.getReferenceCount() > 0)
+            .filter((blob) -> assetStorageService.blobExists(blob.getHash()))
+            .filter((blob) -> blob.getPreviewHash() == null || assetStorageService.blobExists(blob.getPreviewHash()));
+        if (existing.isEmpty()) {
+            return Optional.empty();
+        }
+        AssetBlob blob = existing.get();
+        increment(blob);
+        if (blob.getPreviewHash() != null) {
+            assetBlobRepository.findById(blob.getPreviewHash()).ifPresent(this::increment);
+        }
+        logger.info("Reusing stored blob {} for upload {}", blob.getHash(), sourceHash);
+        return Optional.of(
+            new StoredMedia(blob.getHash(), blob.getMediaType(), blob.getWidth(), blob.getHeight(), blob.getPreviewHash())
+        );
+    }
+
+    /**
+     * Stores an optimized upload and its preview, taking one reference on each, and records the upload
+     * hash so identical uploads can be served by {@link #reuse(String)}.
+     */
+    public StoredMedia store(String sourceHash, OptimizedAsset optimized) throws IOException {
+        String previewHash = hasContent(optimized.previewBytes()) ? retain(optimized.previewBytes()) : null;
+        String contentHash;
+        try {
+            contentHash = retain(optimized.file());
+        } catch (IOException | RuntimeException e) {
+            // Nothing will refer to the preview, so the reference taken on it has to be dropped again
+            release(previewHash);
+            throw e;
+        }
+        synchronized (this) {
+            assetBlobRepository
+                .findById(contentHash)
+                .filter((blob) -> blob.getSourceHash() == null)
+                .ifPresent((blob) -> {
+                    blob.setSourceHash(sourceHash);
+                    blob.setMediaType(optimized.mediaType());
+                    blob.setWidth(optimized.width());
+                    blob.setHeight(optimized.height());
+                    blob.setPreviewHash(previewHash);
+                    assetBlobRepository.save(blob);
+                });
+        }
+        return new StoredMedia(contentHash, optimized.mediaType(), optimized.width(), optimized.height(), previewHash);
+    }
+
+    /**
+     * Stores the content if it is not already present and takes one reference on it.
+     */
+    public synchronized String retain(byte[] bytes) throws IOException {
+        String hash = assetStorageService.storeBlob(bytes);
+        AssetBlob blob = assetBlobRepository.findById(hash).orElseGet(() -> new AssetBlob(hash, bytes.length));
+        increment(blob);
+        return hash;
+    }
+
+    /**
+     * Moves the file into the blob store, unless identical content is already present, and takes one reference
+     * on it.
+     */
+    public String retain(Path file) throws IOException {
+        long size = Files.size(file);
+        String digest = AssetStorageService.sha256Hex(file);
+        synchronized (this) {
+            String hash = assetStorageService.storeBlob(file, digest);
+            AssetBlob blob = assetBlobRepository.findById(hash).orElseGet(() -> new AssetBlob(hash, size));
+            increment(blob);
+            return hash;
+        }
+    }
+
+    /**
+     * Drops one reference on the blob, deleting it once nothing refers to it. Hashes of content stored before
+     * deduplication have no blob record and are ignored.
+     */
+    public synchronized void release(String hash) {
+        if (hash == null) {
+            return;
+        }
+        assetBlobRepository
+            .findById(hash)
+            .ifPresent((blob) -> {
+                int remaining = blob.getReferenceCount() - 1;
+                if (remaining > 0) {
+                    blob.setReferenceCount(remaining);
+                    assetBlobRepository.save(blob);
+                    return;
+                }
+                assetBlobRepository.delete(blob);
+                assetStorageService.deleteBlob(hash);
+            });
+    }
+
+    /**
+     * Resets every reference count to the number of references actually held, removing blobs that are no
+     * longer referenced along with any stored file that has no blob record. Blobs touched after the references
+     * were collected may belong to an upload still in flight and are left alone.
+     */
+    public synchronized void reconcile(Map<String, Integer> referenceCounts, Instant referencesCollectedAt) {
+        Set<String> retained = new HashSet<>(referenceCounts.keySet());
+        for (AssetBlob blob : assetBlobRepository.findAll()) {
+            if (blob.getUpdatedAt() != null && blob.getUpdatedAt().isAfter(referencesCollectedAt)) {
+                retained.add(blob.getHash());
+                continue;
+            }
+            int actual = referenceCounts.getOrDefault(blob.getHash(), 0);
+            if (actual == 0) {
+                assetBlobRepository.delete(blob);
+                logger.warn("Deleting unreferenced blob {}", blob.getHash());
+            } else if (actual != blob.getReferenceCount()) {
+                logger.warn(
+                    "Correcting reference count of blob {} from {} to {}",
+                    blob.getHash(),
+                    blob.getReferenceCount(),
+                    actual
+                );
+                blob.setReferenceCount(actual);
+                assetBlobRepository.save(blob);
+            }
+        }
+        assetStorageService.deleteOrphanedBlobs(retained);
+    }
+
+    private void increment(AssetBlob blob) {
+        blob.setReferenceCount(blob.getReferenceCount() + 1);
+        assetBlobRepository.save(blob);
+    }
+
+    private boolean hasContent(byte[] bytes) {
+        return bytes != null && bytes.length > 0;
+    }
+
+    public record StoredMedia(String contentHash, String mediaType, int width, int height, String previewHash) {}
+}
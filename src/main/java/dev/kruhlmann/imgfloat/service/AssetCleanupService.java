@@ -2,10 +2,18 @@ package dev.kruhlmann.imgfloat.service;
 
 import dev.kruhlmann.imgfloat.model.Asset;
 import dev.kruhlmann.imgfloat.model.ScriptAssetAttachment;
+import dev.kruhlmann.imgfloat.model.VisualAsset;
 import dev.kruhlmann.imgfloat.repository.AssetRepository;
 import dev.kruhlmann.imgfloat.repository.ScriptAssetAttachmentRepository;
+import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -22,36 +30,47 @@ public class AssetCleanupService {
     private final AssetRepository assetRepository;
     private final AssetStorageService assetStorageService;
     private final ScriptAssetAttachmentRepository scriptAssetAttachmentRepository;
+    private final VisualAssetRepository visualAssetRepository;
+    private final AssetBlobService assetBlobService;
 
     public AssetCleanupService(
         AssetRepository assetRepository,
         AssetStorageService assetStorageService,
-        ScriptAssetAttachmentRepository scriptAssetAttachmentRepository
+        ScriptAssetAttachmentRepository scriptAssetAttachmentRepository,
+        VisualAssetRepository visualAssetRepository,
+        AssetBlobService assetBlobService
     ) {
         this.assetRepository = assetRepository;
         this.assetStorageService = assetStorageService;
         this.scriptAssetAttachmentRepository = scriptAssetAttachmentRepository;
+        this.visualAssetRepository = visualAssetRepository;
+        this.assetBlobService = assetBlobService;
     }
 
     @Async
     @EventListener(ApplicationReadyEvent.class)
-    @Transactional(readOnly = true)
+    @Transactional
     public void cleanup() {
         logger.info("Collecting referenced assets");
 
-        Set<String> referencedIds = assetRepository
-            .findAll()
-            .stream()
-            .map(Asset::getId)
-            .collect(Collectors.toSet());
-        referencedIds.addAll(
-            scriptAssetAttachmentRepository
-                .findAll()
-                .stream()
-                .map(ScriptAssetAttachment::getId)
-                .collect(Collectors.toSet())
-        );
+        Instant collectedAt = Instant.now();
+        List<Asset> assets = assetRepository.findAll();
+        List<ScriptAssetAttachment> attachments = scriptAssetAttachmentRepository.findAll();
+        List<VisualAsset> visuals = visualAssetRepository.findAll();
 
+        Set<String> referencedIds = assets.stream().map(Asset::getId).collect(Collectors.toSet());
+        referencedIds.addAll(attachments.stream().map(ScriptAssetAttachment::getId).collect(Collectors.toSet()));
         assetStorageService.deleteOrphanedAssets(referencedIds);
+
+        Map<String, Integer> referenceCounts = new HashMap<>();
+        Stream.of(
+            assets.stream().map(Asset::getContentHash),
+            attachments.stream().map(ScriptAssetAttachment::getContentHash),
+            visuals.stream().map(VisualAsset::getPreviewHash)
+        )
+            .flatMap((hashes) -> hashes)
+            .filter(Objects::nonNull)
+            .forEach((hash) -> referenceCounts.merge(hash, 1, Integer::sum));
+        assetBlobService.reconcile(referenceCounts, collectedAt);
     }
 }
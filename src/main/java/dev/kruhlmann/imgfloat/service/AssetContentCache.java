@@ -0,0 +1,113 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Byte-budgeted LRU cache of small, frequently requested asset and preview files, keyed by their
+ * resolved storage path. Files larger than the per-entry limit are never admitted so a handful of
+ * videos cannot evict the hot set of images and previews.
+ */
+@Component
+public class AssetContentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetContentCache.class);
+
+    private final long maxSizeBytes;
+    private final long maxEntrySizeBytes;
+    private final LinkedHashMap<Path, AssetContent> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public AssetContentCache(
+        @Value("${IMGFLOAT_ASSET_CACHE_MAX_SIZE:64MB}") String maxSize,
+        @Value("${IMGFLOAT_ASSET_CACHE_MAX_ENTRY_SIZE:1MB}") String maxEntrySize,
+        MeterRegistry meterRegistry
+    ) {
+        this.maxSizeBytes = DataSize.parse(maxSize).toBytes();
+        this.maxEntrySizeBytes = Math.min(DataSize.parse(maxEntrySize).toBytes(), this.maxSizeBytes);
+        FunctionCounter.builder("imgfloat.storage.cache.requests", this, (cache) -> cache.stats().hits())
+            .description("Asset and preview reads looked up in the in-memory cache")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("imgfloat.storage.cache.requests", this, (cache) -> cache.stats().misses())
+            .description("Asset and preview reads looked up in the in-memory cache")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        FunctionCounter.builder("imgfloat.storage.cache.evictions", this, (cache) -> cache.stats().evictions())
+            .description("Cached files dropped to stay within the cache budget")
+            .register(meterRegistry);
+        Gauge.builder("imgfloat.storage.cache.size", this, (cache) -> cache.stats().sizeBytes())
+            .description("Bytes of asset and preview content held in the in-memory cache")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        logger.info("Asset cache budget is {} bytes ({} bytes per entry)", maxSizeBytes, maxEntrySizeBytes);
+    }
+
+    public synchronized Optional<AssetContent> get(Path file) {
+        AssetContent content = entries.get(file);
+        if (content == null) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(content);
+    }
+
+    public boolean admits(long contentLength) {
+        return contentLength > 0 && contentLength <= maxEntrySizeBytes;
+    }
+
+    public synchronized void put(Path file, AssetContent content) {
+        if (content == null || !admits(content.bytes().length)) {
+            return;
+        }
+        AssetContent previous = entries.put(file, content);
+        if (previous != null) {
+            sizeBytes -= previous.bytes().length;
+        }
+        sizeBytes += content.bytes().length;
+        Iterator<Map.Entry<Path, AssetContent>> eldest = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && eldest.hasNext()) {
+            Map.Entry<Path, AssetContent> entry = eldest.next();
+            sizeBytes -= entry.getValue().bytes().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(Path file) {
+        AssetContent removed = entries.remove(file);
+        if (removed != null) {
+            sizeBytes -= removed.bytes().length;
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), sizeBytes, maxSizeBytes, maxEntrySizeBytes);
+    }
+
+    public record Stats(
+        long hits,
+        long misses,
+        long evictions,
+        int entries,
+        long sizeBytes,
+        long maxSizeBytes,
+        long maxEntrySizeBytes
+    ) {}
+}
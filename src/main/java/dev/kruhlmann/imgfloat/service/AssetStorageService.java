@@ -1,15 +1,31 @@
 package dev.kruhlmann.imgfloat.service;
 
 import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import dev.kruhlmann.imgfloat.service.media.AssetResource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -38,13 +54,30 @@ public class AssetStorageService {
         Map.entry("text/javascript", ".js")
     );
 
+    private static final String BLOB_DIRECTORY = "blobs";
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+
     private final Path assetRoot;
     private final Path previewRoot;
+    private final AssetContentCache cache;
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
 
     public AssetStorageService(
         @Value("${IMGFLOAT_ASSETS_PATH:#{null}}") String assetRoot,
-        @Value("${IMGFLOAT_PREVIEWS_PATH:#{null}}") String previewRoot
+        @Value("${IMGFLOAT_PREVIEWS_PATH:#{null}}") String previewRoot,
+        AssetContentCache cache,
+        MeterRegistry meterRegistry
     ) {
+        this.cache = cache;
+        this.bytesRead = Counter.builder("imgfloat.storage.read")
+            .description("Bytes of asset and preview content read from disk")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.bytesWritten = Counter.builder("imgfloat.storage.written")
+            .description("Bytes of asset and preview content written to disk")
+            .baseUnit("bytes")
+            .register(meterRegistry);
         String assetsBase = assetRoot != null
             ? assetRoot
             : Paths.get(System.getProperty("java.io.tmpdir"), "imgfloat-assets").toString();
@@ -62,88 +95,177 @@ public class AssetStorageService {
         }
     }
 
-    public void storeAsset(String broadcaster, String assetId, byte[] assetBytes, String mediaType) throws IOException {
-        if (assetBytes == null || assetBytes.length == 0) {
+    /**
+     * Writes content to the blob store under its SHA-256 digest and returns that digest. Identical content is
+     * only written once; callers track references to it through {@link AssetBlobService}.
+     */
+    public String storeBlob(byte[] bytes) throws IOException {
+        if (bytes == null || bytes.length == 0) {
             throw new IOException("Asset content is empty");
         }
 
-        Path file = assetPath(broadcaster, assetId, mediaType);
-        Files.createDirectories(file.getParent());
+        String digest = sha256Hex(bytes);
+        Path file = blobPath(digest);
+        if (Files.exists(file)) {
+            return digest;
+        }
 
-        Files.write(
-            file,
-            assetBytes,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.TRUNCATE_EXISTING,
-            StandardOpenOption.WRITE
-        );
-        logger.info("Wrote asset to {}", file);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), digest, ".tmp");
+        try {
+            Files.write(temp, bytes, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        bytesWritten.increment(bytes.length);
+        logger.info("Wrote blob to {}", file);
+        return digest;
     }
 
-    public void storePreview(String broadcaster, String assetId, byte[] previewBytes) throws IOException {
-        if (previewBytes == null || previewBytes.length == 0) return;
+    /**
+     * Moves the file at {@code source} into the blob store under {@code digest}, its SHA-256 as computed by
+     * streaming the file, and returns the digest. The content is never loaded onto the heap. If identical content
+     * is already stored the source is deleted instead.
+     */
+    public String storeBlob(Path source, String digest) throws IOException {
+        long size = Files.size(source);
+        if (size == 0) {
+            throw new IOException("Asset content is empty");
+        }
 
-        Path file = previewPath(broadcaster, assetId);
-        Files.createDirectories(file.getParent());
+        Path file = blobPath(digest);
+        if (Files.exists(file)) {
+            Files.deleteIfExists(source);
+            return digest;
+        }
 
-        Files.write(
-            file,
-            previewBytes,
-            StandardOpenOption.CREATE,
-            StandardOpenOption.TRUNCATE_EXISTING,
-            StandardOpenOption.WRITE
-        );
-        logger.info("Wrote asset to {}", file);
+        Files.createDirectories(file.getParent());
+        try {
+            Files.move(source, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path temp = Files.createTempFile(file.getParent(), digest, ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            Files.deleteIfExists(source);
+        }
+        bytesWritten.increment(size);
+        logger.info("Moved blob to {}", file);
+        return digest;
     }
 
-    public Optional<AssetContent> loadAssetFile(String broadcaster, String assetId, String mediaType) {
+    public boolean blobExists(String digest) {
         try {
-            Path file = assetPath(broadcaster, assetId, mediaType);
+            return Files.exists(blobPath(digest));
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-            if (!Files.exists(file)) return Optional.empty();
+    public void deleteBlob(String digest) {
+        try {
+            Path file = blobPath(digest);
+            cache.invalidate(file);
+            Files.deleteIfExists(file);
+            logger.info("Deleted blob {}", file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete blob {}", digest, e);
+        }
+    }
 
-            byte[] bytes = Files.readAllBytes(file);
-            return Optional.of(new AssetContent(bytes, mediaType));
+    public Optional<AssetContent> loadAssetFile(String broadcaster, String assetId, String mediaType, String digest) {
+        try {
+            return readThroughCache(resolveAssetFile(broadcaster, assetId, mediaType, digest), mediaType);
         } catch (Exception e) {
             logger.warn("Failed to load asset {}", assetId, e);
             return Optional.empty();
         }
     }
 
-    public Optional<AssetContent> loadPreview(String broadcaster, String assetId) {
+    public Optional<AssetResource> loadAssetResource(
+        String broadcaster,
+        String assetId,
+        String mediaType,
+        String digest
+    ) {
         try {
-            Path file = previewPath(broadcaster, assetId);
+            Path file = resolveAssetFile(broadcaster, assetId, mediaType, digest);
             if (!Files.exists(file)) return Optional.empty();
 
-            byte[] bytes = Files.readAllBytes(file);
-            return Optional.of(new AssetContent(bytes, "image/png"));
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Resource resource = cache.admits(attributes.size())
+                ? readThroughCache(file, mediaType)
+                      .<Resource>map((content) -> new ByteArrayResource(content.bytes()))
+                      .orElseGet(() -> new MeteredFileResource(file))
+                : new MeteredFileResource(file);
+            return Optional.of(
+                new AssetResource(
+                    resource,
+                    mediaType,
+                    attributes.size(),
+                    attributes.lastModifiedTime().toInstant(),
+                    null
+                )
+            );
+        } catch (Exception e) {
+            logger.warn("Failed to resolve asset {}", assetId, e);
+            return Optional.empty();
+        }
+    }
+
+    public Optional<AssetContent> loadPreview(String broadcaster, String assetId, String digest) {
+        try {
+            Path file = digest != null && blobExists(digest) ? blobPath(digest) : previewPath(broadcaster, assetId);
+            return readThroughCache(file, "image/png");
         } catch (Exception e) {
             logger.warn("Failed to load preview {}", assetId, e);
             return Optional.empty();
         }
     }
 
-    public Optional<AssetContent> loadAssetFileSafely(String broadcaster, String assetId, String mediaType) {
+    public Optional<AssetResource> loadAssetResourceSafely(
+        String broadcaster,
+        String assetId,
+        String mediaType,
+        String digest
+    ) {
         if (mediaType == null) {
             return Optional.empty();
         }
-        return loadAssetFile(broadcaster, assetId, mediaType);
+        return loadAssetResource(broadcaster, assetId, mediaType, digest);
     }
 
-    public Optional<AssetContent> loadPreviewSafely(String broadcaster, String assetId, boolean hasPreview) {
+    public Optional<AssetContent> loadPreviewSafely(
+        String broadcaster,
+        String assetId,
+        String digest,
+        boolean hasPreview
+    ) {
         if (!hasPreview) {
             return Optional.empty();
         }
-        return loadPreview(broadcaster, assetId);
+        return loadPreview(broadcaster, assetId, digest);
     }
 
+    /**
+     * Removes files stored per asset before content was deduplicated into the blob store. Blobs are removed
+     * through {@link AssetBlobService} once nothing references them.
+     */
     public void deleteAsset(String broadcaster, String assetId, String mediaType, boolean hasPreview) {
         try {
             if (mediaType != null) {
-                Files.deleteIfExists(assetPath(broadcaster, assetId, mediaType));
+                Path file = assetPath(broadcaster, assetId, mediaType);
+                cache.invalidate(file);
+                Files.deleteIfExists(file);
             }
             if (hasPreview) {
-                Files.deleteIfExists(previewPath(broadcaster, assetId));
+                Path file = previewPath(broadcaster, assetId);
+                cache.invalidate(file);
+                Files.deleteIfExists(file);
             }
         } catch (Exception e) {
             logger.warn("Failed to delete asset {}", assetId, e);
@@ -151,20 +273,29 @@ public class AssetStorageService {
     }
 
     public void deleteOrphanedAssets(Set<String> referencedAssetIds) {
-        deleteOrphansUnder(assetRoot, referencedAssetIds);
-        deleteOrphansUnder(previewRoot, referencedAssetIds);
+        Path blobRoot = assetRoot.resolve(BLOB_DIRECTORY);
+        deleteOrphansUnder(assetRoot, (p) -> !p.startsWith(blobRoot) && isOrphan(p, referencedAssetIds));
+        deleteOrphansUnder(previewRoot, (p) -> isOrphan(p, referencedAssetIds));
+    }
+
+    public void deleteOrphanedBlobs(Set<String> referencedDigests) {
+        deleteOrphansUnder(
+            assetRoot.resolve(BLOB_DIRECTORY),
+            (p) -> !referencedDigests.contains(p.getFileName().toString())
+        );
     }
 
-    private void deleteOrphansUnder(Path root, Set<String> referencedAssetIds) {
+    private void deleteOrphansUnder(Path root, Predicate<Path> isOrphan) {
         if (!Files.exists(root)) {
             return;
         }
         try (var paths = Files.walk(root)) {
             paths
                 .filter(Files::isRegularFile)
-                .filter((p) -> isOrphan(p, referencedAssetIds))
+                .filter(isOrphan)
                 .forEach((p) -> {
                     try {
+                        cache.invalidate(p);
                         Files.delete(p);
                         logger.warn("Deleted orphan file {}", p);
                     } catch (IOException e) {
@@ -176,6 +307,23 @@ public class AssetStorageService {
         }
     }
 
+    /**
+     * Serves small files from the in-memory cache, populating it on a miss. Files above the cache's
+     * per-entry limit are read straight from disk so large videos never displace the hot set.
+     */
+    private Optional<AssetContent> readThroughCache(Path file, String mediaType) throws IOException {
+        Optional<AssetContent> cached = cache.get(file);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        if (!Files.exists(file)) return Optional.empty();
+
+        AssetContent content = new AssetContent(Files.readAllBytes(file), mediaType);
+        bytesRead.increment(content.bytes().length);
+        cache.put(file, content);
+        return Optional.of(content);
+    }
+
     private boolean isOrphan(Path file, Set<String> referencedAssetIds) {
         String name = file.getFileName().toString();
         int dot = name.indexOf('.');
@@ -184,6 +332,26 @@ public class AssetStorageService {
         return !referencedAssetIds.contains(assetId);
     }
 
+    static String sha256Hex(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream stream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            stream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     private String sanitizeUserSegment(String value) {
         if (value == null) throw new IllegalArgumentException("Broadcaster is null");
 
@@ -205,6 +373,21 @@ public class AssetStorageService {
         return safeJoin(assetRoot, safeUser).resolve(assetId + extension);
     }
 
+    private Path resolveAssetFile(String broadcaster, String assetId, String mediaType, String digest)
+        throws IOException {
+        if (digest != null && blobExists(digest)) {
+            return blobPath(digest);
+        }
+        return assetPath(broadcaster, assetId, mediaType);
+    }
+
+    private Path blobPath(String digest) throws IOException {
+        if (digest == null || !DIGEST.matcher(digest).matches()) {
+            throw new IOException("Invalid content digest: " + digest);
+        }
+        return assetRoot.resolve(BLOB_DIRECTORY).resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
     private Path previewPath(String broadcaster, String assetId) throws IOException {
         String safeUser = sanitizeUserSegment(broadcaster);
         return safeJoin(previewRoot, safeUser).resolve(assetId + ".png");
@@ -221,4 +404,38 @@ public class AssetStorageService {
         }
         return resolved;
     }
+
+    /**
+     * Streams a stored file from disk, counting the bytes actually read so partial range requests are not
+     * reported as whole-file reads.
+     */
+    private class MeteredFileResource extends FileSystemResource {
+
+        MeteredFileResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int value = super.read();
+                    if (value >= 0) {
+                        bytesRead.increment();
+                    }
+                    return value;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int count = super.read(buffer, offset, length);
+                    if (count > 0) {
+                        bytesRead.increment(count);
+                    }
+                    return count;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,292 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+import dev.kruhlmann.imgfloat.model.Asset;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetPatch;
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.AssetView;
+import dev.kruhlmann.imgfloat.model.TransformRequest;
+import dev.kruhlmann.imgfloat.model.VisualAsset;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
+import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import jakarta.annotation.PreDestroy;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Coalesces the stream of interim transforms sent while an asset is being dragged, resized or rotated. Interim
+ * transforms only update an in-memory working copy; changes are broadcast as a single {@link AssetPatch} per
+ * asset and broadcast interval, and written to the database behind the drag at a slower interval. The final
+ * transform of an interaction is committed directly and replaces any pending state.
+ */
+@Service
+public class AssetTransformCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetTransformCoalescer.class);
+    private static final long IDLE_EVICTION_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final AssetRepository assetRepository;
+    private final VisualAssetRepository visualAssetRepository;
+    private final ChannelDirectoryService channelDirectoryService;
+    private final CanvasWriteBehindService canvasWriteBehind;
+    private final ChannelEventPublisher eventPublisher;
+    private final long writeBehindNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, PendingTransform> pending = new ConcurrentHashMap<>();
+
+    public AssetTransformCoalescer(
+        AssetRepository assetRepository,
+        VisualAssetRepository visualAssetRepository,
+        ChannelDirectoryService channelDirectoryService,
+        CanvasWriteBehindService canvasWriteBehind,
+        ChannelEventPublisher eventPublisher,
+        @Value("${IMGFLOAT_TRANSFORM_BROADCAST_INTERVAL_MS:50}") long broadcastIntervalMillis,
+        @Value("${IMGFLOAT_TRANSFORM_WRITE_BEHIND_MS:1000}") long writeBehindMillis
+    ) {
+        this.assetRepository = assetRepository;
+        this.visualAssetRepository = visualAssetRepository;
+        this.channelDirectoryService = channelDirectoryService;
+        this.canvasWriteBehind = canvasWriteBehind;
+        this.eventPublisher = eventPublisher;
+        this.writeBehindNanos = TimeUnit.MILLISECONDS.toNanos(writeBehindMillis);
+        channelDirectoryService.onAssetDeleted(this::cancel);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("asset-transform-"));
+        scheduler.scheduleWithFixedDelay(
+            this::safeTick,
+            broadcastIntervalMillis,
+            broadcastIntervalMillis,
+            TimeUnit.MILLISECONDS
+        );
+        logger.info(
+            "Coalescing interim transforms every {}ms with a {}ms write-behind",
+            broadcastIntervalMillis,
+            writeBehindMillis
+        );
+    }
+
+    /**
+     * Applies an interim transform to the asset's working copy. Audio and script assets are not dragged on the
+     * canvas, so their transforms are applied immediately.
+     *
+     * @return {@code false} if the asset does not exist on the channel
+     */
+    public boolean submit(String broadcaster, String assetId, TransformRequest request) {
+        String channel = normalize(broadcaster);
+        while (true) {
+            PendingTransform entry = pending.get(assetId);
+            if (entry == null) {
+                Optional<Asset> asset = assetRepository
+                    .findById(assetId)
+                    .filter((candidate) -> channel.equals(candidate.getBroadcaster()));
+                if (asset.isEmpty()) {
+                    return false;
+                }
+                if (asset.get().getAssetType() == AssetType.AUDIO || asset.get().getAssetType() == AssetType.SCRIPT) {
+                    return channelDirectoryService.updateTransform(broadcaster, assetId, request).isPresent();
+                }
+                VisualAsset visual = canvasWriteBehind
+                    .pending(VisualAsset.class, assetId)
+                    .or(() -> visualAssetRepository.findById(assetId))
+                    .map(AssetTransformCoalescer::workingCopy)
+                    .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not visual"));
+                PendingTransform created = new PendingTransform(channel, assetId, visual);
+                entry = Optional.ofNullable(pending.putIfAbsent(assetId, created)).orElse(created);
+            }
+            if (!channel.equals(entry.broadcaster)) {
+                return false;
+            }
+            channelDirectoryService.validateVisualTransform(request);
+            synchronized (entry) {
+                if (entry.closed) {
+                    continue;
+                }
+                ChannelDirectoryService.applyVisualTransform(entry.working, request);
+                merge(entry.sinceBroadcast, request);
+                merge(entry.sincePersist, request);
+                entry.broadcastDue = true;
+                entry.persistDue = true;
+                entry.lastTouchedNanos = System.nanoTime();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Commits the final transform of an interaction. Pending interim state for the asset is dropped so a later
+     * write-behind cannot overwrite the committed values.
+     */
+    public Optional<AssetView> commit(String broadcaster, String assetId, TransformRequest request) {
+        PendingTransform entry = pending.get(assetId);
+        if (entry == null) {
+            return channelDirectoryService.updateTransform(broadcaster, assetId, request);
+        }
+        if (!normalize(broadcaster).equals(entry.broadcaster)) {
+            return Optional.empty();
+        }
+        synchronized (entry) {
+            evict(entry);
+            return channelDirectoryService.updateTransform(broadcaster, assetId, request);
+        }
+    }
+
+    /**
+     * Drops the pending state of a deleted asset. Waits for a broadcast or write-behind of the asset that is
+     * already running, so nothing is written for the asset once this returns.
+     */
+    public void cancel(String assetId) {
+        PendingTransform entry = pending.get(assetId);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            evict(entry);
+        }
+    }
+
+    void tick() {
+        long now = System.nanoTime();
+        for (PendingTransform entry : pending.values()) {
+            synchronized (entry) {
+                if (entry.closed) {
+                    continue;
+                }
+                if (entry.broadcastDue) {
+                    broadcast(entry);
+                }
+                if (entry.persistDue && now - entry.lastPersistedNanos >= writeBehindNanos) {
+                    persist(entry, now);
+                } else if (!entry.persistDue && now - entry.lastTouchedNanos >= IDLE_EVICTION_NANOS) {
+                    evict(entry);
+                }
+            }
+        }
+    }
+
+    private void safeTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            logger.error("Failed to flush coalesced transforms", e);
+        }
+    }
+
+    private void broadcast(PendingTransform entry) {
+        AssetPatch patch = AssetPatch.fromVisualTransform(entry.lastBroadcast, entry.working, entry.sinceBroadcast);
+        if (ChannelDirectoryService.hasPatchChanges(patch)) {
+            channelDirectoryService.refreshCachedTransform(entry.broadcaster, entry.assetId, entry.working);
+            eventPublisher.publish(entry.broadcaster, AssetEvent.updated(entry.broadcaster, patch));
+        }
+        entry.lastBroadcast = AssetPatch.VisualSnapshot.of(entry.working);
+        entry.sinceBroadcast = new TransformRequest();
+        entry.broadcastDue = false;
+    }
+
+    private void persist(PendingTransform entry, long now) {
+        TransformRequest changes = entry.sincePersist;
+        // Only the fields touched since the last write are applied, to whatever state is queued when they are
+        boolean stored = canvasWriteBehind.mergePending(
+            VisualAsset.class,
+            entry.assetId,
+            () -> visualAssetRepository.findById(entry.assetId),
+            (visual) -> ChannelDirectoryService.applyVisualTransform(visual, changes)
+        );
+        if (!stored) {
+            evict(entry);
+            return;
+        }
+        entry.sincePersist = new TransformRequest();
+        entry.persistDue = false;
+        entry.lastPersistedNanos = now;
+    }
+
+    private void evict(PendingTransform entry) {
+        entry.closed = true;
+        pending.remove(entry.assetId, entry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (PendingTransform entry : pending.values()) {
+            synchronized (entry) {
+                if (!entry.closed && entry.persistDue) {
+                    persist(entry, System.nanoTime());
+                }
+            }
+        }
+    }
+
+    private static void merge(TransformRequest target, TransformRequest source) {
+        if (source.getX() != null) target.setX(source.getX());
+        if (source.getY() != null) target.setY(source.getY());
+        if (source.getWidth() != null) target.setWidth(source.getWidth());
+        if (source.getHeight() != null) target.setHeight(source.getHeight());
+        if (source.getRotation() != null) target.setRotation(source.getRotation());
+        if (source.getZIndex() != null) target.setZIndex(source.getZIndex());
+        if (source.getSpeed() != null) target.setSpeed(source.getSpeed());
+        if (source.getMuted() != null) target.setMuted(source.getMuted());
+        if (source.getAudioVolume() != null) target.setAudioVolume(source.getAudioVolume());
+    }
+
+    /**
+     * Copies the transform fields of {@code visual}, so the working copy is never the instance queued for writing.
+     */
+    private static VisualAsset workingCopy(VisualAsset visual) {
+        VisualAsset copy = new VisualAsset();
+        copy.setId(visual.getId());
+        copy.setX(visual.getX());
+        copy.setY(visual.getY());
+        copy.setWidth(visual.getWidth());
+        copy.setHeight(visual.getHeight());
+        copy.setRotation(visual.getRotation());
+        copy.setZIndex(visual.getZIndex());
+        copy.setSpeed(visual.getSpeed());
+        copy.setMuted(visual.isMuted());
+        copy.setAudioVolume(visual.getAudioVolume());
+        return copy;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class PendingTransform {
+
+        private final String broadcaster;
+        private final String assetId;
+        private final VisualAsset working;
+        private AssetPatch.VisualSnapshot lastBroadcast;
+        private TransformRequest sinceBroadcast = new TransformRequest();
+        private TransformRequest sincePersist = new TransformRequest();
+        private boolean broadcastDue;
+        private boolean persistDue;
+        private boolean closed;
+        private long lastTouchedNanos = System.nanoTime();
+        private long lastPersistedNanos = System.nanoTime();
+
+        private PendingTransform(String broadcaster, String assetId, VisualAsset working) {
+            this.broadcaster = broadcaster;
+            this.assetId = assetId;
+            this.working = working;
+            this.lastBroadcast = AssetPatch.VisualSnapshot.of(working);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.UploadJob;
+import dev.kruhlmann.imgfloat.service.media.MediaUpload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Processes asset uploads on a dedicated, bounded worker pool so detection, optimization and transcoding do
+ * not hold request threads. Each channel may only have a limited number of uploads queued or in progress,
+ * and uploads are refused with 429 once the shared queue is full. Job progress is published on the channel
+ * topic and can also be polled until the job is pruned.
+ */
+@Service
+public class AssetUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetUploadService.class);
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofMinutes(15);
+
+    private final ChannelDirectoryService channelDirectoryService;
+    private final ChannelEventPublisher eventPublisher;
+    private final int maxJobsPerChannel;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> activeJobsByChannel = new ConcurrentHashMap<>();
+
+    public AssetUploadService(
+        ChannelDirectoryService channelDirectoryService,
+        ChannelEventPublisher eventPublisher,
+        MeterRegistry meterRegistry,
+        @Value("${IMGFLOAT_UPLOAD_WORKERS:2}") int workers,
+        @Value("${IMGFLOAT_UPLOAD_QUEUE_CAPACITY:32}") int queueCapacity,
+        @Value("${IMGFLOAT_UPLOAD_MAX_JOBS_PER_CHANNEL:4}") int maxJobsPerChannel
+    ) {
+        this.channelDirectoryService = channelDirectoryService;
+        this.eventPublisher = eventPublisher;
+        this.maxJobsPerChannel = maxJobsPerChannel;
+        this.executor = new ThreadPoolExecutor(
+            workers,
+            workers,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new CustomizableThreadFactory("asset-upload-"),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        new ExecutorServiceMetrics(executor, "assetUploadExecutor", Tags.empty()).bindTo(meterRegistry);
+        logger.info(
+            "Processing uploads with {} workers, {} queued jobs and {} jobs per channel",
+            workers,
+            queueCapacity,
+            maxJobsPerChannel
+        );
+    }
+
+    /**
+     * Queues the upload for processing. The service takes ownership of the upload and removes its spool file once
+     * the job has finished or been refused.
+     */
+    public UploadJob submit(String broadcaster, MediaUpload upload) {
+        pruneFinishedJobs();
+        String channel = broadcaster.toLowerCase(Locale.ROOT);
+        if (!reserveSlot(channel)) {
+            upload.close();
+            throw new ResponseStatusException(TOO_MANY_REQUESTS, "Too many uploads in progress for this channel");
+        }
+
+        UploadJob job = UploadJob.queued(channel, upload.originalFilename());
+        jobs.put(job.id(), job);
+        try {
+            executor.execute(() -> process(job, upload));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id());
+            releaseSlot(channel);
+            upload.close();
+            throw new ResponseStatusException(TOO_MANY_REQUESTS, "Upload queue is full, try again shortly");
+        }
+        publish(job);
+        return job;
+    }
+
+    public Optional<UploadJob> findJob(String broadcaster, String jobId) {
+        String channel = broadcaster.toLowerCase(Locale.ROOT);
+        return Optional.ofNullable(jobs.get(jobId)).filter((job) -> job.broadcaster().equals(channel));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void process(UploadJob queued, MediaUpload upload) {
+        UploadJob job = update(queued.processing());
+        try {
+            update(
+                channelDirectoryService
+                    .createAsset(job.broadcaster(), upload)
+                    .map(job::completed)
+                    .orElseGet(() -> job.failed("Unable to read image"))
+            );
+        } catch (ResponseStatusException e) {
+            update(job.failed(e.getReason()));
+        } catch (IOException e) {
+            logger.error("Failed to process asset upload {} for {}", job.id(), job.broadcaster(), e);
+            update(job.failed("Failed to process image"));
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error processing asset upload {} for {}", job.id(), job.broadcaster(), e);
+            update(job.failed("Failed to process image"));
+        } finally {
+            upload.close();
+            releaseSlot(job.broadcaster());
+        }
+    }
+
+    private UploadJob update(UploadJob job) {
+        jobs.put(job.id(), job);
+        publish(job);
+        return job;
+    }
+
+    private void publish(UploadJob job) {
+        eventPublisher.publish(job.broadcaster(), AssetEvent.upload(job.broadcaster(), job));
+    }
+
+    private boolean reserveSlot(String channel) {
+        boolean[] reserved = { false };
+        activeJobsByChannel.compute(channel, (key, active) -> {
+            int current = active == null ? 0 : active;
+            if (current >= maxJobsPerChannel) {
+                return active;
+            }
+            reserved[0] = true;
+            return current + 1;
+        });
+        return reserved[0];
+    }
+
+    private void releaseSlot(String channel) {
+        activeJobsByChannel.computeIfPresent(channel, (key, active) -> active <= 1 ? null : active - 1);
+    }
+
+    private void pruneFinishedJobs() {
+        Instant cutoff = Instant.now().minus(FINISHED_JOB_RETENTION);
+        jobs.values().removeIf((job) -> job.isFinished() && job.updatedAt().isBefore(cutoff));
+    }
+}
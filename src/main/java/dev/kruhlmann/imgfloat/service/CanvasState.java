@@ -0,0 +1,88 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.AssetView;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory view of one channel's assets, kept in layer order. Visual z-indices are tracked separately so the
+ * next free layer is found without scanning the channel.
+ */
+final class CanvasState {
+
+    static final Comparator<AssetView> LAYER_ORDER = Comparator.comparing((AssetView view) ->
+        view.zIndex() == null ? Integer.MAX_VALUE : view.zIndex()
+    )
+        .thenComparing(AssetView::createdAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(AssetView::id);
+
+    private final Map<String, AssetView> byId = new HashMap<>();
+    private final TreeSet<AssetView> ordered = new TreeSet<>(LAYER_ORDER);
+    private final TreeMap<Integer, Integer> visualZIndexCounts = new TreeMap<>();
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    CanvasState(Collection<AssetView> views) {
+        views.forEach(this::upsert);
+    }
+
+    synchronized CanvasState upsert(AssetView view) {
+        remove(view.id());
+        byId.put(view.id(), view);
+        ordered.add(view);
+        if (isVisual(view) && view.zIndex() != null) {
+            visualZIndexCounts.merge(view.zIndex(), 1, Integer::sum);
+        }
+        return this;
+    }
+
+    synchronized CanvasState remove(String assetId) {
+        AssetView previous = byId.remove(assetId);
+        if (previous != null) {
+            ordered.remove(previous);
+            if (isVisual(previous) && previous.zIndex() != null) {
+                visualZIndexCounts.computeIfPresent(previous.zIndex(), (zIndex, count) -> count == 1 ? null : count - 1);
+            }
+        }
+        return this;
+    }
+
+    synchronized CanvasState replace(String assetId, UnaryOperator<AssetView> change) {
+        AssetView current = byId.get(assetId);
+        return current == null ? this : upsert(change.apply(current));
+    }
+
+    synchronized List<AssetView> all() {
+        return List.copyOf(ordered);
+    }
+
+    synchronized List<AssetView> visible() {
+        return ordered.stream().filter((view) -> isVisual(view) && !view.hidden()).toList();
+    }
+
+    synchronized int nextZIndex() {
+        return visualZIndexCounts.isEmpty() ? 1 : visualZIndexCounts.lastKey() + 1;
+    }
+
+    void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    boolean idleSince(long nanos) {
+        return lastAccessNanos - nanos < 0;
+    }
+
+    private static boolean isVisual(AssetView view) {
+        return (
+            view.assetType() == AssetType.IMAGE ||
+            view.assetType() == AssetType.VIDEO ||
+            view.assetType() == AssetType.OTHER
+        );
+    }
+}
@@ -0,0 +1,58 @@
+package dev.kruhlmann.imgfloat.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the {@link CanvasState} of channels that were read recently. States are loaded on first use, updated in
+ * place by the services that change assets and dropped once a channel has not been read for the idle timeout.
+ * Loads and updates of the same channel are serialized, so an update is never lost to a concurrent load.
+ */
+@Component
+public class CanvasStateCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanvasStateCache.class);
+
+    private final long idleTimeoutNanos;
+    private final Map<String, CanvasState> states = new ConcurrentHashMap<>();
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    public CanvasStateCache(@Value("${IMGFLOAT_CANVAS_STATE_IDLE_TIMEOUT:30m}") String idleTimeout) {
+        Duration timeout = DurationStyle.detectAndParse(idleTimeout);
+        this.idleTimeoutNanos = timeout.toNanos();
+        logger.info("Keeping canvas state of idle channels for {}", timeout);
+    }
+
+    CanvasState get(String broadcaster, Function<String, CanvasState> loader) {
+        evictIdle();
+        CanvasState state = states.computeIfAbsent(broadcaster, loader);
+        state.touch();
+        return state;
+    }
+
+    /**
+     * Applies a change to a loaded state. Channels that are not loaded pick the change up from the database on
+     * their next load.
+     */
+    void update(String broadcaster, UnaryOperator<CanvasState> change) {
+        states.computeIfPresent(broadcaster, (key, state) -> change.apply(state));
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        if (now - lastSweepNanos < idleTimeoutNanos / 2) {
+            return;
+        }
+        lastSweepNanos = now;
+        long cutoff = now - idleTimeoutNanos;
+        states.entrySet().removeIf((entry) -> entry.getValue().idleSince(cutoff));
+    }
+}
@@ -0,0 +1,325 @@
+package dev.kruhlmann.imgfloat.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Single writer for canvas state updates. SQLite only allows one connection, so instead of every update running
+ * its own transaction, updates are queued and committed together by one writer thread once the batch is full or
+ * the flush interval has passed. Repeated updates to the same row before a flush are written once.
+ * <p>
+ * With {@code commit} durability callers wait until their update is committed, sharing the commit with every
+ * other update in the batch. With {@code async} durability callers return immediately and updates from the last
+ * flush interval can be lost if the process dies. Pending updates are visible through {@link #pending} and are
+ * flushed on shutdown.
+ */
+@Service
+public class CanvasWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanvasWriteBehindService.class);
+
+    public enum Durability {
+        COMMIT,
+        ASYNC,
+    }
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Durability durability;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final DistributionSummary batchSizes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queued = lock.newCondition();
+    // Held while a batch is being written so callers can wait for in-flight writes of a row to finish
+    private final ReentrantLock writing = new ReentrantLock();
+    private final Map<Key, PendingWrite> pending = new LinkedHashMap<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public CanvasWriteBehindService(
+        EntityManager entityManager,
+        TransactionTemplate transactionTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${IMGFLOAT_CANVAS_WRITE_DURABILITY:commit}") String durability,
+        @Value("${IMGFLOAT_CANVAS_WRITE_BATCH_SIZE:64}") int batchSize,
+        @Value("${IMGFLOAT_CANVAS_WRITE_INTERVAL_MS:10}") long flushIntervalMillis
+    ) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.durability = Durability.valueOf(durability.trim().toUpperCase(Locale.ROOT));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.batchSizes = DistributionSummary.builder("imgfloat.canvas.write.batch")
+            .description("Canvas state updates committed per transaction")
+            .register(meterRegistry);
+        this.writer = new CustomizableThreadFactory("canvas-writer-").newThread(this::run);
+        writer.start();
+        logger.info(
+            "Writing canvas state in batches of up to {} every {}ms with {} durability",
+            this.batchSize,
+            flushIntervalMillis,
+            this.durability.name().toLowerCase(Locale.ROOT)
+        );
+    }
+
+    /**
+     * Queues an update of an existing entity. New rows and deletions are not queued; see {@link #discard}.
+     */
+    public void save(Object entity, String id) {
+        Key key = new Key(entity.getClass(), id);
+        CompletableFuture<Void> committed;
+        lock.lock();
+        try {
+            if (!running) {
+                committed = null;
+            } else {
+                PendingWrite write = pending.computeIfAbsent(key, (ignored) -> new PendingWrite());
+                write.entity = entity;
+                committed = write.committed;
+                queued.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (committed == null) {
+            transactionTemplate.executeWithoutResult((status) -> entityManager.merge(entity));
+            return;
+        }
+        if (durability == Durability.COMMIT) {
+            awaitCommit(committed);
+        }
+    }
+
+    /**
+     * Applies {@code change} to the queued state of an entity, or to the stored state from {@code loader} when
+     * nothing is queued, and queues the result. The change is made under the queue lock, so fields that other
+     * callers queued in the meantime are kept instead of being overwritten by an older copy.
+     *
+     * @return {@code false} if the entity is neither queued nor stored
+     */
+    public <T> boolean mergePending(Class<T> type, String id, Supplier<Optional<T>> loader, Consumer<T> change) {
+        Key key = new Key(type, id);
+        CompletableFuture<Void> committed = null;
+        T detached = null;
+        lock.lock();
+        try {
+            PendingWrite write = pending.get(key);
+            if (write == null) {
+                // A batch being written may hold a newer state of the row than the database
+                writing.lock();
+                writing.unlock();
+                Optional<T> stored = loader.get();
+                if (stored.isEmpty()) {
+                    return false;
+                }
+                if (running) {
+                    write = new PendingWrite();
+                    write.entity = stored.get();
+                    pending.put(key, write);
+                } else {
+                    detached = stored.get();
+                }
+            }
+            if (write != null) {
+                change.accept(type.cast(write.entity));
+                committed = write.committed;
+                queued.signal();
+            } else {
+                change.accept(detached);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (committed == null) {
+            T entity = detached;
+            transactionTemplate.executeWithoutResult((status) -> entityManager.merge(entity));
+        } else if (durability == Durability.COMMIT) {
+            awaitCommit(committed);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the queued, not yet committed state of an entity so reads observe updates before they are flushed.
+     */
+    public <T> Optional<T> pending(Class<T> type, String id) {
+        lock.lock();
+        try {
+            PendingWrite write = pending.get(new Key(type, id));
+            return write == null ? Optional.empty() : Optional.of(type.cast(write.entity));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces entities loaded from the database with their pending state, keeping the order of the input.
+     */
+    public <T> List<T> overlay(Class<T> type, List<T> loaded, Function<T, String> idOf) {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return loaded;
+            }
+            List<T> result = new ArrayList<>(loaded.size());
+            for (T entity : loaded) {
+                PendingWrite write = pending.get(new Key(type, idOf.apply(entity)));
+                result.add(write == null ? entity : type.cast(write.entity));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a queued update and waits for any batch already being written, so that a row can be deleted without
+     * a pending update recreating it.
+     */
+    public void discard(Class<?> type, String id) {
+        PendingWrite write;
+        lock.lock();
+        try {
+            write = pending.remove(new Key(type, id));
+        } finally {
+            lock.unlock();
+        }
+        if (write != null) {
+            write.committed.complete(null);
+        }
+        writing.lock();
+        writing.unlock();
+    }
+
+    private void run() {
+        while (true) {
+            List<PendingWrite> batch;
+            lock.lock();
+            try {
+                while (running && pending.isEmpty()) {
+                    queued.awaitUninterruptibly();
+                }
+                if (!running && pending.isEmpty()) {
+                    return;
+                }
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (running && pending.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    queued.awaitNanos(remaining);
+                }
+                batch = drainBatch();
+                writing.lock();
+            } catch (InterruptedException e) {
+                // The writer is never interrupted on purpose; keep draining so queued updates are not lost
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                write(batch);
+            } finally {
+                writing.unlock();
+            }
+        }
+    }
+
+    private List<PendingWrite> drainBatch() {
+        List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<PendingWrite> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    private void write(List<PendingWrite> batch) {
+        try {
+            transactionTemplate.executeWithoutResult((status) ->
+                batch.forEach((write) -> entityManager.merge(write.entity))
+            );
+            batchSizes.record(batch.size());
+            batch.forEach((write) -> write.committed.complete(null));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+            // Retry row by row so that one bad update does not take the rest of the batch with it
+            logger.warn("Failed to write batch of {} canvas updates, retrying individually", batch.size(), e);
+            for (PendingWrite write : batch) {
+                write(List.of(write));
+            }
+        }
+    }
+
+    private void fail(PendingWrite write, RuntimeException e) {
+        logger.error("Failed to write canvas update for {}", write.entity.getClass().getSimpleName(), e);
+        write.committed.completeExceptionally(e);
+    }
+
+    private static void awaitCommit(CompletableFuture<Void> committed) {
+        try {
+            committed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            queued.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warn("Canvas writer did not finish flushing pending updates before shutdown");
+        }
+    }
+
+    private record Key(Class<?> type, String id) {}
+
+    private static final class PendingWrite {
+
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+        private Object entity;
+    }
+}
@@ -27,19 +27,28 @@ import dev.kruhlmann.imgfloat.repository.ChannelRepository;
 import dev.kruhlmann.imgfloat.repository.ScriptAssetRepository;
 import dev.kruhlmann.imgfloat.repository.ScriptAssetAttachmentRepository;
 import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import dev.kruhlmann.imgfloat.service.AssetBlobService.StoredMedia;
 import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import dev.kruhlmann.imgfloat.service.media.AssetResource;
 import dev.kruhlmann.imgfloat.service.media.MediaDetectionService;
 import dev.kruhlmann.imgfloat.service.media.MediaOptimizationService;
+import dev.kruhlmann.imgfloat.service.media.MediaUpload;
 import dev.kruhlmann.imgfloat.service.media.OptimizedAsset;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
@@ -57,12 +66,23 @@ public class ChannelDirectoryService {
     private final AudioAssetRepository audioAssetRepository;
     private final ScriptAssetRepository scriptAssetRepository;
     private final ScriptAssetAttachmentRepository scriptAssetAttachmentRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelEventPublisher eventPublisher;
     private final AssetStorageService assetStorageService;
+    private final AssetBlobService assetBlobService;
     private final MediaDetectionService mediaDetectionService;
     private final MediaOptimizationService mediaOptimizationService;
     private final SettingsService settingsService;
+    private final CanvasWriteBehindService canvasWriteBehind;
+    private final CanvasStateCache canvasStates;
+    private final PermissionCache permissions;
+    private final MeterRegistry meterRegistry;
+    private final Timer detectStageTimer;
+    private final Timer optimizeStageTimer;
+    private final Timer storeStageTimer;
+    private final Timer persistStageTimer;
+    private final Counter reusedUploads;
     private final long uploadLimitBytes;
+    private final List<Consumer<String>> deletionListeners = new CopyOnWriteArrayList<>();
 
     @Autowired
     public ChannelDirectoryService(
@@ -72,11 +92,16 @@ public class ChannelDirectoryService {
         AudioAssetRepository audioAssetRepository,
         ScriptAssetRepository scriptAssetRepository,
         ScriptAssetAttachmentRepository scriptAssetAttachmentRepository,
-        SimpMessagingTemplate messagingTemplate,
+        ChannelEventPublisher eventPublisher,
         AssetStorageService assetStorageService,
+        AssetBlobService assetBlobService,
         MediaDetectionService mediaDetectionService,
         MediaOptimizationService mediaOptimizationService,
         SettingsService settingsService,
+        CanvasWriteBehindService canvasWriteBehind,
+        CanvasStateCache canvasStates,
+        PermissionCache permissions,
+        MeterRegistry meterRegistry,
         long uploadLimitBytes
     ) {
         this.channelRepository = channelRepository;
@@ -85,17 +110,40 @@ public class ChannelDirectoryService {
         this.audioAssetRepository = audioAssetRepository;
         this.scriptAssetRepository = scriptAssetRepository;
         this.scriptAssetAttachmentRepository = scriptAssetAttachmentRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.eventPublisher = eventPublisher;
         this.assetStorageService = assetStorageService;
+        this.assetBlobService = assetBlobService;
         this.mediaDetectionService = mediaDetectionService;
         this.mediaOptimizationService = mediaOptimizationService;
         this.settingsService = settingsService;
+        this.canvasWriteBehind = canvasWriteBehind;
+        this.canvasStates = canvasStates;
+        this.permissions = permissions;
+        this.meterRegistry = meterRegistry;
+        this.detectStageTimer = uploadStageTimer(meterRegistry, "detect");
+        this.optimizeStageTimer = uploadStageTimer(meterRegistry, "optimize");
+        this.storeStageTimer = uploadStageTimer(meterRegistry, "store");
+        this.persistStageTimer = uploadStageTimer(meterRegistry, "persist");
+        this.reusedUploads = Counter.builder("imgfloat.upload.reused")
+            .description("Uploads served from previously optimized content instead of being optimized again")
+            .register(meterRegistry);
         this.uploadLimitBytes = uploadLimitBytes;
     }
 
+    /**
+     * Registers a callback that is given the id of every deleted asset before its rows are removed, for services
+     * that hold state for the asset and cannot depend on this one directly.
+     */
+    void onAssetDeleted(Consumer<String> listener) {
+        deletionListeners.add(listener);
+    }
+
     public Channel getOrCreateChannel(String broadcaster) {
         String normalized = normalize(broadcaster);
-        return channelRepository.findById(normalized).orElseGet(() -> channelRepository.save(new Channel(normalized)));
+        return canvasWriteBehind
+            .pending(Channel.class, normalized)
+            .or(() -> channelRepository.findById(normalized))
+            .orElseGet(() -> channelRepository.save(new Channel(normalized)));
     }
 
     public List<String> searchBroadcasters(String query) {
@@ -112,7 +160,8 @@ public class ChannelDirectoryService {
         boolean added = channel.addAdmin(username);
         if (added) {
             channelRepository.saveAndFlush(channel);
-            messagingTemplate.convertAndSend(topicFor(broadcaster), "Admin added: " + username);
+            permissions.invalidateAdmin(channel.getBroadcaster(), normalize(username));
+            eventPublisher.publish(broadcaster, "Admin added: " + username);
         }
         return added;
     }
@@ -122,40 +171,18 @@ public class ChannelDirectoryService {
         boolean removed = channel.removeAdmin(username);
         if (removed) {
             channelRepository.saveAndFlush(channel);
-            messagingTemplate.convertAndSend(topicFor(broadcaster), "Admin removed: " + username);
+            permissions.invalidateAdmin(channel.getBroadcaster(), normalize(username));
+            eventPublisher.publish(broadcaster, "Admin removed: " + username);
         }
         return removed;
     }
 
     public Collection<AssetView> getAssetsForAdmin(String broadcaster) {
-        String normalized = normalize(broadcaster);
-        return sortAndMapAssets(normalized, assetRepository.findByBroadcaster(normalized));
+        return canvasState(broadcaster).all();
     }
 
     public Collection<AssetView> getVisibleAssets(String broadcaster) {
-        String normalized = normalize(broadcaster);
-        List<Asset> assets = assetRepository.findByBroadcaster(normalized);
-        List<String> visualIds = assets
-            .stream()
-            .filter(
-                (asset) ->
-                    asset.getAssetType() == AssetType.IMAGE ||
-                    asset.getAssetType() == AssetType.VIDEO ||
-                    asset.getAssetType() == AssetType.OTHER
-            )
-            .map(Asset::getId)
-            .toList();
-        Map<String, Asset> assetById = assets.stream().collect(Collectors.toMap(Asset::getId, (asset) -> asset));
-        return visualAssetRepository
-            .findByIdInAndHiddenFalse(visualIds)
-            .stream()
-            .map((visual) -> {
-                Asset asset = assetById.get(visual.getId());
-                return asset == null ? null : AssetView.fromVisual(normalized, asset, visual);
-            })
-            .filter(Objects::nonNull)
-            .sorted(Comparator.comparingInt(AssetView::zIndex))
-            .toList();
+        return canvasState(broadcaster).visible();
     }
 
     public CanvasSettingsRequest getCanvasSettings(String broadcaster) {
@@ -167,64 +194,58 @@ public class ChannelDirectoryService {
         Channel channel = getOrCreateChannel(broadcaster);
         channel.setCanvasWidth(req.getWidth());
         channel.setCanvasHeight(req.getHeight());
-        channelRepository.save(channel);
+        canvasWriteBehind.save(channel, channel.getBroadcaster());
         CanvasSettingsRequest response = new CanvasSettingsRequest(channel.getCanvasWidth(), channel.getCanvasHeight());
-        messagingTemplate.convertAndSend(topicFor(broadcaster), CanvasEvent.updated(broadcaster, response));
+        eventPublisher.publish(broadcaster, CanvasEvent.updated(broadcaster, response));
         return response;
     }
 
     public Optional<AssetView> createAsset(String broadcaster, MultipartFile file) throws IOException {
-        long fileSize = file.getSize();
-        if (fileSize > uploadLimitBytes) {
-            throw new ResponseStatusException(
-                PAYLOAD_TOO_LARGE,
-                String.format(
-                    "Uploaded file is too large (%d bytes). Maximum allowed is %d bytes.",
-                    fileSize,
-                    uploadLimitBytes
-                )
-            );
+        enforceUploadLimit(file.getSize());
+        try (MediaUpload upload = MediaUpload.from(file)) {
+            return createAsset(broadcaster, upload);
         }
+    }
+
+    public Optional<AssetView> createAsset(String broadcaster, MediaUpload upload) throws IOException {
+        enforceUploadLimit(upload.size());
         Channel channel = getOrCreateChannel(broadcaster);
-        byte[] bytes = file.getBytes();
+        Timer.Sample detection = Timer.start(meterRegistry);
         String mediaType = mediaDetectionService
-            .detectAllowedMediaType(file, bytes)
+            .detectAllowedMediaType(upload)
             .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Unsupported media type"));
+        detection.stop(detectStageTimer);
 
-        OptimizedAsset optimized = mediaOptimizationService.optimizeAsset(bytes, mediaType);
-        if (optimized == null) {
+        Optional<StoredMedia> maybeStored = storeOptimized(upload, mediaType);
+        if (maybeStored.isEmpty()) {
             return Optional.empty();
         }
+        StoredMedia stored = maybeStored.get();
 
-        String safeName = Optional.ofNullable(file.getOriginalFilename())
+        String safeName = Optional.ofNullable(upload.originalFilename())
             .map(this::sanitizeFilename)
             .filter((s) -> !s.isBlank())
             .orElse("asset_" + System.currentTimeMillis());
 
-        boolean isAudio = optimized.mediaType().startsWith("audio/");
-        boolean isCode = isCodeMediaType(optimized.mediaType()) || isCodeMediaType(mediaType);
-        AssetType assetType = AssetType.fromMediaType(optimized.mediaType(), mediaType);
+        boolean isAudio = stored.mediaType().startsWith("audio/");
+        boolean isCode = isCodeMediaType(stored.mediaType()) || isCodeMediaType(mediaType);
+        AssetType assetType = AssetType.fromMediaType(stored.mediaType(), mediaType);
         Asset asset = new Asset(channel.getBroadcaster(), assetType);
-
-        assetStorageService.storeAsset(
-            channel.getBroadcaster(),
-            asset.getId(),
-            optimized.bytes(),
-            optimized.mediaType()
-        );
+        asset.setContentHash(stored.contentHash());
 
         AssetView view;
+        Timer.Sample persisting = Timer.start(meterRegistry);
         asset = assetRepository.save(asset);
 
         if (isAudio) {
             AudioAsset audio = new AudioAsset(asset.getId(), safeName);
-            audio.setMediaType(optimized.mediaType());
+            audio.setMediaType(stored.mediaType());
             audio.setOriginalMediaType(mediaType);
             audioAssetRepository.save(audio);
             view = AssetView.fromAudio(channel.getBroadcaster(), asset, audio);
         } else if (isCode) {
             ScriptAsset script = new ScriptAsset(asset.getId(), safeName);
-            script.setMediaType(optimized.mediaType());
+            script.setMediaType(stored.mediaType());
             script.setOriginalMediaType(mediaType);
             script.setAttachments(List.of());
             scriptAssetRepository.save(script);
@@ -232,20 +253,22 @@ public class ChannelDirectoryService {
         } else {
             double defaultWidth = 640;
             double defaultHeight = 360;
-            double width = optimized.width() > 0 ? optimized.width() : defaultWidth;
-            double height = optimized.height() > 0 ? optimized.height() : defaultHeight;
+            double width = stored.width() > 0 ? stored.width() : defaultWidth;
+            double height = stored.height() > 0 ? stored.height() : defaultHeight;
             VisualAsset visual = new VisualAsset(asset.getId(), safeName, width, height);
             visual.setOriginalMediaType(mediaType);
-            visual.setMediaType(optimized.mediaType());
-            visual.setMuted(optimized.mediaType().startsWith("video/"));
+            visual.setMediaType(stored.mediaType());
+            visual.setMuted(stored.mediaType().startsWith("video/"));
             visual.setZIndex(nextZIndex(channel.getBroadcaster()));
-            assetStorageService.storePreview(channel.getBroadcaster(), asset.getId(), optimized.previewBytes());
-            visual.setPreview(optimized.previewBytes() != null ? asset.getId() + ".png" : "");
+            visual.setPreview(stored.previewHash() != null ? asset.getId() + ".png" : "");
+            visual.setPreviewHash(stored.previewHash());
             visualAssetRepository.save(visual);
             view = AssetView.fromVisual(channel.getBroadcaster(), asset, visual);
         }
+        persisting.stop(persistStageTimer);
 
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.created(broadcaster, view));
+        publishState(channel.getBroadcaster(), view);
+        eventPublisher.publish(broadcaster, AssetEvent.created(broadcaster, view));
 
         return Optional.of(view);
     }
@@ -259,7 +282,7 @@ public class ChannelDirectoryService {
         Asset asset = new Asset(channel.getBroadcaster(), AssetType.SCRIPT);
 
         try {
-            assetStorageService.storeAsset(channel.getBroadcaster(), asset.getId(), bytes, DEFAULT_CODE_MEDIA_TYPE);
+            asset.setContentHash(assetBlobService.retain(bytes));
         } catch (IOException e) {
             throw new ResponseStatusException(BAD_REQUEST, "Unable to store custom script", e);
         }
@@ -271,7 +294,8 @@ public class ChannelDirectoryService {
         script.setAttachments(List.of());
         scriptAssetRepository.save(script);
         AssetView view = AssetView.fromScript(channel.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.created(broadcaster, view));
+        publishState(channel.getBroadcaster(), view);
+        eventPublisher.publish(broadcaster, AssetEvent.created(broadcaster, view));
         return Optional.of(view);
     }
 
@@ -295,15 +319,19 @@ public class ChannelDirectoryService {
                 script.setOriginalMediaType(DEFAULT_CODE_MEDIA_TYPE);
                 script.setMediaType(DEFAULT_CODE_MEDIA_TYPE);
                 script.setAttachments(loadScriptAttachments(normalized, asset.getId(), null));
+                String previousHash = asset.getContentHash();
                 try {
-                    assetStorageService.storeAsset(broadcaster, asset.getId(), bytes, DEFAULT_CODE_MEDIA_TYPE);
+                    asset.setContentHash(assetBlobService.retain(bytes));
                 } catch (IOException e) {
                     throw new ResponseStatusException(BAD_REQUEST, "Unable to store custom script", e);
                 }
+                assetStorageService.deleteAsset(asset.getBroadcaster(), asset.getId(), DEFAULT_CODE_MEDIA_TYPE, false);
+                assetBlobService.release(previousHash);
                 assetRepository.save(asset);
                 scriptAssetRepository.save(script);
                 AssetView view = AssetView.fromScript(normalized, asset, script);
-                messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, view));
+                publishState(normalized, view);
+                eventPublisher.publish(broadcaster, AssetEvent.updated(broadcaster, view));
                 return view;
             });
     }
@@ -321,9 +349,9 @@ public class ChannelDirectoryService {
             .filter((asset) -> normalized.equals(asset.getBroadcaster()))
             .map((asset) -> {
                 if (asset.getAssetType() == AssetType.AUDIO) {
-                    AudioAsset audio = audioAssetRepository
-                        .findById(asset.getId())
-                        .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not audio"));
+                    AudioAsset audio = findAudio(asset.getId()).orElseThrow(() ->
+                        new ResponseStatusException(BAD_REQUEST, "Asset is not audio")
+                    );
                     AssetPatch.AudioSnapshot before = new AssetPatch.AudioSnapshot(
                         audio.isAudioLoop(),
                         audio.getAudioDelayMillis(),
@@ -337,11 +365,12 @@ public class ChannelDirectoryService {
                     if (req.getAudioSpeed() != null) audio.setAudioSpeed(req.getAudioSpeed());
                     if (req.getAudioPitch() != null) audio.setAudioPitch(req.getAudioPitch());
                     if (req.getAudioVolume() != null) audio.setAudioVolume(req.getAudioVolume());
-                    audioAssetRepository.save(audio);
+                    canvasWriteBehind.save(audio, audio.getId());
                     AssetView view = AssetView.fromAudio(normalized, asset, audio);
+                    publishState(normalized, view);
                     AssetPatch patch = AssetPatch.fromAudioTransform(before, audio, req);
                     if (hasPatchChanges(patch)) {
-                        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, patch));
+                        eventPublisher.publish(broadcaster, AssetEvent.updated(broadcaster, patch));
                     }
                     return view;
                 }
@@ -354,44 +383,37 @@ public class ChannelDirectoryService {
                     return AssetView.fromScript(normalized, asset, script);
                 }
 
-                VisualAsset visual = visualAssetRepository
-                    .findById(asset.getId())
-                    .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not visual"));
-                AssetPatch.VisualSnapshot before = new AssetPatch.VisualSnapshot(
-                    visual.getX(),
-                    visual.getY(),
-                    visual.getWidth(),
-                    visual.getHeight(),
-                    visual.getRotation(),
-                    visual.getSpeed(),
-                    visual.isMuted(),
-                    visual.getZIndex(),
-                    visual.getAudioVolume()
+                VisualAsset visual = findVisual(asset.getId()).orElseThrow(() ->
+                    new ResponseStatusException(BAD_REQUEST, "Asset is not visual")
                 );
+                AssetPatch.VisualSnapshot before = AssetPatch.VisualSnapshot.of(visual);
                 validateVisualTransform(req);
-
-                if (req.getX() != null) visual.setX(req.getX());
-                if (req.getY() != null) visual.setY(req.getY());
-                if (req.getWidth() != null) visual.setWidth(req.getWidth());
-                if (req.getHeight() != null) visual.setHeight(req.getHeight());
-                if (req.getRotation() != null) visual.setRotation(req.getRotation());
-                if (req.getZIndex() != null) visual.setZIndex(req.getZIndex());
-                if (req.getSpeed() != null) visual.setSpeed(req.getSpeed());
-                if (req.getMuted() != null) visual.setMuted(req.getMuted());
-                if (req.getAudioVolume() != null) visual.setAudioVolume(req.getAudioVolume());
-
-                visualAssetRepository.save(visual);
+                applyVisualTransform(visual, req);
+                canvasWriteBehind.save(visual, visual.getId());
 
                 AssetView view = AssetView.fromVisual(normalized, asset, visual);
+                publishState(normalized, view);
                 AssetPatch patch = AssetPatch.fromVisualTransform(before, visual, req);
                 if (hasPatchChanges(patch)) {
-                    messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, patch));
+                    eventPublisher.publish(broadcaster, AssetEvent.updated(broadcaster, patch));
                 }
                 return view;
             });
     }
 
-    private void validateVisualTransform(TransformRequest req) {
+    static void applyVisualTransform(VisualAsset visual, TransformRequest req) {
+        if (req.getX() != null) visual.setX(req.getX());
+        if (req.getY() != null) visual.setY(req.getY());
+        if (req.getWidth() != null) visual.setWidth(req.getWidth());
+        if (req.getHeight() != null) visual.setHeight(req.getHeight());
+        if (req.getRotation() != null) visual.setRotation(req.getRotation());
+        if (req.getZIndex() != null) visual.setZIndex(req.getZIndex());
+        if (req.getSpeed() != null) visual.setSpeed(req.getSpeed());
+        if (req.getMuted() != null) visual.setMuted(req.getMuted());
+        if (req.getAudioVolume() != null) visual.setAudioVolume(req.getAudioVolume());
+    }
+
+    void validateVisualTransform(TransformRequest req) {
         Settings settings = settingsService.get();
         double maxSpeed = settings.getMaxAssetPlaybackSpeedFraction();
         double minSpeed = settings.getMinAssetPlaybackSpeedFraction();
@@ -462,7 +484,7 @@ public class ChannelDirectoryService {
                     throw new ResponseStatusException(BAD_REQUEST, "Asset data missing");
                 }
                 boolean play = req == null || req.getPlay();
-                messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.play(broadcaster, view, play));
+                eventPublisher.publish(broadcaster, AssetEvent.play(broadcaster, view, play));
                 return view;
             });
     }
@@ -475,21 +497,19 @@ public class ChannelDirectoryService {
             .map((asset) -> {
                 boolean hidden = request.isHidden();
                 if (asset.getAssetType() == AssetType.AUDIO) {
-                    AudioAsset audio = audioAssetRepository
-                        .findById(asset.getId())
-                        .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not audio"));
+                    AudioAsset audio = findAudio(asset.getId()).orElseThrow(() ->
+                        new ResponseStatusException(BAD_REQUEST, "Asset is not audio")
+                    );
                     if (audio.isHidden() == hidden) {
                         return AssetView.fromAudio(normalized, asset, audio);
                     }
                     audio.setHidden(hidden);
-                    audioAssetRepository.save(audio);
+                    canvasWriteBehind.save(audio, audio.getId());
                     AssetView view = AssetView.fromAudio(normalized, asset, audio);
+                    publishState(normalized, view);
                     AssetPatch patch = AssetPatch.fromVisibility(asset.getId(), hidden);
                     AssetView payload = hidden ? null : view;
-                    messagingTemplate.convertAndSend(
-                        topicFor(broadcaster),
-                        AssetEvent.visibility(broadcaster, patch, payload)
-                    );
+                    eventPublisher.publish(broadcaster, AssetEvent.visibility(broadcaster, patch, payload));
                     return view;
                 }
 
@@ -501,21 +521,19 @@ public class ChannelDirectoryService {
                     return AssetView.fromScript(normalized, asset, script);
                 }
 
-                VisualAsset visual = visualAssetRepository
-                    .findById(asset.getId())
-                    .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not visual"));
+                VisualAsset visual = findVisual(asset.getId()).orElseThrow(() ->
+                    new ResponseStatusException(BAD_REQUEST, "Asset is not visual")
+                );
                 if (visual.isHidden() == hidden) {
                     return AssetView.fromVisual(normalized, asset, visual);
                 }
                 visual.setHidden(hidden);
-                visualAssetRepository.save(visual);
+                canvasWriteBehind.save(visual, visual.getId());
                 AssetView view = AssetView.fromVisual(normalized, asset, visual);
+                publishState(normalized, view);
                 AssetPatch patch = AssetPatch.fromVisibility(asset.getId(), hidden);
                 AssetView payload = hidden ? null : view;
-                messagingTemplate.convertAndSend(
-                    topicFor(broadcaster),
-                    AssetEvent.visibility(broadcaster, patch, payload)
-                );
+                eventPublisher.publish(broadcaster, AssetEvent.visibility(broadcaster, patch, payload));
                 return view;
             });
     }
@@ -524,27 +542,34 @@ public class ChannelDirectoryService {
         return assetRepository
             .findById(assetId)
             .map((asset) -> {
+                deletionListeners.forEach((listener) -> listener.accept(asset.getId()));
                 deleteAssetStorage(asset);
                 switch (asset.getAssetType()) {
-                    case AUDIO -> audioAssetRepository.deleteById(asset.getId());
+                    case AUDIO -> {
+                        canvasWriteBehind.discard(AudioAsset.class, asset.getId());
+                        audioAssetRepository.deleteById(asset.getId());
+                    }
                     case SCRIPT -> {
                         scriptAssetAttachmentRepository.deleteByScriptAssetId(asset.getId());
                         scriptAssetRepository.deleteById(asset.getId());
                     }
-                    default -> visualAssetRepository.deleteById(asset.getId());
+                    default -> {
+                        canvasWriteBehind.discard(VisualAsset.class, asset.getId());
+                        visualAssetRepository.deleteById(asset.getId());
+                    }
                 }
                 assetRepository.delete(asset);
-                messagingTemplate.convertAndSend(
-                    topicFor(asset.getBroadcaster()),
-                    AssetEvent.deleted(asset.getBroadcaster(), assetId)
-                );
+                canvasStates.update(asset.getBroadcaster(), (state) -> state.remove(assetId));
+                eventPublisher.publish(asset.getBroadcaster(), AssetEvent.deleted(asset.getBroadcaster(), assetId));
                 return true;
             })
             .orElse(false);
     }
 
-    public Optional<AssetContent> getAssetContent(String assetId) {
-        return assetRepository.findById(assetId).flatMap(this::loadAssetContent);
+    public Optional<AssetResource> getAssetContent(String assetId) {
+        return assetRepository
+            .findById(assetId)
+            .flatMap((asset) -> loadAssetContent(asset).map((resource) -> resource.withDigest(asset.getContentHash())));
     }
 
     public List<ScriptAssetAttachmentView> listScriptAttachments(String broadcaster, String scriptAssetId) {
@@ -557,33 +582,30 @@ public class ChannelDirectoryService {
         String scriptAssetId,
         MultipartFile file
     ) throws IOException {
-        long fileSize = file.getSize();
-        if (fileSize > uploadLimitBytes) {
-            throw new ResponseStatusException(
-                PAYLOAD_TOO_LARGE,
-                String.format(
-                    "Uploaded file is too large (%d bytes). Maximum allowed is %d bytes.",
-                    fileSize,
-                    uploadLimitBytes
-                )
-            );
-        }
+        enforceUploadLimit(file.getSize());
 
         Asset asset = requireScriptAssetForBroadcaster(broadcaster, scriptAssetId);
-        byte[] bytes = file.getBytes();
-        String mediaType = mediaDetectionService
-            .detectAllowedMediaType(file, bytes)
-            .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Unsupported media type"));
-
-        OptimizedAsset optimized = mediaOptimizationService.optimizeAsset(bytes, mediaType);
-        if (optimized == null) {
+        String mediaType;
+        Optional<StoredMedia> maybeStored;
+        try (MediaUpload upload = MediaUpload.from(file)) {
+            mediaType = mediaDetectionService
+                .detectAllowedMediaType(upload)
+                .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Unsupported media type"));
+            maybeStored = storeOptimized(upload, mediaType);
+        }
+        if (maybeStored.isEmpty()) {
             return Optional.empty();
         }
+        StoredMedia stored = maybeStored.get();
 
-        AssetType assetType = AssetType.fromMediaType(optimized.mediaType(), mediaType);
+        AssetType assetType = AssetType.fromMediaType(stored.mediaType(), mediaType);
         if (assetType != AssetType.AUDIO && assetType != AssetType.IMAGE && assetType != AssetType.VIDEO) {
+            assetBlobService.release(stored.contentHash());
+            assetBlobService.release(stored.previewHash());
             throw new ResponseStatusException(BAD_REQUEST, "Only image, video, or audio attachments are supported.");
         }
+        // Attachments have no preview of their own.
+        assetBlobService.release(stored.previewHash());
 
         String safeName = Optional.ofNullable(file.getOriginalFilename())
             .map(this::sanitizeFilename)
@@ -591,11 +613,10 @@ public class ChannelDirectoryService {
             .orElse("script_attachment_" + System.currentTimeMillis());
 
         ScriptAssetAttachment attachment = new ScriptAssetAttachment(asset.getId(), safeName);
-        attachment.setMediaType(optimized.mediaType());
+        attachment.setMediaType(stored.mediaType());
         attachment.setOriginalMediaType(mediaType);
         attachment.setAssetType(assetType);
-
-        assetStorageService.storeAsset(asset.getBroadcaster(), attachment.getId(), optimized.bytes(), optimized.mediaType());
+        attachment.setContentHash(stored.contentHash());
         attachment = scriptAssetAttachmentRepository.save(attachment);
         ScriptAssetAttachmentView view = ScriptAssetAttachmentView.fromAttachment(asset.getBroadcaster(), attachment);
 
@@ -604,7 +625,8 @@ public class ChannelDirectoryService {
             .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not a script"));
         script.setAttachments(loadScriptAttachments(asset.getBroadcaster(), asset.getId(), null));
         AssetView scriptView = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, scriptView));
+        publishState(asset.getBroadcaster(), scriptView);
+        eventPublisher.publish(broadcaster, AssetEvent.updated(broadcaster, scriptView));
 
         return Optional.of(view);
     }
@@ -618,12 +640,7 @@ public class ChannelDirectoryService {
         if (attachment == null) {
             return false;
         }
-        assetStorageService.deleteAsset(
-            asset.getBroadcaster(),
-            attachment.getId(),
-            attachment.getMediaType(),
-            false
-        );
+        deleteAttachmentStorage(asset.getBroadcaster(), attachment);
         scriptAssetAttachmentRepository.deleteById(attachment.getId());
 
         ScriptAsset script = scriptAssetRepository
@@ -631,11 +648,12 @@ public class ChannelDirectoryService {
             .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not a script"));
         script.setAttachments(loadScriptAttachments(asset.getBroadcaster(), asset.getId(), null));
         AssetView scriptView = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, scriptView));
+        publishState(asset.getBroadcaster(), scriptView);
+        eventPublisher.publish(broadcaster, AssetEvent.updated(broadcaster, scriptView));
         return true;
     }
 
-    public Optional<AssetContent> getScriptAttachmentContent(
+    public Optional<AssetResource> getScriptAttachmentContent(
         String broadcaster,
         String scriptAssetId,
         String attachmentId
@@ -652,11 +670,14 @@ public class ChannelDirectoryService {
             .findById(attachmentId)
             .filter((item) -> item.getScriptAssetId().equals(scriptAssetId))
             .flatMap((attachment) ->
-                assetStorageService.loadAssetFileSafely(
-                    asset.getBroadcaster(),
-                    attachment.getId(),
-                    attachment.getMediaType()
-                )
+                assetStorageService
+                    .loadAssetResourceSafely(
+                        asset.getBroadcaster(),
+                        attachment.getId(),
+                        attachment.getMediaType(),
+                        attachment.getContentHash()
+                    )
+                    .map((resource) -> resource.withDigest(attachment.getContentHash()))
             );
     }
 
@@ -665,22 +686,21 @@ public class ChannelDirectoryService {
     }
 
     public boolean isAdmin(String broadcaster, String username) {
-        return channelRepository
-            .findById(normalize(broadcaster))
-            .map(Channel::getAdmins)
-            .map((admins) -> admins.contains(normalize(username)))
-            .orElse(false);
+        String channel = normalize(broadcaster);
+        String login = normalize(username);
+        return permissions.channelAdmin(channel, login, () ->
+            channelRepository
+                .findById(channel)
+                .map(Channel::getAdmins)
+                .map((admins) -> admins.contains(login))
+                .orElse(false)
+        );
     }
 
     public Collection<String> adminChannelsFor(String username) {
         if (username == null) return List.of();
-        String login = username.toLowerCase();
-        return channelRepository
-            .findAll()
-            .stream()
-            .filter((c) -> c.getAdmins().contains(login))
-            .map(Channel::getBroadcaster)
-            .toList();
+        String login = normalize(username);
+        return permissions.adminChannels(login, () -> channelRepository.findBroadcastersByAdmin(login));
     }
 
     private String normalize(String value) {
@@ -701,7 +721,7 @@ public class ChannelDirectoryService {
         }
     }
 
-    private void enforceUploadLimit(long sizeBytes) {
+    public void enforceUploadLimit(long sizeBytes) {
         if (sizeBytes > uploadLimitBytes) {
             throw new ResponseStatusException(
                 PAYLOAD_TOO_LARGE,
@@ -714,11 +734,7 @@ public class ChannelDirectoryService {
         }
     }
 
-    private String topicFor(String broadcaster) {
-        return "/topic/channel/" + broadcaster.toLowerCase(Locale.ROOT);
-    }
-
-    private List<AssetView> sortAndMapAssets(String broadcaster, Collection<Asset> assets) {
+    private List<AssetView> mapAssets(String broadcaster, Collection<Asset> assets) {
         List<String> audioIds = assets
             .stream()
             .filter((asset) -> asset.getAssetType() == AssetType.AUDIO)
@@ -740,12 +756,11 @@ public class ChannelDirectoryService {
             .map(Asset::getId)
             .toList();
 
-        Map<String, VisualAsset> visuals = visualAssetRepository
-            .findByIdIn(visualIds)
+        Map<String, VisualAsset> visuals = findVisuals(visualIds)
             .stream()
             .collect(Collectors.toMap(VisualAsset::getId, (asset) -> asset));
-        Map<String, AudioAsset> audios = audioAssetRepository
-            .findByIdIn(audioIds)
+        Map<String, AudioAsset> audios = canvasWriteBehind
+            .overlay(AudioAsset.class, audioAssetRepository.findByIdIn(audioIds), AudioAsset::getId)
             .stream()
             .collect(Collectors.toMap(AudioAsset::getId, (asset) -> asset));
         Map<String, ScriptAsset> scripts = scriptAssetRepository
@@ -771,35 +786,43 @@ public class ChannelDirectoryService {
             .stream()
             .map((asset) -> resolveAssetView(broadcaster, asset, visuals, audios, scripts, scriptAttachments))
             .filter(Objects::nonNull)
-            .sorted(
-                Comparator.comparing((AssetView view) ->
-                    view.zIndex() == null ? Integer.MAX_VALUE : view.zIndex()
-                ).thenComparing(AssetView::createdAt, Comparator.nullsFirst(Comparator.naturalOrder()))
-            )
             .toList();
     }
 
     private int nextZIndex(String broadcaster) {
-        return (
-            visualAssetRepository
-                .findByIdIn(assetsWithType(normalize(broadcaster), AssetType.IMAGE, AssetType.VIDEO, AssetType.OTHER))
-                .stream()
-                .mapToInt(VisualAsset::getZIndex)
-                .max()
-                .orElse(0) +
-            1
+        return canvasState(broadcaster).nextZIndex();
+    }
+
+    private CanvasState canvasState(String broadcaster) {
+        return canvasStates.get(normalize(broadcaster), (channel) ->
+            new CanvasState(mapAssets(channel, assetRepository.findByBroadcaster(channel)))
         );
     }
 
-    private List<String> assetsWithType(String broadcaster, AssetType... types) {
-        Set<AssetType> typeSet = EnumSet.noneOf(AssetType.class);
-        typeSet.addAll(Arrays.asList(types));
-        return assetRepository
-            .findByBroadcaster(normalize(broadcaster))
-            .stream()
-            .filter((asset) -> typeSet.contains(asset.getAssetType()))
-            .map(Asset::getId)
-            .toList();
+    /**
+     * Applies an interim transform to the cached canvas state without touching the database, so a snapshot taken
+     * after a coalesced patch is published already reflects it.
+     */
+    void refreshCachedTransform(String broadcaster, String assetId, VisualAsset working) {
+        canvasStates.update(normalize(broadcaster), (state) ->
+            state.replace(assetId, (view) -> view.withTransform(working))
+        );
+    }
+
+    private void publishState(String broadcaster, AssetView view) {
+        canvasStates.update(normalize(broadcaster), (state) -> state.upsert(view));
+    }
+
+    private Optional<VisualAsset> findVisual(String id) {
+        return canvasWriteBehind.pending(VisualAsset.class, id).or(() -> visualAssetRepository.findById(id));
+    }
+
+    private Optional<AudioAsset> findAudio(String id) {
+        return canvasWriteBehind.pending(AudioAsset.class, id).or(() -> audioAssetRepository.findById(id));
+    }
+
+    private List<VisualAsset> findVisuals(Collection<String> ids) {
+        return canvasWriteBehind.overlay(VisualAsset.class, visualAssetRepository.findByIdIn(ids), VisualAsset::getId);
     }
 
     private AssetView resolveAssetView(String broadcaster, Asset asset) {
@@ -817,7 +840,7 @@ public class ChannelDirectoryService {
         if (asset.getAssetType() == AssetType.AUDIO) {
             AudioAsset audio = audios != null
                 ? audios.get(asset.getId())
-                : audioAssetRepository.findById(asset.getId()).orElse(null);
+                : findAudio(asset.getId()).orElse(null);
             return audio == null ? null : AssetView.fromAudio(broadcaster, asset, audio);
         }
         if (asset.getAssetType() == AssetType.SCRIPT) {
@@ -831,20 +854,19 @@ public class ChannelDirectoryService {
         }
         VisualAsset visual = visuals != null
             ? visuals.get(asset.getId())
-            : visualAssetRepository.findById(asset.getId()).orElse(null);
+            : findVisual(asset.getId()).orElse(null);
         return visual == null ? null : AssetView.fromVisual(broadcaster, asset, visual);
     }
 
-    private Optional<AssetContent> loadAssetContent(Asset asset) {
+    private Optional<AssetResource> loadAssetContent(Asset asset) {
         switch (asset.getAssetType()) {
             case AUDIO -> {
-                return audioAssetRepository
-                    .findById(asset.getId())
-                    .flatMap((audio) ->
-                        assetStorageService.loadAssetFileSafely(
+                return findAudio(asset.getId()).flatMap((audio) ->
+                        assetStorageService.loadAssetResourceSafely(
                             asset.getBroadcaster(),
                             asset.getId(),
-                            audio.getMediaType()
+                            audio.getMediaType(),
+                            asset.getContentHash()
                         )
                     );
             }
@@ -852,21 +874,21 @@ public class ChannelDirectoryService {
                 return scriptAssetRepository
                     .findById(asset.getId())
                     .flatMap((script) ->
-                        assetStorageService.loadAssetFileSafely(
+                        assetStorageService.loadAssetResourceSafely(
                             asset.getBroadcaster(),
                             asset.getId(),
-                            script.getMediaType()
+                            script.getMediaType(),
+                            asset.getContentHash()
                         )
                     );
             }
             default -> {
-                return visualAssetRepository
-                    .findById(asset.getId())
-                    .flatMap((visual) ->
-                        assetStorageService.loadAssetFileSafely(
+                return findVisual(asset.getId()).flatMap((visual) ->
+                        assetStorageService.loadAssetResourceSafely(
                             asset.getBroadcaster(),
                             asset.getId(),
-                            visual.getMediaType()
+                            visual.getMediaType(),
+                            asset.getContentHash()
                         )
                     );
             }
@@ -908,15 +930,17 @@ public class ChannelDirectoryService {
         ) {
             return Optional.empty();
         }
-        return visualAssetRepository
-            .findById(asset.getId())
+        return findVisual(asset.getId())
             .filter((visual) -> includeHidden || !visual.isHidden())
             .flatMap((visual) ->
-                assetStorageService.loadPreviewSafely(
-                    asset.getBroadcaster(),
-                    asset.getId(),
-                    visual.getPreview() != null && !visual.getPreview().isBlank()
-                )
+                assetStorageService
+                    .loadPreviewSafely(
+                        asset.getBroadcaster(),
+                        asset.getId(),
+                        visual.getPreviewHash(),
+                        visual.getPreview() != null && !visual.getPreview().isBlank()
+                    )
+                    .map((preview) -> preview.withDigest(visual.getPreviewHash()))
             );
     }
 
@@ -933,29 +957,69 @@ public class ChannelDirectoryService {
                     assetStorageService.deleteAsset(asset.getBroadcaster(), asset.getId(), script.getMediaType(), false);
                     scriptAssetAttachmentRepository
                         .findByScriptAssetId(asset.getId())
-                        .forEach((attachment) ->
-                            assetStorageService.deleteAsset(
-                                asset.getBroadcaster(),
-                                attachment.getId(),
-                                attachment.getMediaType(),
-                                false
-                            )
-                        );
+                        .forEach((attachment) -> deleteAttachmentStorage(asset.getBroadcaster(), attachment));
                 });
             default -> visualAssetRepository
                 .findById(asset.getId())
-                .ifPresent((visual) ->
+                .ifPresent((visual) -> {
                     assetStorageService.deleteAsset(
                         asset.getBroadcaster(),
                         asset.getId(),
                         visual.getMediaType(),
                         visual.getPreview() != null && !visual.getPreview().isBlank()
-                    )
-                );
+                    );
+                    assetBlobService.release(visual.getPreviewHash());
+                });
+        }
+        assetBlobService.release(asset.getContentHash());
+    }
+
+    private void deleteAttachmentStorage(String broadcaster, ScriptAssetAttachment attachment) {
+        assetStorageService.deleteAsset(broadcaster, attachment.getId(), attachment.getMediaType(), false);
+        assetBlobService.release(attachment.getContentHash());
+    }
+
+    /**
+     * Resolves an upload to deduplicated storage, reusing the result of an earlier identical upload when one
+     * is still stored and otherwise optimizing and storing it. Empty when the media cannot be optimized. Time
+     * spent hashing the upload, looking up reusable content and writing blobs is recorded as the store stage, so
+     * reused uploads and fresh ones are directly comparable.
+     */
+    private Optional<StoredMedia> storeOptimized(MediaUpload upload, String mediaType) throws IOException {
+        long lookupStarted = System.nanoTime();
+        String sourceHash = AssetBlobService.sourceHash(upload.file());
+        Optional<StoredMedia> reused = assetBlobService.reuse(sourceHash);
+        long lookupNanos = System.nanoTime() - lookupStarted;
+        if (reused.isPresent()) {
+            storeStageTimer.record(lookupNanos, TimeUnit.NANOSECONDS);
+            reusedUploads.increment();
+            return reused;
+        }
+        Timer.Sample optimization = Timer.start(meterRegistry);
+        OptimizedAsset optimized = mediaOptimizationService.optimizeAsset(upload.file(), mediaType);
+        optimization.stop(optimizeStageTimer);
+        if (optimized == null) {
+            return Optional.empty();
         }
+        long storeStarted = System.nanoTime();
+        try {
+            return Optional.of(assetBlobService.store(sourceHash, optimized));
+        } finally {
+            storeStageTimer.record(lookupNanos + System.nanoTime() - storeStarted, TimeUnit.NANOSECONDS);
+            if (!optimized.file().equals(upload.file())) {
+                Files.deleteIfExists(optimized.file());
+            }
+        }
+    }
+
+    private static Timer uploadStageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("imgfloat.upload.stage")
+            .description("Time spent in each stage of processing an uploaded asset")
+            .tag("stage", stage)
+            .register(meterRegistry);
     }
 
-    private boolean hasPatchChanges(AssetPatch patch) {
+    static boolean hasPatchChanges(AssetPatch patch) {
         return (
             patch.x() != null ||
             patch.y() != null ||
@@ -0,0 +1,138 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetView;
+import dev.kruhlmann.imgfloat.model.ChannelSync;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Numbers the asset events of each channel and keeps the most recent ones, so a broadcast client that missed
+ * events can catch up from its last sequence number instead of reloading the channel. Numbering starts over when
+ * the application restarts; the random epoch of each log tells clients holding numbers from before to take a
+ * snapshot instead. Logs are only created by appending events, and the logs of channels that were idle for the
+ * idle timeout are dropped, so their clients take a snapshot on their next resume.
+ *
+ * <p>Upload progress and playback events are not numbered: they are not part of the canvas state and replaying
+ * a missed playback would be wrong.
+ */
+@Component
+public class ChannelEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelEventLog.class);
+
+    private final int capacity;
+    private final long idleTimeoutNanos;
+    private final Map<String, Log> logs = new ConcurrentHashMap<>();
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    public ChannelEventLog(
+        @Value("${IMGFLOAT_EVENT_LOG_CAPACITY:128}") int capacity,
+        @Value("${IMGFLOAT_CANVAS_STATE_IDLE_TIMEOUT:30m}") String idleTimeout
+    ) {
+        Duration timeout = DurationStyle.detectAndParse(idleTimeout);
+        this.capacity = capacity;
+        this.idleTimeoutNanos = timeout.toNanos();
+        logger.info("Keeping the last {} events of each active channel for resuming clients", capacity);
+    }
+
+    /**
+     * Numbers and records {@code event}, then hands it to {@code send} while the channel's log is locked, so events
+     * are sent in sequence order.
+     */
+    void append(String broadcaster, AssetEvent event, Consumer<AssetEvent> send) {
+        if (!isSequenced(event)) {
+            send.accept(event);
+            return;
+        }
+        evictIdle();
+        Log log = log(broadcaster);
+        synchronized (log) {
+            AssetEvent stamped = event.withSeq(++log.seq);
+            log.events.addLast(stamped);
+            if (log.events.size() > capacity) {
+                log.events.removeFirst();
+            }
+            log.lastAccessNanos = System.nanoTime();
+            send.accept(stamped);
+        }
+    }
+
+    /**
+     * Returns the events after {@code since} when the log still holds all of them, and a snapshot otherwise. Canvas
+     * changes are applied before their events are appended, so a snapshot taken after reading the sequence number
+     * includes every event up to it.
+     */
+    public ChannelSync resume(String broadcaster, String epoch, Long since, Supplier<List<AssetView>> snapshot) {
+        Log log = logs.get(key(broadcaster));
+        if (log == null) {
+            // No events since startup or the last eviction; do not let resuming clients create logs
+            return ChannelSync.snapshot(new Log().epoch, 0, snapshot.get());
+        }
+        String currentEpoch;
+        long seq;
+        synchronized (log) {
+            log.lastAccessNanos = System.nanoTime();
+            currentEpoch = log.epoch;
+            seq = log.seq;
+            long oldest = log.events.isEmpty() ? seq + 1 : log.events.getFirst().getSeq();
+            if (currentEpoch.equals(epoch) && since != null && since <= seq && since >= oldest - 1) {
+                List<AssetEvent> missed = log.events.stream().filter((event) -> event.getSeq() > since).toList();
+                return ChannelSync.delta(currentEpoch, seq, missed);
+            }
+        }
+        return ChannelSync.snapshot(currentEpoch, seq, snapshot.get());
+    }
+
+    private Log log(String broadcaster) {
+        return logs.computeIfAbsent(key(broadcaster), (key) -> new Log());
+    }
+
+    private static String key(String broadcaster) {
+        return broadcaster.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isSequenced(AssetEvent event) {
+        return switch (event.getType()) {
+            case PLAY, UPLOAD_PROGRESS, UPLOAD_COMPLETED, UPLOAD_FAILED -> false;
+            default -> true;
+        };
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        if (now - lastSweepNanos < idleTimeoutNanos / 2) {
+            return;
+        }
+        lastSweepNanos = now;
+        long cutoff = now - idleTimeoutNanos;
+        logs.forEach((broadcaster, log) -> {
+            synchronized (log) {
+                if (log.lastAccessNanos - cutoff < 0) {
+                    logs.remove(broadcaster, log);
+                }
+            }
+        });
+    }
+
+    private static final class Log {
+
+        private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+        private final Deque<AssetEvent> events = new ArrayDeque<>();
+        private long seq;
+        private volatile long lastAccessNanos = System.nanoTime();
+    }
+}
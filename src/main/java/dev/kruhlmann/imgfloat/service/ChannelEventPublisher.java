@@ -0,0 +1,72 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import java.util.Locale;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Publishes events to the topic of a channel. Each event is serialized to JSON exactly once, using Jackson's
+ * recycled write buffers, and the resulting immutable frame is handed to the broker, which shares the payload
+ * between every session subscribed to the topic instead of converting it again. Asset events are numbered by
+ * the {@link ChannelEventLog} as they are sent.
+ */
+@Service
+public class ChannelEventPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChannelEventLog eventLog;
+
+    public ChannelEventPublisher(
+        SimpMessagingTemplate messagingTemplate,
+        ObjectMapper objectMapper,
+        ChannelEventLog eventLog
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.eventLog = eventLog;
+    }
+
+    public void publish(String broadcaster, Object event) {
+        String topic = topicFor(broadcaster);
+        if (event instanceof AssetEvent assetEvent) {
+            eventLog.append(broadcaster, assetEvent, (stamped) -> messagingTemplate.send(topic, frame(stamped)));
+        } else {
+            messagingTemplate.send(topic, frame(event));
+        }
+    }
+
+    Message<byte[]> frame(Object event) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Unable to serialize " + event.getClass().getSimpleName(), e);
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (
+            event instanceof AssetEvent assetEvent &&
+            assetEvent.getType() == AssetEvent.Type.UPDATED &&
+            assetEvent.getPatch() != null
+        ) {
+            accessor.setHeader(AssetEvent.COALESCE_KEY_HEADER, assetEvent.getAssetId());
+        }
+        // Leave the headers mutable so the template sets the destination without copying them
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    static String topicFor(String broadcaster) {
+        return "/topic/channel/" + broadcaster.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,93 @@
+package dev.kruhlmann.imgfloat.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers channel admin and system administrator decisions so authorization checks on hot paths, such as every
+ * transform while an asset is dragged, do not query the database, along with the channels each user administers
+ * for the dashboard. The services that change admins invalidate the affected entries; the TTL only bounds how
+ * long a change made outside of them goes unnoticed.
+ *
+ * <p>A decision loaded while an invalidation happens is not stored, so a check that read the database just
+ * before a change was committed cannot bring the old answer back.
+ */
+@Component
+public class PermissionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionCache.class);
+    private static final String SYSADMIN_SCOPE = "";
+
+    private final long ttlNanos;
+    private final Map<Key, Entry<Boolean>> decisions = new ConcurrentHashMap<>();
+    private final Map<String, Entry<List<String>>> adminChannels = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    public PermissionCache(@Value("${IMGFLOAT_PERMISSION_CACHE_TTL:5m}") String ttl) {
+        Duration timeout = DurationStyle.detectAndParse(ttl);
+        this.ttlNanos = timeout.toNanos();
+        logger.info("Caching authorization decisions for {}", timeout);
+    }
+
+    boolean channelAdmin(String broadcaster, String username, BooleanSupplier check) {
+        return load(decisions, new Key(broadcaster, username), check::getAsBoolean);
+    }
+
+    boolean sysadmin(String username, BooleanSupplier check) {
+        return load(decisions, new Key(SYSADMIN_SCOPE, username), check::getAsBoolean);
+    }
+
+    List<String> adminChannels(String username, Supplier<List<String>> loader) {
+        return load(adminChannels, username, loader);
+    }
+
+    void invalidateAdmin(String broadcaster, String username) {
+        generation.incrementAndGet();
+        decisions.keySet().removeIf((key) -> key.scope().equals(broadcaster));
+        adminChannels.remove(username);
+    }
+
+    void invalidateSysadmins() {
+        generation.incrementAndGet();
+        decisions.keySet().removeIf((key) -> key.scope().equals(SYSADMIN_SCOPE));
+    }
+
+    private <K, V> V load(Map<K, Entry<V>> entries, K key, Supplier<V> loader) {
+        long now = System.nanoTime();
+        evictExpired(now);
+        Entry<V> cached = entries.get(key);
+        if (cached != null && now - cached.loadedNanos() < ttlNanos) {
+            return cached.value();
+        }
+        long loadedGeneration = generation.get();
+        V value = loader.get();
+        if (ttlNanos > 0 && generation.get() == loadedGeneration) {
+            entries.put(key, new Entry<>(value, now));
+        }
+        return value;
+    }
+
+    private void evictExpired(long now) {
+        if (now - lastSweepNanos < ttlNanos) {
+            return;
+        }
+        lastSweepNanos = now;
+        decisions.values().removeIf((entry) -> now - entry.loadedNanos() >= ttlNanos);
+        adminChannels.values().removeIf((entry) -> now - entry.loadedNanos() >= ttlNanos);
+    }
+
+    private record Key(String scope, String username) {}
+
+    private record Entry<V>(V value, long loadedNanos) {}
+}
@@ -18,15 +18,18 @@ public class SystemAdministratorService {
     private final SystemAdministratorRepository repo;
     private final String initialSysadmin;
     private final Environment environment;
+    private final PermissionCache permissions;
 
     public SystemAdministratorService(
         SystemAdministratorRepository repo,
         @Value("${IMGFLOAT_INITIAL_TWITCH_USERNAME_SYSADMIN:#{null}}") String initialSysadmin,
-        Environment environment
+        Environment environment,
+        PermissionCache permissions
     ) {
         this.repo = repo;
         this.initialSysadmin = initialSysadmin;
         this.environment = environment;
+        this.permissions = permissions;
     }
 
     @PostConstruct
@@ -62,6 +65,7 @@ public class SystemAdministratorService {
         }
 
         repo.save(new SystemAdministrator(normalized));
+        permissions.invalidateSysadmins();
     }
 
     public void removeSysadmin(String twitchUsername) {
@@ -70,6 +74,7 @@ public class SystemAdministratorService {
         }
 
         long deleted = repo.deleteByTwitchUsername(normalize(twitchUsername));
+        permissions.invalidateSysadmins();
 
         if (deleted == 0) {
             throw new IllegalArgumentException("System administrator does not exist");
@@ -77,7 +82,8 @@ public class SystemAdministratorService {
     }
 
     public boolean isSysadmin(String twitchUsername) {
-        return repo.existsByTwitchUsername(normalize(twitchUsername));
+        String normalized = normalize(twitchUsername);
+        return permissions.sysadmin(normalized, () -> repo.existsByTwitchUsername(normalized));
     }
 
     private String normalize(String username) {
@@ -2,44 +2,85 @@ package dev.kruhlmann.imgfloat.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kruhlmann.imgfloat.model.TwitchUserProfile;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+/**
+ * Looks up Twitch users through Helix with a non-blocking HTTP client. Profiles are cached by login for a TTL, up
+ * to a maximum number of entries, so the admin panel does not wait on Twitch for users it has seen before: an
+ * expired profile is still returned and refreshed in the background. Logins that are not cached are requested in
+ * batches of up to 100, and a login that is already being requested is not requested again; the caller waits
+ * for the request in flight instead.
+ *
+ * <p>Every lookup runs at most a fixed number of Helix requests at once and answers by its deadline. Whatever has
+ * not arrived by then is left out or falls back to the bare login.
+ */
 @Service
 public class TwitchUserLookupService {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitchUserLookupService.class);
-    private final RestTemplate restTemplate;
-
-    public TwitchUserLookupService(RestTemplateBuilder builder) {
-        this.restTemplate = builder
-            .setConnectTimeout(Duration.ofSeconds(15))
-            .setReadTimeout(Duration.ofSeconds(15))
-            .build();
+    private static final int MAX_LOGINS_PER_REQUEST = 100;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String apiUrl;
+    private final long ttlNanos;
+    private final int maxProfiles;
+    private final int maxConcurrentRequests;
+    private final Duration deadline;
+    private final Map<String, CachedUser> users = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<TwitchUserData>> inFlight = new ConcurrentHashMap<>();
+
+    public TwitchUserLookupService(
+        ObjectMapper objectMapper,
+        @Value("${IMGFLOAT_TWITCH_API_URL:https://api.twitch.tv/helix}") String apiUrl,
+        @Value("${IMGFLOAT_TWITCH_PROFILE_CACHE_TTL:1h}") String ttl,
+        @Value("${IMGFLOAT_TWITCH_PROFILE_CACHE_SIZE:10000}") int maxProfiles,
+        @Value("${IMGFLOAT_TWITCH_MAX_CONCURRENT_REQUESTS:4}") int maxConcurrentRequests,
+        @Value("${IMGFLOAT_TWITCH_LOOKUP_DEADLINE:5s}") String deadline
+    ) {
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.ttlNanos = DurationStyle.detectAndParse(ttl).toNanos();
+        this.maxProfiles = maxProfiles;
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.deadline = DurationStyle.detectAndParse(deadline);
     }
 
     public List<TwitchUserProfile> fetchProfiles(Collection<String> logins, String accessToken, String clientId) {
@@ -54,7 +95,11 @@ public class TwitchUserLookupService {
             .distinct()
             .toList();
 
-        Map<String, TwitchUserData> byLogin = fetchUsers(normalizedLogins, accessToken, clientId);
+        Map<String, TwitchUserData> byLogin = new ConcurrentHashMap<>();
+        RequestBudget budget = new RequestBudget(maxConcurrentRequests);
+        fetchUsers(normalizedLogins, accessToken, clientId, budget, byLogin)
+            .completeOnTimeout(null, deadline.toMillis(), TimeUnit.MILLISECONDS)
+            .join();
 
         return normalizedLogins
             .stream()
@@ -62,7 +107,13 @@ public class TwitchUserLookupService {
             .toList();
     }
 
-    public List<TwitchUserProfile> fetchModerators(
+    /**
+     * Collects the broadcaster's moderators that are not admins yet. Moderator pages are followed one after
+     * another, as each needs the cursor of the previous one, while the profiles of every page are fetched as soon
+     * as it arrives. Moderators found by the deadline are returned, with the bare login for profiles that are
+     * still missing.
+     */
+    public CompletableFuture<List<TwitchUserProfile>> fetchModerators(
         String broadcasterLogin,
         Collection<String> existingAdmins,
         String accessToken,
@@ -70,25 +121,15 @@ public class TwitchUserLookupService {
     ) {
         if (broadcasterLogin == null || broadcasterLogin.isBlank()) {
             LOG.warn("Cannot fetch moderators without a broadcaster login");
-            return List.of();
+            return CompletableFuture.completedFuture(List.of());
         }
 
         if (accessToken == null || accessToken.isBlank() || clientId == null || clientId.isBlank()) {
             LOG.warn("Missing Twitch auth details when requesting moderators for {}", broadcasterLogin);
-            return List.of();
+            return CompletableFuture.completedFuture(List.of());
         }
 
         String normalizedBroadcaster = broadcasterLogin.toLowerCase(Locale.ROOT);
-        Map<String, TwitchUserData> broadcasterData = fetchUsers(List.of(normalizedBroadcaster), accessToken, clientId);
-        String broadcasterId = Optional.ofNullable(broadcasterData.get(normalizedBroadcaster))
-            .map(TwitchUserData::id)
-            .orElse(null);
-
-        if (broadcasterId == null || broadcasterId.isBlank()) {
-            LOG.warn("No broadcaster id found for {} when fetching moderators", broadcasterLogin);
-            return List.of();
-        }
-
         Set<String> skipLogins = new HashSet<>();
         if (existingAdmins != null) {
             existingAdmins
@@ -99,125 +140,379 @@ public class TwitchUserLookupService {
         }
         skipLogins.add(normalizedBroadcaster);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(accessToken);
-        headers.add("Client-ID", clientId);
+        RequestBudget budget = new RequestBudget(maxConcurrentRequests);
+        ModeratorLookup lookup = new ModeratorLookup(broadcasterLogin, skipLogins, accessToken, clientId, budget);
+        Map<String, TwitchUserData> broadcasterData = new ConcurrentHashMap<>();
+        return fetchUsers(List.of(normalizedBroadcaster), accessToken, clientId, budget, broadcasterData)
+            .thenCompose((ignored) -> {
+                String broadcasterId = Optional.ofNullable(broadcasterData.get(normalizedBroadcaster))
+                    .map(TwitchUserData::id)
+                    .orElse(null);
+                if (broadcasterId == null || broadcasterId.isBlank()) {
+                    LOG.warn("No broadcaster id found for {} when fetching moderators", broadcasterLogin);
+                    return CompletableFuture.completedFuture(null);
+                }
+                return lookup.fetchPage(broadcasterId, null);
+            })
+            .thenCompose((ignored) -> lookup.hydrated())
+            .completeOnTimeout(null, deadline.toMillis(), TimeUnit.MILLISECONDS)
+            .thenApply((ignored) -> lookup.profiles());
+    }
+
+    private TwitchUserProfile toProfile(String login, TwitchUserData data) {
+        if (data == null) {
+            return new TwitchUserProfile(login, login, null);
+        }
+        return new TwitchUserProfile(login, data.displayName(), data.profileImageUrl());
+    }
+
+    /**
+     * Puts the user data for every login into {@code byLogin} as it becomes known. The returned future completes
+     * once all logins are resolved; a caller that stops waiting earlier still finds the cached ones in the map.
+     */
+    private CompletableFuture<Void> fetchUsers(
+        List<String> logins,
+        String accessToken,
+        String clientId,
+        RequestBudget budget,
+        Map<String, TwitchUserData> byLogin
+    ) {
+        if (accessToken == null || accessToken.isBlank() || clientId == null || clientId.isBlank()) {
+            for (String login : logins) {
+                CachedUser cached = users.get(login);
+                if (cached != null && cached.data() != null) {
+                    byLogin.put(login, cached.data());
+                }
+            }
+            return CompletableFuture.completedFuture(null);
+        }
 
-        List<String> moderatorLogins = new ArrayList<>();
-        String cursor = null;
+        long now = System.nanoTime();
+        Map<String, CompletableFuture<TwitchUserData>> pending = new HashMap<>();
+        Map<String, CompletableFuture<TwitchUserData>> claimed = new LinkedHashMap<>();
+        Map<String, CompletableFuture<TwitchUserData>> refreshes = new LinkedHashMap<>();
+        for (String login : logins) {
+            CachedUser cached = users.get(login);
+            if (cached != null) {
+                if (cached.data() != null) {
+                    byLogin.put(login, cached.data());
+                }
+                if (now - cached.loadedNanos() >= ttlNanos) {
+                    claim(login, refreshes);
+                }
+                continue;
+            }
+            CompletableFuture<TwitchUserData> inFlightRequest = claim(login, claimed);
+            if (inFlightRequest != null) {
+                pending.put(login, inFlightRequest);
+            }
+        }
 
-        do {
-            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(
-                "https://api.twitch.tv/helix/moderation/moderators"
+        if (!refreshes.isEmpty()) {
+            // Not waited for, the cached profiles were already returned
+            request(refreshes, accessToken, clientId, new RequestBudget(maxConcurrentRequests));
+        }
+        request(claimed, accessToken, clientId, budget);
+        pending.putAll(claimed);
+        CompletableFuture<?>[] resolved = pending
+            .entrySet()
+            .stream()
+            .map((entry) ->
+                entry
+                    .getValue()
+                    .thenAccept((data) -> {
+                        if (data != null) {
+                            byLogin.put(entry.getKey(), data);
+                        }
+                    })
             )
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(resolved);
+    }
+
+    /**
+     * Adds a request for the login to {@code claimed} unless one is already in flight, which is returned instead.
+     */
+    private CompletableFuture<TwitchUserData> claim(
+        String login,
+        Map<String, CompletableFuture<TwitchUserData>> claimed
+    ) {
+        CompletableFuture<TwitchUserData> request = new CompletableFuture<>();
+        CompletableFuture<TwitchUserData> existing = inFlight.putIfAbsent(login, request);
+        if (existing == null) {
+            claimed.put(login, request);
+        }
+        return existing;
+    }
+
+    /**
+     * Requests the claimed logins in batches and completes their futures. A login Twitch does not know is cached
+     * as missing; a failed batch is not cached, and its callers fall back to the bare login.
+     */
+    private void request(
+        Map<String, CompletableFuture<TwitchUserData>> claimed,
+        String accessToken,
+        String clientId,
+        RequestBudget budget
+    ) {
+        List<String> logins = List.copyOf(claimed.keySet());
+        for (int from = 0; from < logins.size(); from += MAX_LOGINS_PER_REQUEST) {
+            List<String> batch = logins.subList(from, Math.min(from + MAX_LOGINS_PER_REQUEST, logins.size()));
+            UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(apiUrl + "/users");
+            batch.forEach((login) -> uriBuilder.queryParam("login", login));
+            budget
+                .submit(() -> get(uriBuilder.build(true).toUri(), accessToken, clientId, TwitchUsersResponse.class))
+                .handle((response, ex) -> {
+                    Map<String, TwitchUserData> found = null;
+                    try {
+                        if (ex != null) {
+                            LOG.warn("Unable to fetch Twitch user profiles", ex);
+                        } else {
+                            found = usersByLogin(response);
+                            LOG.debug("Fetched {} Twitch user profiles", batch.size());
+                            long loadedNanos = System.nanoTime();
+                            for (String login : batch) {
+                                users.put(login, new CachedUser(found.get(login), loadedNanos));
+                            }
+                            evictOverflow();
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.warn("Unable to cache Twitch user profiles", e);
+                    } finally {
+                        // Callers joined on these futures; they must complete whatever happened above
+                        for (String login : batch) {
+                            CompletableFuture<TwitchUserData> request = claimed.get(login);
+                            inFlight.remove(login, request);
+                            request.complete(found == null ? null : found.get(login));
+                        }
+                    }
+                    return null;
+                });
+        }
+    }
+
+    private Map<String, TwitchUserData> usersByLogin(TwitchUsersResponse response) {
+        return response == null || response.data() == null
+            ? Collections.emptyMap()
+            : response
+                  .data()
+                  .stream()
+                  .filter(Objects::nonNull)
+                  .collect(
+                      Collectors.toMap(
+                          (user) -> user.login().toLowerCase(Locale.ROOT),
+                          Function.identity(),
+                          (a, b) -> a,
+                          HashMap::new
+                      )
+                  );
+    }
+
+    private <T> CompletableFuture<T> get(URI uri, String accessToken, String clientId, Class<T> type) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Authorization", "Bearer " + accessToken)
+            .header("Client-ID", clientId)
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+        return httpClient
+            .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply((response) -> {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IllegalStateException("Twitch responded with status " + response.statusCode());
+                }
+                try {
+                    return objectMapper.readValue(response.body(), type);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+    }
+
+    private void evictOverflow() {
+        int overflow = users.size() - maxProfiles;
+        if (overflow <= 0) {
+            return;
+        }
+        users
+            .entrySet()
+            .stream()
+            .sorted(Comparator.comparingLong((entry) -> entry.getValue().loadedNanos()))
+            .limit(overflow)
+            .map(Map.Entry::getKey)
+            .toList()
+            .forEach(users::remove);
+    }
+
+    /** The moderators and profiles one suggestions lookup has collected so far. */
+    private final class ModeratorLookup {
+
+        private final String broadcasterLogin;
+        private final Set<String> skipLogins;
+        private final String accessToken;
+        private final String clientId;
+        private final RequestBudget budget;
+        private final List<String> moderatorLogins = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, TwitchUserData> profiles = new ConcurrentHashMap<>();
+        private final List<CompletableFuture<Void>> hydrations = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean finished;
+
+        private ModeratorLookup(
+            String broadcasterLogin,
+            Set<String> skipLogins,
+            String accessToken,
+            String clientId,
+            RequestBudget budget
+        ) {
+            this.broadcasterLogin = broadcasterLogin;
+            this.skipLogins = skipLogins;
+            this.accessToken = accessToken;
+            this.clientId = clientId;
+            this.budget = budget;
+        }
+
+        private CompletableFuture<Void> fetchPage(String broadcasterId, String cursor) {
+            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(apiUrl + "/moderation/moderators")
                 .queryParam("broadcaster_id", broadcasterId)
                 .queryParam("first", 100);
             if (cursor != null && !cursor.isBlank()) {
                 builder.queryParam("after", cursor);
             }
-
-            try {
-                ResponseEntity<TwitchModeratorsResponse> response = restTemplate.exchange(
-                    builder.build(true).toUri(),
-                    HttpMethod.GET,
-                    new HttpEntity<>(headers),
-                    TwitchModeratorsResponse.class
+            URI uri = builder.build(true).toUri();
+
+            return budget
+                .submit(() ->
+                    finished
+                        ? CompletableFuture.completedFuture(null)
+                        : get(uri, accessToken, clientId, TwitchModeratorsResponse.class)
+                )
+                .handle((body, ex) -> {
+                    if (finished) {
+                        return null;
+                    }
+                    if (ex != null) {
+                        LOG.warn("Unable to fetch Twitch moderators for {}", broadcasterLogin, ex);
+                        return null;
+                    }
+                    LOG.debug(
+                        "Fetched {} moderator records for {} (cursor={})",
+                        body != null && body.data() != null ? body.data().size() : 0,
+                        broadcasterLogin,
+                        cursor
+                    );
+                    if (body != null && body.data() != null) {
+                        List<String> pageLogins = body
+                            .data()
+                            .stream()
+                            .filter(Objects::nonNull)
+                            .map(ModeratorData::userLogin)
+                            .filter(Objects::nonNull)
+                            .map((login) -> login.toLowerCase(Locale.ROOT))
+                            .filter((login) -> !skipLogins.contains(login))
+                            .distinct()
+                            .toList();
+                        moderatorLogins.addAll(pageLogins);
+                        hydrations.add(fetchUsers(pageLogins, accessToken, clientId, budget, profiles));
+                    }
+                    return body != null && body.pagination() != null ? body.pagination().cursor() : null;
+                })
+                .thenCompose((next) ->
+                    next == null || next.isBlank()
+                        ? CompletableFuture.completedFuture(null)
+                        : fetchPage(broadcasterId, next)
                 );
+        }
 
-                TwitchModeratorsResponse body = response.getBody();
-                LOG.debug(
-                    "Fetched {} moderator records for {} (cursor={})",
-                    body != null && body.data() != null ? body.data().size() : 0,
-                    broadcasterLogin,
-                    cursor
-                );
-                if (body != null && body.data() != null) {
-                    body
-                        .data()
-                        .stream()
-                        .filter(Objects::nonNull)
-                        .map(ModeratorData::userLogin)
-                        .filter(Objects::nonNull)
-                        .map((login) -> login.toLowerCase(Locale.ROOT))
-                        .filter((login) -> !skipLogins.contains(login))
-                        .forEach(moderatorLogins::add);
-                }
-
-                cursor = body != null && body.pagination() != null ? body.pagination().cursor() : null;
-            } catch (RestClientException ex) {
-                LOG.warn("Unable to fetch Twitch moderators for {}", broadcasterLogin, ex);
-                return List.of();
+        private CompletableFuture<Void> hydrated() {
+            synchronized (hydrations) {
+                return CompletableFuture.allOf(hydrations.toArray(CompletableFuture[]::new));
             }
-        } while (cursor != null && !cursor.isBlank());
-
-        if (moderatorLogins.isEmpty()) {
-            LOG.info("No moderator suggestions available for {} after filtering existing admins", broadcasterLogin);
-            return List.of();
         }
 
-        return fetchProfiles(moderatorLogins, accessToken, clientId);
-    }
-
-    private TwitchUserProfile toProfile(String login, TwitchUserData data) {
-        if (data == null) {
-            return new TwitchUserProfile(login, login, null);
+        /**
+         * Returns the moderators collected so far and stops the lookup, so pages that arrive after the deadline
+         * neither request the next page nor fetch their profiles.
+         */
+        private List<TwitchUserProfile> profiles() {
+            finished = true;
+            List<String> logins;
+            synchronized (moderatorLogins) {
+                logins = moderatorLogins.stream().distinct().toList();
+            }
+            if (logins.isEmpty()) {
+                LOG.info("No moderator suggestions available for {} after filtering existing admins", broadcasterLogin);
+            }
+            return logins
+                .stream()
+                .map((login) -> toProfile(login, profiles.get(login)))
+                .toList();
         }
-        return new TwitchUserProfile(login, data.displayName(), data.profileImageUrl());
     }
 
-    private Map<String, TwitchUserData> fetchUsers(Collection<String> logins, String accessToken, String clientId) {
-        if (logins == null || logins.isEmpty()) {
-            return Collections.emptyMap();
+    /**
+     * Caps the Helix requests one lookup has in flight. Requests over the budget are queued and started as
+     * earlier ones finish, without holding a thread while they wait.
+     */
+    private static final class RequestBudget {
+
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+
+        private RequestBudget(int permits) {
+            this.available = permits;
         }
 
-        List<String> normalizedLogins = logins
-            .stream()
-            .filter(Objects::nonNull)
-            .map((login) -> login.toLowerCase(Locale.ROOT))
-            .distinct()
-            .toList();
+        private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Runnable start = () -> {
+                CompletableFuture<T> started;
+                try {
+                    started = request.get();
+                } catch (RuntimeException ex) {
+                    started = CompletableFuture.failedFuture(ex);
+                }
+                started.whenComplete((value, ex) -> {
+                    release();
+                    if (ex != null) {
+                        result.completeExceptionally(ex);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            };
+            boolean startNow;
+            synchronized (this) {
+                startNow = available > 0;
+                if (startNow) {
+                    available--;
+                } else {
+                    waiting.add(start);
+                }
+            }
+            if (startNow) {
+                start.run();
+            }
+            return result;
+        }
 
-        if (accessToken == null || accessToken.isBlank() || clientId == null || clientId.isBlank()) {
-            return Collections.emptyMap();
-        }
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(accessToken);
-        headers.add("Client-ID", clientId);
-
-        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl("https://api.twitch.tv/helix/users");
-        normalizedLogins.forEach((login) -> uriBuilder.queryParam("login", login));
-
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
-        try {
-            ResponseEntity<TwitchUsersResponse> response = restTemplate.exchange(
-                uriBuilder.build(true).toUri(),
-                HttpMethod.GET,
-                entity,
-                TwitchUsersResponse.class
-            );
-
-            return response.getBody() == null
-                ? Collections.emptyMap()
-                : response
-                      .getBody()
-                      .data()
-                      .stream()
-                      .filter(Objects::nonNull)
-                      .collect(
-                          Collectors.toMap(
-                              (user) -> user.login().toLowerCase(Locale.ROOT),
-                              Function.identity(),
-                              (a, b) -> a,
-                              HashMap::new
-                          )
-                      );
-        } catch (RestClientException ex) {
-            LOG.warn("Unable to fetch Twitch user profiles", ex);
-            return Collections.emptyMap();
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                }
+            }
+            if (next != null) {
+                next.run();
+            }
         }
     }
 
+    /** A cached lookup; {@code data} is null for a login Twitch does not know. */
+    private record CachedUser(TwitchUserData data, long loadedNanos) {}
+
     @JsonIgnoreProperties(ignoreUnknown = true)
     private record TwitchUsersResponse(List<TwitchUserData> data) {}
 
@@ -3,24 +3,47 @@ package dev.kruhlmann.imgfloat.service.media;
 import java.util.Arrays;
 import java.util.Objects;
 
-public record AssetContent(byte[] bytes, String mediaType) {
+public record AssetContent(byte[] bytes, String mediaType, String digest) {
+    public AssetContent(byte[] bytes, String mediaType) {
+        this(bytes, mediaType, null);
+    }
+
+    public AssetContent withDigest(String digest) {
+        return new AssetContent(bytes, mediaType, digest);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         AssetContent that = (AssetContent) o;
-        return Arrays.equals(bytes, that.bytes) && Objects.equals(mediaType, that.mediaType);
+        return (
+            Arrays.equals(bytes, that.bytes) &&
+            Objects.equals(mediaType, that.mediaType) &&
+            Objects.equals(digest, that.digest)
+        );
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(mediaType);
+        int result = Objects.hash(mediaType, digest);
         result = 31 * result + Arrays.hashCode(bytes);
         return result;
     }
 
     @Override
     public String toString() {
-        return "AssetContent{" + "bytes=" + Arrays.toString(bytes) + ", mediaType='" + mediaType + '\'' + '}';
+        return (
+            "AssetContent{" +
+            "bytes=" +
+            Arrays.toString(bytes) +
+            ", mediaType='" +
+            mediaType +
+            '\'' +
+            ", digest='" +
+            digest +
+            '\'' +
+            '}'
+        );
     }
 }
@@ -0,0 +1,22 @@
+package dev.kruhlmann.imgfloat.service.media;
+
+import java.time.Instant;
+import org.springframework.core.io.Resource;
+
+/**
+ * A stored asset exposed as a streamable {@link Resource} instead of a materialized byte array, so
+ * large media can be served (and range-requested) without being read onto the heap. The digest is the
+ * SHA-256 of the content recorded when it was written, or {@code null} for files stored before digests
+ * were tracked.
+ */
+public record AssetResource(
+    Resource resource,
+    String mediaType,
+    long contentLength,
+    Instant lastModified,
+    String digest
+) {
+    public AssetResource withDigest(String digest) {
+        return new AssetResource(resource, mediaType, contentLength, lastModified, digest);
+    }
+}
@@ -0,0 +1,268 @@
+package dev.kruhlmann.imgfloat.service.media;
+
+import jakarta.annotation.PreDestroy;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import org.jcodec.api.transcode.PixelStore.LoanerPicture;
+import org.jcodec.api.transcode.SinkImpl;
+import org.jcodec.api.transcode.VideoFrameWithPacket;
+import org.jcodec.common.Codec;
+import org.jcodec.common.Format;
+import org.jcodec.common.io.NIOUtils;
+import org.jcodec.common.io.SeekableByteChannel;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Packet;
+import org.jcodec.common.model.Picture;
+import org.jcodec.scale.AWTUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Transcodes animated GIFs to H.264 video as a pipeline: a reader decodes frames one at a time into a bounded
+ * queue, colour conversion runs in parallel on a shared pool, and a single encoder consumes the frames in order.
+ * Each frame keeps its own GIF delay as its duration in the video, so slow frames are not duplicated and at
+ * most a queue's worth of frames is held in memory at once.
+ */
+@Service
+public class GifTranscoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(GifTranscoder.class);
+    private static final int MIN_GIF_DELAY_MS = 20;
+    private static final int DEFAULT_GIF_DELAY_MS = 100;
+    private static final int TIMESCALE = 1000;
+    private static final CompletableFuture<EncodableFrame> END_OF_FRAMES = CompletableFuture.completedFuture(null);
+
+    private final ForkJoinPool conversionPool;
+    private final int queueCapacity;
+
+    public GifTranscoder(@Value("${IMGFLOAT_GIF_TRANSCODE_THREADS:0}") int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.conversionPool = new ForkJoinPool(
+            parallelism,
+            (pool) -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("gif-transcode-" + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false
+        );
+        this.queueCapacity = Math.max(2, parallelism * 2);
+    }
+
+    /**
+     * Writes the GIF in {@code source} to {@code target} as an MP4 and returns the padded first frame, or empty
+     * when the GIF has no readable frames.
+     */
+    public Optional<BufferedImage> transcode(Path source, Path target) throws IOException {
+        BlockingQueue<CompletableFuture<EncodableFrame>> frames = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try (SeekableByteChannel output = NIOUtils.writableChannel(target.toFile())) {
+            SinkImpl sink = SinkImpl.createWithStream(output, Format.MOV, Codec.H264, null);
+            sink.init();
+            ColorSpace colorSpace = sink.getInputColor();
+            CompletableFuture<BufferedImage> reader = CompletableFuture.supplyAsync(
+                () -> readFrames(source, colorSpace, frames, cancelled),
+                conversionPool
+            );
+            try {
+                if (encodeFrames(sink, frames, reader) == 0) {
+                    return Optional.empty();
+                }
+                sink.finish();
+                return Optional.ofNullable(reader.join());
+            } finally {
+                cancelled.set(true);
+                frames.clear();
+                reader.exceptionally((e) -> null).join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Unable to transcode GIF", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        conversionPool.shutdown();
+    }
+
+    private int encodeFrames(
+        SinkImpl sink,
+        BlockingQueue<CompletableFuture<EncodableFrame>> frames,
+        CompletableFuture<BufferedImage> reader
+    ) throws IOException {
+        long timestamp = 0;
+        int frameNumber = 0;
+        while (true) {
+            CompletableFuture<EncodableFrame> next;
+            try {
+                next = frames.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while transcoding GIF");
+            }
+            if (next == null) {
+                if (reader.isDone() && frames.isEmpty()) {
+                    throw new IOException("GIF reader stopped before the last frame");
+                }
+                continue;
+            }
+            if (next == END_OF_FRAMES) {
+                return frameNumber;
+            }
+            EncodableFrame frame = next.join();
+            Packet packet = Packet.createPacket(
+                null,
+                timestamp,
+                TIMESCALE,
+                frame.durationMs(),
+                frameNumber,
+                Packet.FrameType.KEY,
+                null
+            );
+            sink.outputVideoFrame(new VideoFrameWithPacket(packet, new LoanerPicture(frame.picture(), 0)));
+            timestamp += frame.durationMs();
+            frameNumber++;
+        }
+    }
+
+    private BufferedImage readFrames(
+        Path source,
+        ColorSpace colorSpace,
+        BlockingQueue<CompletableFuture<EncodableFrame>> frames,
+        AtomicBoolean cancelled
+    ) {
+        BufferedImage cover = null;
+        try (ImageInputStream stream = ImageIO.createImageInputStream(source.toFile())) {
+            var readers = ImageIO.getImageReadersByFormatName("gif");
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, false, false);
+                int count = reader.getNumImages(true);
+                for (int i = 0; i < count && !cancelled.get(); i++) {
+                    BufferedImage image = reader.read(i);
+                    int durationMs = extractDelayMs(reader.getImageMetadata(i));
+                    if (cover == null) {
+                        cover = ensureEvenDimensions(image);
+                    }
+                    int width = cover.getWidth();
+                    int height = cover.getHeight();
+                    put(
+                        frames,
+                        CompletableFuture.supplyAsync(
+                            () -> new EncodableFrame(convert(image, width, height, colorSpace), durationMs),
+                            conversionPool
+                        )
+                    );
+                }
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            put(frames, CompletableFuture.failedFuture(e));
+            return null;
+        } catch (RuntimeException e) {
+            put(frames, CompletableFuture.failedFuture(e));
+            throw e;
+        } finally {
+            put(frames, END_OF_FRAMES);
+        }
+        return cover;
+    }
+
+    private Picture convert(BufferedImage image, int width, int height, ColorSpace colorSpace) {
+        return AWTUtil.fromBufferedImage(padTo(image, width, height), colorSpace);
+    }
+
+    private void put(BlockingQueue<CompletableFuture<EncodableFrame>> frames, CompletableFuture<EncodableFrame> frame) {
+        try {
+            ForkJoinPool.managedBlock(
+                new ForkJoinPool.ManagedBlocker() {
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        frames.put(frame);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return false;
+                    }
+                }
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while queueing GIF frame");
+        }
+    }
+
+    private int extractDelayMs(IIOMetadata metadata) {
+        if (metadata == null) {
+            return DEFAULT_GIF_DELAY_MS;
+        }
+        try {
+            String format = metadata.getNativeMetadataFormatName();
+            var root = metadata.getAsTree(format);
+            var children = root.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                var node = children.item(i);
+                if ("GraphicControlExtension".equals(node.getNodeName()) && node.getAttributes() != null) {
+                    var delay = node.getAttributes().getNamedItem("delayTime");
+                    if (delay != null) {
+                        int hundredths = Integer.parseInt(delay.getNodeValue());
+                        return Math.max(hundredths * 10, MIN_GIF_DELAY_MS);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to parse GIF delay", e);
+        }
+        return DEFAULT_GIF_DELAY_MS;
+    }
+
+    private BufferedImage ensureEvenDimensions(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return padTo(image, width % 2 == 0 ? width : width + 1, height % 2 == 0 ? height : height + 1);
+    }
+
+    private BufferedImage padTo(BufferedImage image, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+        BufferedImage padded = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = padded.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return padded;
+    }
+
+    private record EncodableFrame(Picture picture, int durationMs) {}
+}
@@ -10,7 +10,6 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class MediaDetectionService {
@@ -31,10 +30,19 @@ public class MediaDetectionService {
         Map.entry("js", "application/javascript"),
         Map.entry("mjs", "text/javascript")
     );
+    private static final int HEADER_BYTES = 64;
     private static final Set<String> ALLOWED_MEDIA_TYPES = Set.copyOf(EXTENSION_TYPES.values());
 
-    public Optional<String> detectAllowedMediaType(MultipartFile file, byte[] bytes) {
-        Optional<String> detected = detectMediaType(bytes)
+    public Optional<String> detectAllowedMediaType(MediaUpload upload) throws IOException {
+        return detectAllowedMediaType(upload.contentType(), upload.originalFilename(), upload.header(HEADER_BYTES));
+    }
+
+    /**
+     * Picks the media type from the leading bytes of the content, falling back to the declared content type and
+     * then the file extension. Only the header is needed, so callers never have to read the whole upload.
+     */
+    public Optional<String> detectAllowedMediaType(String contentType, String originalFilename, byte[] header) {
+        Optional<String> detected = detectMediaType(header)
             .map(MediaDetectionService::normalizeJavaScriptMediaType)
             .filter(MediaDetectionService::isAllowedMediaType);
 
@@ -42,14 +50,14 @@ public class MediaDetectionService {
             return detected;
         }
 
-        Optional<String> declared = Optional.ofNullable(file.getContentType())
+        Optional<String> declared = Optional.ofNullable(contentType)
             .map(MediaDetectionService::normalizeJavaScriptMediaType)
             .filter(MediaDetectionService::isAllowedMediaType);
         if (declared.isPresent()) {
             return declared;
         }
 
-        return Optional.ofNullable(file.getOriginalFilename())
+        return Optional.ofNullable(originalFilename)
             .map((name) -> name.replaceAll("^.*\\.", "").toLowerCase())
             .map(EXTENSION_TYPES::get)
             .filter(MediaDetectionService::isAllowedMediaType);
@@ -1,24 +1,18 @@
 package dev.kruhlmann.imgfloat.service.media;
 
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Optional;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
-import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import org.jcodec.api.FrameGrab;
 import org.jcodec.api.JCodecException;
-import org.jcodec.common.io.ByteBufferSeekableByteChannel;
+import org.jcodec.common.io.NIOUtils;
 import org.jcodec.common.model.Picture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,211 +21,130 @@ import org.springframework.stereotype.Service;
 @Service
 public class MediaOptimizationService {
 
-    private static final int MIN_GIF_DELAY_MS = 20;
     private static final Logger logger = LoggerFactory.getLogger(MediaOptimizationService.class);
     private final MediaPreviewService previewService;
+    private final GifTranscoder gifTranscoder;
 
-    public MediaOptimizationService(MediaPreviewService previewService) {
+    public MediaOptimizationService(MediaPreviewService previewService, GifTranscoder gifTranscoder) {
         this.previewService = previewService;
+        this.gifTranscoder = gifTranscoder;
     }
 
-    public OptimizedAsset optimizeAsset(byte[] bytes, String mediaType) throws IOException {
-        if (mediaType == null || mediaType.isBlank() || bytes == null || bytes.length == 0) {
+    /**
+     * Optimizes the media in {@code source} without loading it onto the heap where the format allows. Media
+     * that needs no conversion is returned pointing at {@code source} itself; converted media is written to a
+     * new temporary file that the caller is responsible for moving into storage or deleting.
+     */
+    public OptimizedAsset optimizeAsset(Path source, String mediaType) throws IOException {
+        if (mediaType == null || mediaType.isBlank() || source == null || Files.size(source) == 0) {
             return null;
         }
         if ("image/gif".equalsIgnoreCase(mediaType)) {
-            OptimizedAsset transcoded = transcodeGifToVideo(bytes);
+            OptimizedAsset transcoded = transcodeGifToVideo(source);
             if (transcoded != null) {
                 return transcoded;
             }
         }
 
         if (mediaType.startsWith("image/") && !"image/gif".equalsIgnoreCase(mediaType)) {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            BufferedImage image = ImageIO.read(source.toFile());
             if (image == null) {
                 return null;
             }
-            byte[] compressed = compressPng(image);
+            Path compressed = compressPng(image);
             return new OptimizedAsset(compressed, "image/png", image.getWidth(), image.getHeight(), null);
         }
 
         if (mediaType.startsWith("image/")) {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            BufferedImage image = ImageIO.read(source.toFile());
             if (image == null) {
                 return null;
             }
-            return new OptimizedAsset(bytes, mediaType, image.getWidth(), image.getHeight(), null);
+            return new OptimizedAsset(source, mediaType, image.getWidth(), image.getHeight(), null);
         }
 
         if (mediaType.startsWith("video/")) {
-            var dimensions = extractVideoDimensions(bytes);
-            byte[] preview = previewService.extractVideoPreview(bytes, mediaType);
-            return new OptimizedAsset(bytes, mediaType, dimensions.width(), dimensions.height(), preview);
+            var dimensions = extractVideoDimensions(source);
+            byte[] preview = previewService.extractVideoPreview(source, mediaType);
+            return new OptimizedAsset(source, mediaType, dimensions.width(), dimensions.height(), preview);
         }
 
         if (mediaType.startsWith("audio/")) {
-            return new OptimizedAsset(bytes, mediaType, 0, 0, null);
+            return new OptimizedAsset(source, mediaType, 0, 0, null);
         }
 
         if (mediaType.startsWith("application/javascript") || mediaType.startsWith("text/javascript")) {
-            return new OptimizedAsset(bytes, mediaType, 0, 0, null);
+            return new OptimizedAsset(source, mediaType, 0, 0, null);
         }
 
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        BufferedImage image = ImageIO.read(source.toFile());
         if (image != null) {
-            return new OptimizedAsset(bytes, mediaType, image.getWidth(), image.getHeight(), null);
+            return new OptimizedAsset(source, mediaType, image.getWidth(), image.getHeight(), null);
         }
         return null;
     }
 
-    private OptimizedAsset transcodeGifToVideo(byte[] bytes) {
+    private OptimizedAsset transcodeGifToVideo(Path source) {
+        Path target = null;
+        boolean transcoded = false;
         try {
-            List<GifFrame> frames = readGifFrames(bytes);
-            if (frames.isEmpty()) {
+            target = Files.createTempFile("gif-convert", ".mp4");
+            Optional<BufferedImage> cover = gifTranscoder.transcode(source, target);
+            if (cover.isEmpty()) {
                 return null;
             }
-            int baseDelay = frames
-                .stream()
-                .mapToInt((frame) -> normalizeDelay(frame.delayMs()))
-                .reduce(this::greatestCommonDivisor)
-                .orElse(100);
-            int fps = Math.max(1, (int) Math.round(1000.0 / baseDelay));
-            File temp = File.createTempFile("gif-convert", ".mp4");
-            temp.deleteOnExit();
-            try {
-                var encoder = org.jcodec.api.awt.AWTSequenceEncoder.createSequenceEncoder(temp, fps);
-                for (GifFrame frame : frames) {
-                    BufferedImage image = ensureEvenDimensions(frame.image());
-                    int repeats = Math.max(1, normalizeDelay(frame.delayMs()) / baseDelay);
-                    for (int i = 0; i < repeats; i++) {
-                        encoder.encodeImage(image);
-                    }
-                }
-                encoder.finish();
-                BufferedImage cover = ensureEvenDimensions(frames.get(0).image());
-                byte[] video = Files.readAllBytes(temp.toPath());
-                return new OptimizedAsset(
-                    video,
-                    "video/mp4",
-                    cover.getWidth(),
-                    cover.getHeight(),
-                    previewService.encodePreview(cover)
-                );
-            } finally {
-                Files.deleteIfExists(temp.toPath());
-            }
+            transcoded = true;
+            return new OptimizedAsset(
+                target,
+                "video/mp4",
+                cover.get().getWidth(),
+                cover.get().getHeight(),
+                previewService.encodePreview(cover.get())
+            );
         } catch (IOException e) {
             logger.warn("Unable to transcode GIF to video", e);
             return null;
-        }
-    }
-
-    private List<GifFrame> readGifFrames(byte[] bytes) throws IOException {
-        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
-            var readers = ImageIO.getImageReadersByFormatName("gif");
-            if (!readers.hasNext()) {
-                return List.of();
-            }
-            var reader = readers.next();
-            try {
-                reader.setInput(stream, false, false);
-                int count = reader.getNumImages(true);
-                var frames = new java.util.ArrayList<GifFrame>(count);
-                for (int i = 0; i < count; i++) {
-                    BufferedImage image = reader.read(i);
-                    IIOMetadata metadata = reader.getImageMetadata(i);
-                    int delay = extractDelayMs(metadata);
-                    frames.add(new GifFrame(image, delay));
+        } finally {
+            if (!transcoded && target != null) {
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException e) {
+                    logger.warn("Unable to delete temporary GIF transcode {}", target, e);
                 }
-                return frames;
-            } finally {
-                reader.dispose();
             }
         }
     }
 
-    private int extractDelayMs(IIOMetadata metadata) {
-        if (metadata == null) {
-            return 100;
-        }
+    private Path compressPng(BufferedImage image) throws IOException {
+        Path target = Files.createTempFile("png-compress", ".png");
         try {
-            String format = metadata.getNativeMetadataFormatName();
-            var root = metadata.getAsTree(format);
-            var children = root.getChildNodes();
-            for (int i = 0; i < children.getLength(); i++) {
-                var node = children.item(i);
-                if ("GraphicControlExtension".equals(node.getNodeName()) && node.getAttributes() != null) {
-                    var delay = node.getAttributes().getNamedItem("delayTime");
-                    if (delay != null) {
-                        int hundredths = Integer.parseInt(delay.getNodeValue());
-                        return Math.max(hundredths * 10, MIN_GIF_DELAY_MS);
-                    }
-                }
+            var writers = ImageIO.getImageWritersByFormatName("png");
+            if (!writers.hasNext()) {
+                logger.warn("No PNG writer available; skipping compression");
+                ImageIO.write(image, "png", target.toFile());
+                return target;
             }
-        } catch (Exception e) {
-            logger.warn("Unable to parse GIF delay", e);
-        }
-        return 100;
-    }
-
-    private int normalizeDelay(int delayMs) {
-        return Math.max(delayMs, MIN_GIF_DELAY_MS);
-    }
-
-    private int greatestCommonDivisor(int a, int b) {
-        if (b == 0) {
-            return Math.max(a, 1);
-        }
-        return greatestCommonDivisor(b, a % b);
-    }
-
-    private byte[] compressPng(BufferedImage image) throws IOException {
-        var writers = ImageIO.getImageWritersByFormatName("png");
-        if (!writers.hasNext()) {
-            logger.warn("No PNG writer available; skipping compression");
-            try (ByteArrayOutputStream fallback = new ByteArrayOutputStream()) {
-                ImageIO.write(image, "png", fallback);
-                return fallback.toByteArray();
-            }
-        }
-        ImageWriter writer = writers.next();
-        try (
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageOutputStream ios = ImageIO.createImageOutputStream(baos)
-        ) {
-            writer.setOutput(ios);
-            ImageWriteParam param = writer.getDefaultWriteParam();
-            if (param.canWriteCompressed()) {
-                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                param.setCompressionQuality(1.0f);
+            ImageWriter writer = writers.next();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(target.toFile())) {
+                writer.setOutput(ios);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(1.0f);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+                return target;
+            } finally {
+                writer.dispose();
             }
-            writer.write(null, new IIOImage(image, null, null), param);
-            return baos.toByteArray();
-        } finally {
-            writer.dispose();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
         }
     }
 
-    private BufferedImage ensureEvenDimensions(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int evenWidth = width % 2 == 0 ? width : width + 1;
-        int evenHeight = height % 2 == 0 ? height : height + 1;
-        if (evenWidth == width && evenHeight == height) {
-            return image;
-        }
-        BufferedImage padded = new BufferedImage(evenWidth, evenHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D graphics = padded.createGraphics();
-        try {
-            graphics.drawImage(image, 0, 0, null);
-        } finally {
-            graphics.dispose();
-        }
-        return padded;
-    }
-
-    private Dimension extractVideoDimensions(byte[] bytes) {
-        try (var channel = new ByteBufferSeekableByteChannel(ByteBuffer.wrap(bytes), bytes.length)) {
+    private Dimension extractVideoDimensions(Path source) {
+        try (var channel = NIOUtils.readableChannel(source.toFile())) {
             FrameGrab grab = FrameGrab.createFrameGrab(channel);
             Picture frame = grab.getNativeFrame();
             if (frame != null) {
@@ -243,7 +156,5 @@ public class MediaOptimizationService {
         return new Dimension(640, 360);
     }
 
-    private record GifFrame(BufferedImage image, int delayMs) {}
-
     private record Dimension(int width, int height) {}
 }
@@ -3,11 +3,11 @@ package dev.kruhlmann.imgfloat.service.media;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import javax.imageio.ImageIO;
 import org.jcodec.api.FrameGrab;
 import org.jcodec.api.JCodecException;
-import org.jcodec.common.io.ByteBufferSeekableByteChannel;
+import org.jcodec.common.io.NIOUtils;
 import org.jcodec.common.model.Picture;
 import org.jcodec.scale.AWTUtil;
 import org.slf4j.Logger;
@@ -32,8 +32,8 @@ public class MediaPreviewService {
         }
     }
 
-    public byte[] extractVideoPreview(byte[] bytes, String mediaType) {
-        try (var channel = new ByteBufferSeekableByteChannel(ByteBuffer.wrap(bytes), bytes.length)) {
+    public byte[] extractVideoPreview(Path source, String mediaType) {
+        try (var channel = NIOUtils.readableChannel(source.toFile())) {
             FrameGrab grab = FrameGrab.createFrameGrab(channel);
             Picture frame = grab.getNativeFrame();
             if (frame == null) {
@@ -0,0 +1,52 @@
+package dev.kruhlmann.imgfloat.service.media;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * An uploaded file detached from its servlet request and spooled to a temporary file, so it can be processed
+ * after the request has completed without holding the content on the heap. Closing the upload removes the
+ * temporary file unless it has already been moved into storage.
+ */
+public record MediaUpload(String originalFilename, String contentType, Path file, long size) implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MediaUpload.class);
+
+    public static MediaUpload from(MultipartFile multipartFile) throws IOException {
+        Path file = Files.createTempFile("imgfloat-upload", ".tmp");
+        try {
+            multipartFile.transferTo(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new MediaUpload(
+            multipartFile.getOriginalFilename(),
+            multipartFile.getContentType(),
+            file,
+            Files.size(file)
+        );
+    }
+
+    /**
+     * Reads at most {@code length} bytes from the start of the upload, enough to sniff its format.
+     */
+    public byte[] header(int length) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return stream.readNBytes(length);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete upload spool file {}", file, e);
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package dev.kruhlmann.imgfloat.service.media;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Objects;
 
-public record OptimizedAsset(byte[] bytes, String mediaType, int width, int height, byte[] previewBytes) {
+/**
+ * Result of optimizing an upload. The content lives in {@code file}, which is either the spooled upload
+ * itself when no conversion was needed or a temporary file holding the converted media; storing the asset
+ * moves it into place.
+ */
+public record OptimizedAsset(Path file, String mediaType, int width, int height, byte[] previewBytes) {
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -12,7 +18,7 @@ public record OptimizedAsset(byte[] bytes, String mediaType, int width, int heig
         return (
             width == that.width &&
             height == that.height &&
-            Arrays.equals(bytes, that.bytes) &&
+            Objects.equals(file, that.file) &&
             Arrays.equals(previewBytes, that.previewBytes) &&
             Objects.equals(mediaType, that.mediaType)
         );
@@ -20,8 +26,7 @@ public record OptimizedAsset(byte[] bytes, String mediaType, int width, int heig
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(mediaType, width, height);
-        result = 31 * result + Arrays.hashCode(bytes);
+        int result = Objects.hash(file, mediaType, width, height);
         result = 31 * result + Arrays.hashCode(previewBytes);
         return result;
     }
@@ -30,8 +35,8 @@ public record OptimizedAsset(byte[] bytes, String mediaType, int width, int heig
     public String toString() {
         return (
             "OptimizedAsset{" +
-            "bytes=" +
-            Arrays.toString(bytes) +
+            "file=" +
+            file +
             ", mediaType='" +
             mediaType +
             '\'' +
@@ -31,6 +31,8 @@ export function createAdminConsole({
     const previewCache = new Map();
     const previewImageCache = new Map();
     const pendingTransformSaves = new Map();
+    const INTERIM_TRANSFORM_INTERVAL_MS = 50;
+    let lastInterimTransformAt = 0;
     const HANDLE_SIZE = 10;
     const ROTATE_HANDLE_OFFSET = 32;
     const VOLUME_SLIDER_MAX = SETTINGS.maxAssetVolumeFraction * 100;
@@ -235,6 +237,15 @@ export function createAdminConsole({
         renderAssetList();
     }
 
+    function resolvePendingUploadByJob(jobId) {
+        if (!jobId) return false;
+        const index = pendingUploads.findIndex((item) => item.jobId === jobId);
+        if (index === -1) return false;
+        pendingUploads.splice(index, 1);
+        renderAssetList();
+        return true;
+    }
+
     function resolvePendingUploadByName(name) {
         if (!name) return;
         const index = pendingUploads.findIndex((item) => item.name === name);
@@ -588,6 +599,19 @@ export function createAdminConsole({
             applyCanvasSettings(event.payload);
             return;
         }
+        if (event.type === "UPLOAD_FAILED") {
+            if (resolvePendingUploadByJob(event.upload?.id)) {
+                showToast(`Upload failed: ${event.upload?.error || "unsupported file"}`, "error");
+            }
+            return;
+        }
+        if (event.type === "UPLOAD_COMPLETED") {
+            resolvePendingUploadByJob(event.upload?.id);
+            return;
+        }
+        if (event.type === "UPLOAD_PROGRESS") {
+            return;
+        }
         const assetId = event.assetId || event?.patch?.id || event?.payload?.id;
         if (event.type === "DELETED") {
             assets.delete(assetId);
@@ -624,6 +648,10 @@ export function createAdminConsole({
         if (!existing) {
             return;
         }
+        if (interactionState?.assetId === assetId) {
+            // Interim patches echo our own drag and lag behind the pointer
+            return;
+        }
         const merged = { ...existing, ...patch };
         const isAudio = isAudioAsset(merged);
         if (patch.hidden) {
@@ -2242,15 +2270,23 @@ export function createAdminConsole({
             body: data,
         })
             .then((response) => {
+                if (response.status === 429) {
+                    const error = new Error("Too many uploads");
+                    error.busy = true;
+                    throw error;
+                }
                 if (!response.ok) {
                     throw new Error("Upload failed");
                 }
+                return response.json();
+            })
+            .then((job) => {
                 if (fileInput) {
                     fileInput.value = "";
                     handleFileSelection(fileInput);
                 }
                 showToast("Upload received. Processing asset...", "success");
-                updatePendingUpload(pendingId, { status: "processing" });
+                updatePendingUpload(pendingId, { status: "processing", jobId: job?.id });
             })
             .catch((e) => {
                 if (fileNameLabel) {
@@ -2258,6 +2294,10 @@ export function createAdminConsole({
                 }
                 console.error(e);
                 removePendingUpload(pendingId);
+                if (e.busy) {
+                    showToast("Too many uploads are being processed. Please wait and try again.", "error");
+                    return;
+                }
                 showToast("Upload failed. Please try again with a supported file.", "error");
             });
     }
@@ -2338,6 +2378,25 @@ export function createAdminConsole({
             });
     }
 
+    function sendInterimTransform(asset) {
+        const now = performance.now();
+        if (now - lastInterimTransformAt < INTERIM_TRANSFORM_INTERVAL_MS) {
+            return;
+        }
+        lastInterimTransformAt = now;
+        fetch(`/api/channels/${broadcaster}/assets/${asset.id}/transform?interim=true`, {
+            method: "PUT",
+            headers: { "Content-Type": "application/json" },
+            body: JSON.stringify({
+                x: asset.x,
+                y: asset.y,
+                width: asset.width,
+                height: asset.height,
+                rotation: asset.rotation,
+            }),
+        }).catch(() => {});
+    }
+
     canvas.addEventListener("mousedown", (event) => {
         const point = getCanvasPoint(event);
         const current = getSelectedAsset();
@@ -2411,6 +2470,7 @@ export function createAdminConsole({
             canvas.style.cursor = "grabbing";
             requestDraw();
         }
+        sendInterimTransform(asset);
     });
 
     function endInteraction() {
@@ -0,0 +1,91 @@
+// Compact asset patch frames, see BinaryPatchSubscriptions on the server for the layout.
+
+// Copy before subscribing, the STOMP client adds the subscription id and destination to the headers it is given.
+export const PATCH_SUBSCRIBE_HEADERS = Object.freeze({ "imgfloat-format": "binary" });
+const PATCH_CONTENT_TYPE = "application/vnd.imgfloat.patch";
+const PATCH_FRAME = 1;
+
+const PATCH_FIELDS = [
+    ["x", "float"],
+    ["y", "float"],
+    ["width", "float"],
+    ["height", "float"],
+    ["rotation", "float"],
+    ["speed", "float"],
+    ["muted", "boolean"],
+    ["zIndex", "integer"],
+    ["hidden", "boolean"],
+    ["audioLoop", "boolean"],
+    ["audioDelayMillis", "integer"],
+    ["audioSpeed", "float"],
+    ["audioPitch", "float"],
+    ["audioVolume", "float"],
+];
+
+const textDecoder = new TextDecoder();
+
+export function isPatchFrame(message) {
+    return message?.headers?.["content-type"]?.startsWith(PATCH_CONTENT_TYPE) ?? false;
+}
+
+// Asset ids are only sent the first time they appear on a subscription, so use one decoder per subscription.
+export function createPatchDecoder() {
+    const assetIds = [];
+    return (body) => decodePatchFrame(body, assetIds);
+}
+
+function decodePatchFrame(body, assetIds) {
+    const binary = atob(body);
+    const bytes = new Uint8Array(binary.length);
+    for (let i = 0; i < binary.length; i++) {
+        bytes[i] = binary.charCodeAt(i);
+    }
+    const view = new DataView(bytes.buffer);
+    let offset = 0;
+
+    const readVarint = () => {
+        let value = 0;
+        let shift = 0;
+        let byte;
+        do {
+            byte = bytes[offset++];
+            value += (byte & 0x7f) * 2 ** shift;
+            shift += 7;
+        } while (byte & 0x80);
+        return value;
+    };
+
+    if (bytes[offset++] !== PATCH_FRAME) {
+        return null;
+    }
+    const seq = readVarint();
+    const reference = readVarint();
+    const index = Math.floor(reference / 2);
+    if (reference % 2 === 1) {
+        const length = readVarint();
+        assetIds[index] = textDecoder.decode(bytes.subarray(offset, offset + length));
+        offset += length;
+    }
+    const id = assetIds[index];
+    if (!id) {
+        return null;
+    }
+
+    const mask = readVarint();
+    const patch = { id };
+    PATCH_FIELDS.forEach(([name, type], bit) => {
+        if ((mask & (1 << bit)) === 0) {
+            return;
+        }
+        if (type === "float") {
+            patch[name] = view.getFloat32(offset);
+            offset += 4;
+        } else if (type === "boolean") {
+            patch[name] = bytes[offset++] === 1;
+        } else {
+            const zigzag = readVarint();
+            patch[name] = zigzag % 2 === 0 ? zigzag / 2 : -(zigzag + 1) / 2;
+        }
+    });
+    return { type: "UPDATED", assetId: id, patch, seq: seq > 0 ? seq : undefined };
+}
@@ -5,6 +5,7 @@ import { ensureLayerPosition, getLayerOrder, getRenderOrder } from "./layers.js"
 import { getVisibilityState, smoothState } from "./visibility.js";
 import { createAudioManager } from "./audioManager.js";
 import { createMediaManager } from "./mediaManager.js";
+import { PATCH_SUBSCRIBE_HEADERS, createPatchDecoder, isPatchFrame } from "./patchCodec.js";
 
 export class BroadcastRenderer {
     constructor({ canvas, scriptCanvas, broadcaster, showToast }) {
@@ -21,6 +22,8 @@ export class BroadcastRenderer {
         this.scriptWorker = null;
         this.scriptWorkerReady = false;
         this.scriptErrorKeys = new Set();
+        this.sync = { epoch: null, seq: 0, pending: null };
+        this.reconnectAttempts = 0;
 
         this.obsBrowser = !!globalThis.obsstudio;
         this.supportsAnimatedDecode =
@@ -54,21 +57,88 @@ export class BroadcastRenderer {
     connect() {
         const socket = new SockJS("/ws");
         const stompClient = Stomp.over(socket);
-        stompClient.connect({}, () => {
-            stompClient.subscribe(`/topic/channel/${this.broadcaster}`, (payload) => {
-                const body = JSON.parse(payload.body);
-                this.handleEvent(body);
+        stompClient.connect(
+            {},
+            () => {
+                this.reconnectAttempts = 0;
+                const decodePatch = createPatchDecoder();
+                // Buffer live events until the resync below tells us where they fit
+                this.sync.pending = [];
+                stompClient.subscribe(
+                    `/topic/channel/${this.broadcaster}`,
+                    (payload) => {
+                        const body = isPatchFrame(payload) ? decodePatch(payload.body) : JSON.parse(payload.body);
+                        if (body) {
+                            this.receiveEvent(body);
+                        }
+                    },
+                    { ...PATCH_SUBSCRIBE_HEADERS },
+                );
+                this.resync();
+            },
+            () => this.scheduleReconnect(),
+        );
+    }
+
+    scheduleReconnect() {
+        const attempt = this.reconnectAttempts++;
+        const backoff = Math.min(30000, 1000 * 2 ** attempt);
+        setTimeout(() => this.connect(), backoff / 2 + Math.random() * (backoff / 2));
+    }
+
+    receiveEvent(event) {
+        if (this.sync.pending) {
+            this.sync.pending.push(event);
+            return;
+        }
+        if (Number.isFinite(event.seq) && this.sync.epoch && event.seq > this.sync.seq + 1) {
+            this.sync.pending = [event];
+            this.resync();
+            return;
+        }
+        this.applySequencedEvent(event);
+    }
+
+    applySequencedEvent(event) {
+        this.handleEvent(event);
+        if (Number.isFinite(event.seq)) {
+            this.sync.seq = Math.max(this.sync.seq, event.seq);
+        }
+    }
+
+    resync() {
+        const params = new URLSearchParams();
+        if (this.sync.epoch) {
+            params.set("epoch", this.sync.epoch);
+            params.set("since", this.sync.seq);
+        }
+        fetch(`/api/channels/${this.broadcaster}/events?${params}`)
+            .then((r) => {
+                if (!r.ok) {
+                    throw new Error("Failed to load assets");
+                }
+                return r.json();
+            })
+            .then((sync) => {
+                if (sync.assets) {
+                    const ids = new Set(sync.assets.map((asset) => asset.id));
+                    [...this.state.assets.keys()].filter((id) => !ids.has(id)).forEach((id) => this.removeAsset(id));
+                    this.renderAssets(sync.assets);
+                } else {
+                    (sync.events || []).forEach((event) => this.handleEvent(event));
+                }
+                this.sync.epoch = sync.epoch;
+                this.sync.seq = sync.seq;
+                const pending = this.sync.pending || [];
+                this.sync.pending = null;
+                pending
+                    .filter((event) => !Number.isFinite(event.seq) || event.seq > sync.seq)
+                    .forEach((event) => this.applySequencedEvent(event));
+            })
+            .catch(() => {
+                this.showToast("Unable to load overlay assets. Retrying may help.", "error");
+                setTimeout(() => this.resync(), 5000);
             });
-            fetch(`/api/channels/${this.broadcaster}/assets`)
-                .then((r) => {
-                    if (!r.ok) {
-                        throw new Error("Failed to load assets");
-                    }
-                    return r.json();
-                })
-                .then((assets) => this.renderAssets(assets))
-                .catch(() => this.showToast("Unable to load overlay assets. Retrying may help.", "error"));
-        });
     }
 
     renderAssets(list) {
@@ -158,6 +228,9 @@ export class BroadcastRenderer {
             this.applyCanvasSettings(event.payload);
             return;
         }
+        if (event.type?.startsWith("UPLOAD_")) {
+            return;
+        }
         const assetId = event.assetId || event?.patch?.id || event?.payload?.id;
         if (event.type === "VISIBILITY") {
             this.handleVisibilityEvent(event);
@@ -1,5 +1,7 @@
 package dev.kruhlmann.imgfloat;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
@@ -8,22 +10,28 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kruhlmann.imgfloat.model.VisibilityRequest;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import javax.imageio.ImageIO;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @SpringBootTest(
     properties = {
@@ -65,22 +73,7 @@ class ChannelApiIntegrationTest {
 
         MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", samplePng());
 
-        String assetId = objectMapper
-            .readTree(
-                mockMvc
-                    .perform(
-                        multipart("/api/channels/{broadcaster}/assets", broadcaster)
-                            .file(file)
-                            .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster)))
-                            .with(csrf())
-                    )
-                    .andExpect(status().isOk())
-                    .andReturn()
-                    .getResponse()
-                    .getContentAsString()
-            )
-            .get("id")
-            .asText();
+        String assetId = uploadAsset(broadcaster, file).get("id").asText();
 
         mockMvc
             .perform(
@@ -122,6 +115,145 @@ class ChannelApiIntegrationTest {
             .andExpect(status().isOk());
     }
 
+    @Test
+    void interimTransformsReachCanvasSnapshotWithoutCommit() throws Exception {
+        String broadcaster = "drag_caster";
+        MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", samplePng());
+        String assetId = uploadAsset(broadcaster, file).get("id").asText();
+
+        VisibilityRequest visibilityRequest = new VisibilityRequest();
+        visibilityRequest.setHidden(false);
+        mockMvc
+            .perform(
+                put("/api/channels/{broadcaster}/assets/{id}/visibility", broadcaster, assetId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(visibilityRequest))
+                    .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster)))
+                    .with(csrf())
+            )
+            .andExpect(status().isOk());
+
+        mockMvc
+            .perform(
+                put("/api/channels/{broadcaster}/assets/{id}/transform", broadcaster, assetId)
+                    .param("interim", "true")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"x\":42.0,\"y\":7.0,\"width\":2.0,\"height\":2.0,\"rotation\":0.0}")
+                    .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster)))
+                    .with(csrf())
+            )
+            .andExpect(status().isAccepted());
+
+        // The drag ends without a commit; the coalesced patch alone must bring the snapshot up to date
+        long deadline = System.currentTimeMillis() + 5_000;
+        JsonNode visible = visibleAssets(broadcaster);
+        while (visible.get(0).get("x").asDouble() != 42.0) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(25);
+            visible = visibleAssets(broadcaster);
+        }
+        assertThat(visible.get(0).get("y").asDouble()).isEqualTo(7.0);
+        assertThat(visible.get(0).get("hidden").asBoolean()).isFalse();
+    }
+
+    @Test
+    void servesPartialAssetContentForRangeRequests() throws Exception {
+        String broadcaster = "ranger";
+        byte[] png = samplePng();
+        MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", png);
+        String assetId = uploadAsset(broadcaster, file).get("id").asText();
+
+        byte[] full = mockMvc
+            .perform(get("/api/channels/{broadcaster}/assets/{id}/content", broadcaster, assetId))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/assets/{id}/content", broadcaster, assetId).header(
+                    HttpHeaders.RANGE,
+                    "bytes=0-3"
+                )
+            )
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-3/" + full.length))
+            .andExpect(content().bytes(Arrays.copyOfRange(full, 0, 4)));
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/assets/{id}/content", broadcaster, assetId)
+                    .header(HttpHeaders.RANGE, "bytes=0-3")
+                    .header(HttpHeaders.IF_RANGE, "Thu, 01 Jan 1970 00:00:00 GMT")
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(full));
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/assets/{id}/content", broadcaster, assetId).header(
+                    HttpHeaders.RANGE,
+                    "bytes=" + (full.length + 10) + "-"
+                )
+            )
+            .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    void servesContentWithStrongValidatorsAndImmutableVersionedUrls() throws Exception {
+        String broadcaster = "validator";
+        MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", samplePng());
+        JsonNode created = uploadAsset(broadcaster, file);
+        String versionedUrl = created.get("url").asText();
+        String assetId = created.get("id").asText();
+        assertThat(versionedUrl).contains("/content?v=");
+
+        String etag = mockMvc
+            .perform(get(versionedUrl))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isEqualTo("\"" + versionedUrl.substring(versionedUrl.indexOf("?v=") + 3) + "\"");
+
+        mockMvc
+            .perform(get("/api/channels/{broadcaster}/assets/{id}/content", broadcaster, assetId))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+            .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/assets/{id}/content", broadcaster, assetId).header(
+                    HttpHeaders.IF_NONE_MATCH,
+                    etag
+                )
+            )
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void servesBroadcastReadsWithoutSessionsOrCsrfCookies() throws Exception {
+        for (String path : new String[] { "/view/reader/broadcast", "/api/channels/reader/canvas" }) {
+            MvcResult result = mockMvc.perform(get(path)).andExpect(status().isOk()).andReturn();
+            assertThat(result.getRequest().getSession(false)).isNull();
+            assertThat(result.getResponse().getCookies()).isEmpty();
+        }
+
+        MvcResult dashboard = mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/admins", "reader").with(
+                    oauth2Login().attributes((attrs) -> attrs.put("preferred_username", "reader"))
+                )
+            )
+            .andExpect(status().isOk())
+            .andReturn();
+        assertThat(dashboard.getResponse().getCookie("XSRF-TOKEN")).isNotNull();
+    }
+
     @Test
     void rejectsAdminChangesFromNonBroadcaster() throws Exception {
         mockMvc
@@ -135,6 +267,54 @@ class ChannelApiIntegrationTest {
             .andExpect(status().isForbidden());
     }
 
+    private JsonNode uploadAsset(String broadcaster, MockMultipartFile file) throws Exception {
+        JsonNode job = objectMapper.readTree(
+            mockMvc
+                .perform(
+                    multipart("/api/channels/{broadcaster}/assets", broadcaster)
+                        .file(file)
+                        .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster)))
+                        .with(csrf())
+                )
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+        );
+        String jobId = job.get("id").asText();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!"COMPLETED".equals(job.get("status").asText())) {
+            assertThat(job.get("status").asText()).isNotEqualTo("FAILED");
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(25);
+            job = objectMapper.readTree(
+                mockMvc
+                    .perform(
+                        get("/api/channels/{broadcaster}/uploads/{jobId}", broadcaster, jobId).with(
+                            oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster))
+                        )
+                    )
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString()
+            );
+        }
+        return job.get("asset");
+    }
+
+    private JsonNode visibleAssets(String broadcaster) throws Exception {
+        return objectMapper.readTree(
+            mockMvc
+                .perform(get("/api/channels/{broadcaster}/assets/visible", broadcaster))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+        );
+    }
+
     private byte[] samplePng() throws IOException {
         BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
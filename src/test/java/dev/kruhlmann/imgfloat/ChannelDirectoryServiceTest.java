@@ -6,10 +6,13 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import dev.kruhlmann.imgfloat.model.Asset;
+import dev.kruhlmann.imgfloat.model.AssetBlob;
 import dev.kruhlmann.imgfloat.model.AssetView;
 import dev.kruhlmann.imgfloat.model.AudioAsset;
 import dev.kruhlmann.imgfloat.model.Channel;
@@ -17,18 +20,28 @@ import dev.kruhlmann.imgfloat.model.ScriptAsset;
 import dev.kruhlmann.imgfloat.model.Settings;
 import dev.kruhlmann.imgfloat.model.TransformRequest;
 import dev.kruhlmann.imgfloat.model.VisibilityRequest;
+import dev.kruhlmann.imgfloat.repository.AssetBlobRepository;
 import dev.kruhlmann.imgfloat.repository.AssetRepository;
 import dev.kruhlmann.imgfloat.repository.AudioAssetRepository;
 import dev.kruhlmann.imgfloat.repository.ChannelRepository;
 import dev.kruhlmann.imgfloat.repository.ScriptAssetRepository;
 import dev.kruhlmann.imgfloat.repository.ScriptAssetAttachmentRepository;
 import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import dev.kruhlmann.imgfloat.service.AssetBlobService;
+import dev.kruhlmann.imgfloat.service.AssetContentCache;
 import dev.kruhlmann.imgfloat.service.AssetStorageService;
+import dev.kruhlmann.imgfloat.service.CanvasStateCache;
+import dev.kruhlmann.imgfloat.service.CanvasWriteBehindService;
 import dev.kruhlmann.imgfloat.service.ChannelDirectoryService;
+import dev.kruhlmann.imgfloat.service.ChannelEventPublisher;
+import dev.kruhlmann.imgfloat.service.PermissionCache;
 import dev.kruhlmann.imgfloat.service.SettingsService;
+import dev.kruhlmann.imgfloat.service.media.GifTranscoder;
 import dev.kruhlmann.imgfloat.service.media.MediaDetectionService;
 import dev.kruhlmann.imgfloat.service.media.MediaOptimizationService;
 import dev.kruhlmann.imgfloat.service.media.MediaPreviewService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -41,17 +54,19 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 class ChannelDirectoryServiceTest {
 
     private ChannelDirectoryService service;
-    private SimpMessagingTemplate messagingTemplate;
+    private ChannelEventPublisher eventPublisher;
     private ChannelRepository channelRepository;
     private AssetRepository assetRepository;
     private VisualAssetRepository visualAssetRepository;
@@ -59,10 +74,15 @@ class ChannelDirectoryServiceTest {
     private ScriptAssetRepository scriptAssetRepository;
     private ScriptAssetAttachmentRepository scriptAssetAttachmentRepository;
     private SettingsService settingsService;
+    private AssetBlobRepository assetBlobRepository;
+    private MediaOptimizationService mediaOptimizationService;
+    private Path assetRoot;
+    private SimpleMeterRegistry meterRegistry;
+    private CanvasWriteBehindService canvasWriteBehind;
 
     @BeforeEach
     void setup() throws Exception {
-        messagingTemplate = mock(SimpMessagingTemplate.class);
+        eventPublisher = mock(ChannelEventPublisher.class);
         channelRepository = mock(ChannelRepository.class);
         assetRepository = mock(AssetRepository.class);
         visualAssetRepository = mock(VisualAssetRepository.class);
@@ -70,15 +90,30 @@ class ChannelDirectoryServiceTest {
         scriptAssetRepository = mock(ScriptAssetRepository.class);
         scriptAssetAttachmentRepository = mock(ScriptAssetAttachmentRepository.class);
         settingsService = mock(SettingsService.class);
+        assetBlobRepository = mock(AssetBlobRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
         when(settingsService.get()).thenReturn(Settings.defaults());
         setupInMemoryPersistence();
-        Path assetRoot = Files.createTempDirectory("imgfloat-assets-test");
+        assetRoot = Files.createTempDirectory("imgfloat-assets-test");
         Path previewRoot = Files.createTempDirectory("imgfloat-previews-test");
-        AssetStorageService assetStorageService = new AssetStorageService(assetRoot.toString(), previewRoot.toString());
+        AssetStorageService assetStorageService = new AssetStorageService(
+            assetRoot.toString(),
+            previewRoot.toString(),
+            new AssetContentCache("1MB", "256KB", meterRegistry),
+            meterRegistry
+        );
         MediaPreviewService mediaPreviewService = new MediaPreviewService();
-        MediaOptimizationService mediaOptimizationService = new MediaOptimizationService(mediaPreviewService);
+        mediaOptimizationService = spy(new MediaOptimizationService(mediaPreviewService, new GifTranscoder(2)));
         MediaDetectionService mediaDetectionService = new MediaDetectionService();
         long uploadLimitBytes = 5_000_000L;
+        canvasWriteBehind = new CanvasWriteBehindService(
+            mock(EntityManager.class),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            meterRegistry,
+            "commit",
+            64,
+            0
+        );
         service = new ChannelDirectoryService(
             channelRepository,
             assetRepository,
@@ -86,15 +121,25 @@ class ChannelDirectoryServiceTest {
             audioAssetRepository,
             scriptAssetRepository,
             scriptAssetAttachmentRepository,
-            messagingTemplate,
+            eventPublisher,
             assetStorageService,
+            new AssetBlobService(assetBlobRepository, assetStorageService),
             mediaDetectionService,
             mediaOptimizationService,
             settingsService,
+            canvasWriteBehind,
+            new CanvasStateCache("30m"),
+            new PermissionCache("5m"),
+            meterRegistry,
             uploadLimitBytes
         );
     }
 
+    @AfterEach
+    void tearDown() {
+        canvasWriteBehind.shutdown();
+    }
+
     @Test
     void createsAssetsAndBroadcastsEvents() throws Exception {
         MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", samplePng());
@@ -102,10 +147,43 @@ class ChannelDirectoryServiceTest {
         Optional<AssetView> created = service.createAsset("caster", file);
         assertThat(created).isPresent();
         ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
-        verify(messagingTemplate).convertAndSend(
-            org.mockito.ArgumentMatchers.contains("/topic/channel/caster"),
-            captor.capture()
-        );
+        verify(eventPublisher).publish(org.mockito.ArgumentMatchers.eq("caster"), captor.capture());
+    }
+
+    @Test
+    void sharesStoredContentBetweenIdenticalUploads() throws Exception {
+        byte[] png = samplePng();
+        AssetView first = service
+            .createAsset("caster", new MockMultipartFile("file", "image.png", "image/png", png))
+            .orElseThrow();
+        AssetView second = service
+            .createAsset("other", new MockMultipartFile("file", "copy.png", "image/png", png))
+            .orElseThrow();
+
+        verify(mediaOptimizationService, times(1)).optimizeAsset(any(), anyString());
+        long storedFiles = storedBlobCount();
+        assertThat(storedFiles).isPositive();
+
+        service.deleteAsset(first.id());
+        assertThat(storedBlobCount()).isEqualTo(storedFiles);
+        assertThat(service.getAssetContent(second.id())).isPresent();
+
+        service.deleteAsset(second.id());
+        assertThat(storedBlobCount()).isZero();
+    }
+
+    @Test
+    void recordsUploadStageTimings() throws Exception {
+        byte[] png = samplePng();
+        service.createAsset("caster", new MockMultipartFile("file", "image.png", "image/png", png));
+        service.createAsset("other", new MockMultipartFile("file", "copy.png", "image/png", png));
+
+        assertThat(stageCount("detect")).isEqualTo(2);
+        assertThat(stageCount("optimize")).isEqualTo(1);
+        assertThat(stageCount("store")).isEqualTo(2);
+        assertThat(stageCount("persist")).isEqualTo(2);
+        assertThat(meterRegistry.get("imgfloat.upload.reused").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("imgfloat.storage.written").counter().count()).isPositive();
     }
 
     @Test
@@ -123,6 +201,52 @@ class ChannelDirectoryServiceTest {
         assertThat(service.updateVisibility(channel, id, visibilityRequest)).isPresent();
     }
 
+    @Test
+    void servesChannelReadsFromCanvasState() throws Exception {
+        String channel = "caster";
+        String first = createSampleAsset(channel);
+        String second = createSampleAsset(channel);
+
+        VisibilityRequest show = new VisibilityRequest();
+        show.setHidden(false);
+        service.updateVisibility(channel, first, show);
+        String third = createSampleAsset(channel);
+        service.deleteAsset(second);
+
+        assertThat(service.getAssetsForAdmin(channel)).extracting(AssetView::id).containsExactly(first, third);
+        assertThat(service.getAssetsForAdmin(channel)).extracting(AssetView::zIndex).containsExactly(1, 3);
+        assertThat(service.getVisibleAssets(channel)).extracting(AssetView::id).containsExactly(first);
+        verify(assetRepository, times(1)).findByBroadcaster(channel);
+    }
+
+    @Test
+    void cachesAdminChecksUntilAdminsChange() {
+        service.getOrCreateChannel("caster");
+
+        assertThat(service.isAdmin("Caster", "Mod")).isFalse();
+        assertThat(service.isAdmin("caster", "mod")).isFalse();
+        service.addAdmin("caster", "mod");
+        assertThat(service.isAdmin("caster", "mod")).isTrue();
+        service.removeAdmin("caster", "mod");
+        assertThat(service.isAdmin("caster", "mod")).isFalse();
+
+        // One lookup to create the channel, one per admin change and one per check after an invalidation
+        verify(channelRepository, times(6)).findById("caster");
+    }
+
+    @Test
+    void keepsAdminChannelListsCurrent() {
+        service.addAdmin("beta", "mod");
+        service.addAdmin("alpha", "mod");
+
+        assertThat(service.adminChannelsFor("Mod")).containsExactly("alpha", "beta");
+        assertThat(service.adminChannelsFor("mod")).containsExactly("alpha", "beta");
+        service.removeAdmin("beta", "Mod");
+        assertThat(service.adminChannelsFor("mod")).containsExactly("alpha");
+
+        verify(channelRepository, times(2)).findBroadcastersByAdmin("mod");
+    }
+
     @Test
     void rejectsInvalidTransformDimensions() throws Exception {
         String channel = "caster";
@@ -195,12 +319,42 @@ class ChannelDirectoryServiceTest {
         return transform;
     }
 
+    private long stageCount(String stage) {
+        return meterRegistry.get("imgfloat.upload.stage").tag("stage", stage).timer().count();
+    }
+
+    private long storedBlobCount() throws IOException {
+        try (var files = Files.walk(assetRoot)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
     private void setupInMemoryPersistence() {
         Map<String, Channel> channels = new ConcurrentHashMap<>();
         Map<String, Asset> assets = new ConcurrentHashMap<>();
         Map<String, dev.kruhlmann.imgfloat.model.VisualAsset> visualAssets = new ConcurrentHashMap<>();
         Map<String, AudioAsset> audioAssets = new ConcurrentHashMap<>();
         Map<String, ScriptAsset> scriptAssets = new ConcurrentHashMap<>();
+        Map<String, AssetBlob> blobs = new ConcurrentHashMap<>();
+
+        when(assetBlobRepository.save(any(AssetBlob.class))).thenAnswer((invocation) -> {
+            AssetBlob blob = invocation.getArgument(0);
+            blobs.put(blob.getHash(), blob);
+            return blob;
+        });
+        when(assetBlobRepository.findById(anyString())).thenAnswer((invocation) ->
+            Optional.ofNullable(blobs.get(invocation.getArgument(0)))
+        );
+        when(assetBlobRepository.findFirstBySourceHash(anyString())).thenAnswer((invocation) ->
+            blobs
+                .values()
+                .stream()
+                .filter((blob) -> invocation.getArgument(0).equals(blob.getSourceHash()))
+                .findFirst()
+        );
+        doAnswer((invocation) -> blobs.remove(invocation.getArgument(0, AssetBlob.class).getHash()))
+            .when(assetBlobRepository)
+            .delete(any(AssetBlob.class));
 
         when(channelRepository.findById(anyString())).thenAnswer((invocation) ->
             Optional.ofNullable(channels.get(invocation.getArgument(0)))
@@ -211,6 +365,15 @@ class ChannelDirectoryServiceTest {
             return channel;
         });
         when(channelRepository.findAll()).thenAnswer((invocation) -> List.copyOf(channels.values()));
+        when(channelRepository.findBroadcastersByAdmin(anyString())).thenAnswer((invocation) ->
+            channels
+                .values()
+                .stream()
+                .filter((channel) -> channel.getAdmins().contains(invocation.getArgument(0, String.class)))
+                .map(Channel::getBroadcaster)
+                .sorted()
+                .toList()
+        );
         when(channelRepository.findTop50ByBroadcasterContainingIgnoreCaseOrderByBroadcasterAsc(anyString())).thenAnswer(
             (invocation) ->
                 channels
@@ -261,15 +424,6 @@ class ChannelDirectoryServiceTest {
                 .filter((visual) -> ids.contains(visual.getId()))
                 .toList();
         });
-        when(visualAssetRepository.findByIdInAndHiddenFalse(any())).thenAnswer((invocation) -> {
-            Collection<String> ids = invocation.getArgument(0);
-            return visualAssets
-                .values()
-                .stream()
-                .filter((visual) -> ids.contains(visual.getId()))
-                .filter((visual) -> !visual.isHidden())
-                .toList();
-        });
         doAnswer((invocation) -> visualAssets.remove(invocation.getArgument(0, String.class)))
             .when(visualAssetRepository)
             .deleteById(anyString());
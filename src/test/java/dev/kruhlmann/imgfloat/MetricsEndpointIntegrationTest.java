@@ -0,0 +1,81 @@
+package dev.kruhlmann.imgfloat;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import dev.kruhlmann.imgfloat.service.SystemAdministratorService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(
+    properties = {
+        "spring.security.oauth2.client.registration.twitch.client-id=test-client-id",
+        "spring.security.oauth2.client.registration.twitch.client-secret=test-client-secret",
+    }
+)
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class MetricsEndpointIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SystemAdministratorService systemAdministratorService;
+
+    @Test
+    void exposesPipelineMetricsToSysadminsWithoutPerChannelLabels() throws Exception {
+        mockMvc
+            .perform(
+                post("/api/channels/{broadcaster}/admins", "metrics_caster")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"username\":\"helper\"}")
+                    .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", "metrics_caster")))
+                    .with(csrf())
+            )
+            .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mockMvc
+            .perform(
+                get("/actuator/prometheus").with(
+                    oauth2Login().attributes((attrs) -> attrs.put("preferred_username", "metrics_caster"))
+                )
+            )
+            .andExpect(status().isForbidden());
+
+        systemAdministratorService.addSysadmin("metrics_admin");
+        mockMvc
+            .perform(
+                get("/actuator/prometheus").with(
+                    oauth2Login().attributes((attrs) -> attrs.put("preferred_username", "metrics_admin"))
+                )
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("imgfloat_upload_stage_seconds_bucket{stage=\"detect\"")))
+            .andExpect(content().string(containsString("imgfloat_storage_read_bytes_total")))
+            .andExpect(content().string(containsString("imgfloat_storage_written_bytes_total")))
+            .andExpect(
+                content()
+                    .string(
+                        containsString(
+                            "imgfloat_websocket_messages_published_total{destination=\"/topic/channel/{channel}\""
+                        )
+                    )
+            )
+            .andExpect(content().string(containsString("executor_queued_tasks{name=\"clientOutboundChannelExecutor\"")))
+            .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket")))
+            .andExpect(content().string(not(containsString("metrics_caster"))));
+    }
+}
@@ -0,0 +1,114 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetPatch;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+class BinaryPatchSubscriptionsTest {
+
+    private static final String ASSET_ID = "0f8fad5b-d9cb-469f-a165-70867728950e";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BinaryPatchSubscriptions subscriptions = new BinaryPatchSubscriptions(objectMapper);
+
+    @Test
+    void encodesPatchesForBinarySubscriptions() throws Exception {
+        subscriptions.preSend(subscribe("binary-session", BinaryPatchSubscriptions.BINARY_FORMAT), null);
+        Message<byte[]> json = patch("binary-session", 120.5, 48.25);
+
+        Message<?> first = subscriptions.toClientFrame(json);
+        Message<?> second = subscriptions.toClientFrame(patch("binary-session", 121.5, 49.25));
+
+        assertThat(first.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(
+            BinaryPatchSubscriptions.CONTENT_TYPE
+        );
+        byte[] definition = Base64.getDecoder().decode((byte[]) first.getPayload());
+        assertThat(new String(definition, StandardCharsets.UTF_8)).contains(ASSET_ID);
+        byte[] reference = Base64.getDecoder().decode((byte[]) second.getPayload());
+        // Kind, sequence number, asset reference, field mask and two float32 values
+        assertThat(reference).containsExactly(1, 7, 0, 3, 0x42, (byte) 0xF3, 0, 0, 0x42, 0x45, 0, 0);
+        assertThat(((byte[]) second.getPayload()).length).isLessThan(json.getPayload().length / 5);
+    }
+
+    @Test
+    void leavesOtherSubscriptionsAndEventsAsJson() throws Exception {
+        subscriptions.preSend(subscribe("json-session", null), null);
+        subscriptions.preSend(subscribe("binary-session", BinaryPatchSubscriptions.BINARY_FORMAT), null);
+        Message<byte[]> patch = patch("json-session", 1.0, 2.0);
+        Message<byte[]> deleted = message(
+            "binary-session",
+            objectMapper.writeValueAsBytes(AssetEvent.deleted("caster", ASSET_ID)),
+            false
+        );
+
+        assertThat(subscriptions.toClientFrame(patch)).isSameAs(patch);
+        assertThat(subscriptions.toClientFrame(deleted)).isSameAs(deleted);
+    }
+
+    @Test
+    void forgetsSubscriptionsOfDisconnectedSessions() throws Exception {
+        subscriptions.preSend(subscribe("binary-session", BinaryPatchSubscriptions.BINARY_FORMAT), null);
+        SimpMessageHeaderAccessor disconnect = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        disconnect.setSessionId("binary-session");
+        subscriptions.preSend(MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()), null);
+        Message<byte[]> patch = patch("binary-session", 1.0, 2.0);
+
+        assertThat(subscriptions.toClientFrame(patch)).isSameAs(patch);
+    }
+
+    private Message<byte[]> patch(String sessionId, double x, double y) throws Exception {
+        AssetPatch patch = new AssetPatch(
+            ASSET_ID,
+            x,
+            y,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null
+        );
+        AssetEvent event = AssetEvent.updated("caster", patch).withSeq(7);
+        return message(sessionId, objectMapper.writeValueAsBytes(event), true);
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] payload, boolean patch) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/channel/caster");
+        if (patch) {
+            accessor.setHeader(AssetEvent.COALESCE_KEY_HEADER, ASSET_ID);
+        }
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String format) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/channel/caster");
+        if (format != null) {
+            accessor.setNativeHeader(BinaryPatchSubscriptions.FORMAT_HEADER, format);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
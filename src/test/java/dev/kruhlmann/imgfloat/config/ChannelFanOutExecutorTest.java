@@ -0,0 +1,167 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+class ChannelFanOutExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch blocking = new CountDownLatch(1);
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private ChannelFanOutExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void stalledChannelDoesNotDelayOtherChannels() throws Exception {
+        executor = create(2, 10, ChannelFanOutExecutor.SlowConsumerPolicy.DROP);
+        CountDownLatch otherDelivered = new CountDownLatch(1);
+
+        executor.execute(delivery("slow", "first", null, this::block));
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(delivery("slow", "second", null, this::record));
+        executor.execute(delivery("fast", "other", null, (message) -> otherDelivered.countDown()));
+
+        assertThat(otherDelivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delivered).isEmpty();
+        assertThat(meterRegistry.get("imgfloat.websocket.fanout.queued").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void dropsBroadcastsThatDoNotFitTheChannelQueue() throws Exception {
+        executor = create(1, 1, ChannelFanOutExecutor.SlowConsumerPolicy.DROP);
+
+        executor.execute(delivery("caster", "first", null, this::block));
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(delivery("caster", "second", null, this::record));
+        executor.execute(delivery("caster", "third", null, this::record));
+        release.countDown();
+
+        awaitDeliveries(1);
+        assertThat(delivered).containsExactly("second");
+        double overflow = meterRegistry.get("imgfloat.websocket.fanout.overflow").tag("policy", "drop").counter().count();
+        assertThat(overflow).isEqualTo(1.0);
+    }
+
+    @Test
+    void coalescesPatchesForTheSameAssetWhenTheQueueIsFull() throws Exception {
+        executor = create(1, 1, ChannelFanOutExecutor.SlowConsumerPolicy.COALESCE);
+
+        executor.execute(delivery("caster", "{}", "asset", this::block));
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(delivery("caster", "{\"patch\":{\"x\":1.0,\"y\":2.0}}", "asset", this::record));
+        executor.execute(delivery("caster", "{\"patch\":{\"x\":5.0}}", "asset", this::record));
+        release.countDown();
+
+        awaitDeliveries(1);
+        assertThat(delivered).containsExactly("{\"patch\":{\"x\":5.0,\"y\":2.0}}");
+    }
+
+    @Test
+    void queuesBroadcastsThatCannotBeCoalescedPastTheCapacity() throws Exception {
+        executor = create(1, 1, ChannelFanOutExecutor.SlowConsumerPolicy.COALESCE);
+
+        executor.execute(delivery("caster", "{}", "asset", this::block));
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(delivery("caster", "{\"patch\":{\"x\":1.0}}", "asset", this::record));
+        executor.execute(delivery("caster", "{\"type\":\"DELETED\"}", null, this::record));
+        executor.execute(delivery("caster", "{\"patch\":{\"x\":2.0}}", "other", this::record));
+        release.countDown();
+
+        awaitDeliveries(3);
+        assertThat(delivered).containsExactly(
+            "{\"patch\":{\"x\":1.0}}",
+            "{\"type\":\"DELETED\"}",
+            "{\"patch\":{\"x\":2.0}}"
+        );
+    }
+
+    private ChannelFanOutExecutor create(int threads, int capacity, ChannelFanOutExecutor.SlowConsumerPolicy policy) {
+        return new ChannelFanOutExecutor(
+            threads,
+            capacity,
+            policy,
+            new ObjectMapper(),
+            UnaryOperator.identity(),
+            meterRegistry
+        );
+    }
+
+    private void block(Message<?> message) {
+        blocking.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(Message<?> message) {
+        delivered.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+    }
+
+    private void awaitDeliveries(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delivered.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        // Give a wrongly queued extra delivery the chance to show up
+        Thread.sleep(50);
+    }
+
+    private static MessageHandlingRunnable delivery(
+        String channel,
+        String payload,
+        String coalesceKey,
+        MessageHandler handler
+    ) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/channel/" + channel);
+        accessor.setSessionId("session");
+        if (coalesceKey != null) {
+            accessor.setHeader(AssetEvent.COALESCE_KEY_HEADER, coalesceKey);
+        }
+        Message<byte[]> message = MessageBuilder.createMessage(
+            payload.getBytes(StandardCharsets.UTF_8),
+            accessor.getMessageHeaders()
+        );
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return handler;
+            }
+
+            @Override
+            public void run() {
+                handler.handleMessage(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest(
+    properties = {
+        "spring.security.oauth2.client.registration.twitch.client-id=test-client-id",
+        "spring.security.oauth2.client.registration.twitch.client-secret=test-client-secret",
+    }
+)
+class DataSourceConfigIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void routesReadOnlyTransactionsToReaders() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        Integer reader = readOnly.execute((status) -> queryOnly());
+        Integer writer = readWrite.execute((status) -> queryOnly());
+
+        assertThat(reader).isEqualTo(1);
+        assertThat(writer).isEqualTo(0);
+        assertThat(queryOnly()).isEqualTo(0);
+    }
+
+    private Integer queryOnly() {
+        return jdbcTemplate.queryForObject("PRAGMA query_only", Integer.class);
+    }
+}
@@ -0,0 +1,58 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.kruhlmann.imgfloat.repository.AssetBlobRepository;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import dev.kruhlmann.imgfloat.repository.ScriptAssetAttachmentRepository;
+import dev.kruhlmann.imgfloat.repository.SystemAdministratorRepository;
+import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(
+    properties = {
+        "spring.security.oauth2.client.registration.twitch.client-id=test-client-id",
+        "spring.security.oauth2.client.registration.twitch.client-secret=test-client-secret",
+        "IMGFLOAT_QUERY_PLAN_AUDIT=true",
+    }
+)
+class QueryPlanAuditIntegrationTest {
+
+    @Autowired
+    private QueryPlanAudit queryPlanAudit;
+
+    @Autowired
+    private AssetRepository assetRepository;
+
+    @Autowired
+    private VisualAssetRepository visualAssetRepository;
+
+    @Autowired
+    private ScriptAssetAttachmentRepository scriptAssetAttachmentRepository;
+
+    @Autowired
+    private AssetBlobRepository assetBlobRepository;
+
+    @Autowired
+    private ChannelRepository channelRepository;
+
+    @Autowired
+    private SystemAdministratorRepository systemAdministratorRepository;
+
+    @Test
+    void lookupQueriesUseIndexes() {
+        assetRepository.findByBroadcaster("caster");
+        visualAssetRepository.findByIdIn(List.of("asset"));
+        scriptAssetAttachmentRepository.findByScriptAssetId("script");
+        scriptAssetAttachmentRepository.findByScriptAssetIdIn(List.of("script"));
+        assetBlobRepository.findFirstBySourceHash("hash");
+        channelRepository.findBroadcastersByAdmin("mod");
+        systemAdministratorRepository.existsByTwitchUsername("admin");
+
+        assertThat(queryPlanAudit.fullScans()).isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+class SchemaMigrationTest {
+
+    @TempDir
+    Path directory;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + directory.resolve("imgfloat.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(
+            """
+            CREATE TABLE SPRING_SESSION_ATTRIBUTES (
+                SESSION_PRIMARY_ID CHAR(36) NOT NULL,
+                ATTRIBUTE_NAME VARCHAR(200) NOT NULL,
+                ATTRIBUTE_BYTES BLOB NOT NULL
+            )
+            """
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void appliesEachMigrationOnce() {
+        new SchemaMigration(dataSource).migrate();
+        Long appliedAt = jdbcTemplate.queryForObject("SELECT max(applied_at) FROM schema_version", Long.class);
+
+        new SchemaMigration(dataSource).migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM schema_version", Integer.class)).isEqualTo(9);
+        assertThat(jdbcTemplate.queryForObject("SELECT max(applied_at) FROM schema_version", Long.class)).isEqualTo(
+            appliedAt
+        );
+        assertThat(
+            jdbcTemplate.queryForList("SELECT name FROM sqlite_master WHERE type = 'index'", String.class)
+        ).contains("idx_assets_broadcaster", "idx_channel_admins_admin_username");
+        assertThat(
+            jdbcTemplate.queryForList("SELECT name FROM sqlite_master WHERE name LIKE 'SPRING_SESSION%'", String.class)
+        ).isEmpty();
+    }
+
+    @Test
+    void removesDuplicateSystemAdministratorsBeforeEnforcingUniqueness() {
+        new SchemaMigration(dataSource).migrate();
+        jdbcTemplate.execute("DELETE FROM schema_version WHERE version = 9");
+        jdbcTemplate.execute("DROP INDEX idx_system_administrators_twitch_username");
+        jdbcTemplate.execute(
+            "CREATE INDEX idx_system_administrators_twitch_username ON system_administrators (twitch_username)"
+        );
+        String insert =
+            "INSERT INTO system_administrators (id, created_at, twitch_username, updated_at) VALUES (?, 0, 'admin', 0)";
+        jdbcTemplate.update(insert, "first");
+        jdbcTemplate.update(insert, "second");
+
+        new SchemaMigration(dataSource).migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM system_administrators", String.class)).containsExactly(
+            "first"
+        );
+        assertThatThrownBy(() -> jdbcTemplate.update(insert, "third")).hasMessageContaining(
+            "UNIQUE constraint failed"
+        );
+    }
+
+    @Test
+    void backfillsLegacyAssetsIntoTypedTables() {
+        jdbcTemplate.execute(
+            """
+            CREATE TABLE assets (
+                id TEXT PRIMARY KEY,
+                broadcaster TEXT NOT NULL,
+                name TEXT,
+                preview TEXT,
+                x REAL, y REAL, width REAL, height REAL, rotation REAL, speed REAL, muted BOOLEAN,
+                media_type TEXT, original_media_type TEXT, z_index INTEGER,
+                audio_loop BOOLEAN, audio_delay_millis INTEGER, audio_speed REAL, audio_pitch REAL,
+                audio_volume REAL, hidden BOOLEAN,
+                created_at TIMESTAMP, updated_at TIMESTAMP
+            )
+            """
+        );
+        jdbcTemplate.update(
+            "INSERT INTO assets (id, broadcaster, name, media_type, x, y, width, height, rotation) " +
+                "VALUES ('image', 'caster', 'cat.png', 'image/png', 1, 2, 3, 4, 0)"
+        );
+        jdbcTemplate.update(
+            "INSERT INTO assets (id, broadcaster, name, media_type) VALUES ('sound', 'caster', 'horn', 'audio/ogg')"
+        );
+
+        new SchemaMigration(dataSource).migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT asset_type FROM assets ORDER BY id", String.class))
+            .containsExactly("IMAGE", "AUDIO");
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM visual_assets", String.class)).containsExactly("image");
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM audio_assets", String.class)).containsExactly("sound");
+        assertThat(jdbcTemplate.query("PRAGMA table_info(assets)", (rs, rowNum) -> rs.getString("name"))).contains(
+            "asset_type",
+            "content_hash"
+        );
+    }
+}
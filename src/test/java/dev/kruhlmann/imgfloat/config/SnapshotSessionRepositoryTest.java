@@ -0,0 +1,64 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.session.MapSession;
+
+class SnapshotSessionRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresSessionsFromSnapshot() {
+        Path snapshot = directory.resolve("sessions");
+        SnapshotSessionRepository repository = repository(snapshot);
+        MapSession session = repository.createSession();
+        session.setAttribute("user", "caster");
+        repository.save(session);
+        repository.shutdown();
+
+        SnapshotSessionRepository restored = repository(snapshot);
+
+        assertThat(restored.findById(session.getId())).isNotNull();
+        assertThat(restored.findById(session.getId()).<String>getAttribute("user")).isEqualTo("caster");
+        restored.shutdown();
+    }
+
+    @Test
+    void dropsExpiredSessions() throws Exception {
+        Path snapshot = directory.resolve("sessions");
+        SnapshotSessionRepository repository = repository(snapshot);
+        MapSession expired = repository.createSession();
+        expired.setLastAccessedTime(Instant.now().minus(Duration.ofHours(1)));
+        repository.save(expired);
+        MapSession active = repository.createSession();
+        repository.save(active);
+
+        repository.sweep();
+        repository.snapshot();
+
+        assertThat(Files.exists(snapshot)).isTrue();
+        SnapshotSessionRepository restored = repository(snapshot);
+        assertThat(restored.findById(expired.getId())).isNull();
+        assertThat(restored.findById(active.getId())).isNotNull();
+        repository.shutdown();
+        restored.shutdown();
+    }
+
+    private SnapshotSessionRepository repository(Path snapshot) {
+        return new SnapshotSessionRepository(
+            Duration.ofMinutes(30),
+            snapshot,
+            Duration.ofMinutes(1),
+            new SimpleMeterRegistry()
+        );
+    }
+}
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -13,6 +14,8 @@ import org.junit.jupiter.api.Test;
 class AssetStorageServiceTest {
 
     private AssetStorageService service;
+    private AssetContentCache cache;
+    private SimpleMeterRegistry meterRegistry;
     private Path assets;
     private Path previews;
 
@@ -20,12 +23,14 @@ class AssetStorageServiceTest {
     void setUp() throws IOException {
         assets = Files.createTempDirectory("asset-storage-service");
         previews = Files.createTempDirectory("preview-storage-service");
-        service = new AssetStorageService(assets.toString(), previews.toString());
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new AssetContentCache("8KB", "4KB", meterRegistry);
+        service = new AssetStorageService(assets.toString(), previews.toString(), cache, meterRegistry);
     }
 
     @Test
     void refusesToStoreEmptyAsset() {
-        assertThatThrownBy(() -> service.storeAsset("caster", "id", new byte[0], "image/png"))
+        assertThatThrownBy(() -> service.storeBlob(new byte[0]))
             .isInstanceOf(IOException.class)
             .hasMessageContaining("empty");
     }
@@ -35,18 +40,60 @@ class AssetStorageServiceTest {
         byte[] bytes = new byte[] { 1, 2, 3 };
         String assetId = "asset-1";
 
-        service.storeAsset("caster", assetId, bytes, "image/png");
+        String digest = service.storeBlob(bytes);
 
-        AssetContent loaded = service.loadAssetFile("caster", assetId, "image/png").orElseThrow();
+        AssetContent loaded = service.loadAssetFile("caster", assetId, "image/png", digest).orElseThrow();
         assertThat(loaded.bytes()).containsExactly(bytes);
         assertThat(loaded.mediaType()).isEqualTo("image/png");
-        assertThat(Files.exists(assets.resolve("caster").resolve(assetId + ".png"))).isTrue();
+        assertThat(Files.exists(assets.resolve("blobs").resolve(digest.substring(0, 2)).resolve(digest))).isTrue();
     }
 
     @Test
-    void ignoresEmptyPreview() throws IOException {
-        service.storePreview("caster", "id", new byte[0]);
-        assertThat(Files.list(previews).count()).isEqualTo(0);
+    void returnsContentDigestWhenStoring() throws IOException {
+        String digest = service.storeBlob("abc".getBytes());
+
+        assertThat(digest).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    void storesIdenticalContentOnce() throws IOException {
+        String first = service.storeBlob(new byte[] { 4, 5, 6 });
+        String second = service.storeBlob(new byte[] { 4, 5, 6 });
+
+        assertThat(second).isEqualTo(first);
+        try (var files = Files.walk(assets)) {
+            assertThat(files.filter(Files::isRegularFile).count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void movesSpooledFilesIntoBlobStore() throws IOException {
+        Path first = Files.write(Files.createTempFile("asset-spool", ".bin"), new byte[] { 1, 2, 3 });
+        Path second = Files.write(Files.createTempFile("asset-spool", ".bin"), new byte[] { 1, 2, 3 });
+        String digest = AssetStorageService.sha256Hex(first);
+
+        assertThat(service.storeBlob(first, digest)).isEqualTo(digest);
+        assertThat(service.storeBlob(second, digest)).isEqualTo(digest);
+
+        assertThat(Files.exists(first)).isFalse();
+        assertThat(Files.exists(second)).isFalse();
+        assertThat(service.blobExists(digest)).isTrue();
+        assertThat(service.loadAssetFile("caster", "asset", "image/png", digest).orElseThrow().bytes()).containsExactly(
+            1,
+            2,
+            3
+        );
+    }
+
+    @Test
+    void fallsBackToPerAssetFilesStoredBeforeDeduplication() throws IOException {
+        Path legacy = assets.resolve("caster").resolve("legacy.png");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[] { 7 });
+
+        AssetContent loaded = service.loadAssetFile("caster", "legacy", "image/png", null).orElseThrow();
+
+        assertThat(loaded.bytes()).containsExactly(7);
     }
 
     @Test
@@ -54,7 +101,51 @@ class AssetStorageServiceTest {
         byte[] preview = new byte[] { 9, 8, 7 };
         String assetId = "asset-2";
 
-        service.storePreview("caster", assetId, preview);
-        assertThat(service.loadPreview("caster", assetId)).isPresent();
+        String digest = service.storeBlob(preview);
+        assertThat(service.loadPreview("caster", assetId, digest)).isPresent();
+    }
+
+    @Test
+    void servesRepeatedLoadsFromCache() throws IOException {
+        String digest = service.storeBlob(new byte[] { 1 });
+        service.loadAssetFile("caster", "cached", "image/png", digest);
+        AssetContent reloaded = service.loadAssetFile("caster", "cached", "image/png", digest).orElseThrow();
+
+        assertThat(reloaded.bytes()).containsExactly(1);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+        assertThat(
+            meterRegistry.get("imgfloat.storage.cache.requests").tag("result", "hit").functionCounter().count()
+        ).isEqualTo(1.0);
+        assertThat(meterRegistry.get("imgfloat.storage.cache.size").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void bypassesCacheForLargeFilesAndEvictsWithinBudget() throws IOException {
+        String large = service.storeBlob(new byte[5 * 1024]);
+        service.loadAssetFile("caster", "large", "video/mp4", large);
+        assertThat(cache.stats().entries()).isZero();
+
+        for (int i = 0; i < 3; i++) {
+            byte[] bytes = new byte[3 * 1024];
+            bytes[0] = (byte) i;
+            service.loadAssetFile("caster", "small-" + i, "image/png", service.storeBlob(bytes));
+        }
+
+        AssetContentCache.Stats stats = cache.stats();
+        assertThat(stats.sizeBytes()).isLessThanOrEqualTo(stats.maxSizeBytes());
+        assertThat(stats.evictions()).isEqualTo(1);
+        assertThat(stats.entries()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsCachedContentWhenBlobIsDeleted() throws IOException {
+        String digest = service.storeBlob(new byte[] { 1 });
+        service.loadAssetFile("caster", "gone", "image/png", digest);
+
+        service.deleteBlob(digest);
+
+        assertThat(service.loadAssetFile("caster", "gone", "image/png", digest)).isEmpty();
+        assertThat(cache.stats().entries()).isZero();
     }
 }
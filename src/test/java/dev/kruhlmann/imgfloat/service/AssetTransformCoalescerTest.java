@@ -0,0 +1,166 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.model.Asset;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.TransformRequest;
+import dev.kruhlmann.imgfloat.model.VisualAsset;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
+import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class AssetTransformCoalescerTest {
+
+    private final AssetRepository assetRepository = mock(AssetRepository.class);
+    private final VisualAssetRepository visualAssetRepository = mock(VisualAssetRepository.class);
+    private final ChannelDirectoryService channelDirectoryService = mock(ChannelDirectoryService.class);
+    private final CanvasWriteBehindService canvasWriteBehind = mock(CanvasWriteBehindService.class);
+    private final ChannelEventPublisher eventPublisher = mock(ChannelEventPublisher.class);
+    private final Asset asset = new Asset("caster", AssetType.IMAGE);
+    private final List<VisualAsset> merged = new ArrayList<>();
+    private AssetTransformCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        when(assetRepository.findById(asset.getId())).thenReturn(Optional.of(asset));
+        when(visualAssetRepository.findById(asset.getId())).thenAnswer((invocation) ->
+            Optional.of(new VisualAsset(asset.getId(), "emote", 100, 100))
+        );
+        when(canvasWriteBehind.mergePending(eq(VisualAsset.class), anyString(), any(), any())).thenAnswer(
+            (invocation) -> {
+                Supplier<Optional<VisualAsset>> loader = invocation.getArgument(2);
+                Consumer<VisualAsset> change = invocation.getArgument(3);
+                Optional<VisualAsset> stored = loader.get();
+                stored.ifPresent(change.andThen(merged::add));
+                return stored.isPresent();
+            }
+        );
+        // Ticks are driven by the tests; the write-behind is due on every tick
+        coalescer = new AssetTransformCoalescer(
+            assetRepository,
+            visualAssetRepository,
+            channelDirectoryService,
+            canvasWriteBehind,
+            eventPublisher,
+            60_000,
+            0
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void coalescesInterimTransformsIntoOnePatchAndWrite() {
+        assertThat(coalescer.submit("Caster", asset.getId(), move(10))).isTrue();
+        assertThat(coalescer.submit("caster", asset.getId(), move(20))).isTrue();
+        assertThat(coalescer.submit("caster", asset.getId(), move(30))).isTrue();
+
+        coalescer.tick();
+        coalescer.tick();
+
+        verify(eventPublisher, times(1)).publish(
+            eq("caster"),
+            argThat((Object event) -> {
+                AssetEvent assetEvent = (AssetEvent) event;
+                return assetEvent.getPatch().x() == 30.0 && assetEvent.getPatch().width() == null;
+            })
+        );
+        assertThat(merged).extracting(VisualAsset::getX).containsExactly(30.0);
+        verify(assetRepository, times(1)).findById(asset.getId());
+    }
+
+    @Test
+    void commitDropsPendingInterimState() {
+        coalescer.submit("caster", asset.getId(), move(10));
+
+        coalescer.commit("caster", asset.getId(), move(40));
+        coalescer.tick();
+
+        verify(channelDirectoryService).updateTransform(eq("caster"), eq(asset.getId()), any());
+        assertThat(merged).isEmpty();
+        verify(eventPublisher, never()).publish(anyString(), any());
+    }
+
+    @Test
+    void cancelDropsPendingStateOfDeletedAssets() {
+        ArgumentCaptor<Consumer<String>> deletion = ArgumentCaptor.captor();
+        verify(channelDirectoryService).onAssetDeleted(deletion.capture());
+        coalescer.submit("caster", asset.getId(), move(10));
+
+        deletion.getValue().accept(asset.getId());
+        coalescer.tick();
+
+        verify(eventPublisher, never()).publish(anyString(), any());
+        assertThat(merged).isEmpty();
+    }
+
+    @Test
+    void startsFromStateQueuedForWriting() {
+        VisualAsset queued = new VisualAsset(asset.getId(), "emote", 100, 100);
+        queued.setY(25);
+        when(canvasWriteBehind.pending(VisualAsset.class, asset.getId())).thenReturn(Optional.of(queued));
+        TransformRequest request = move(10);
+        request.setY(25.0);
+
+        coalescer.submit("caster", asset.getId(), request);
+        coalescer.tick();
+
+        // The queued y is the starting point, so only x changed
+        verify(eventPublisher).publish(
+            eq("caster"),
+            argThat((Object event) -> {
+                AssetEvent assetEvent = (AssetEvent) event;
+                return assetEvent.getPatch().x() == 10.0 && assetEvent.getPatch().y() == null;
+            })
+        );
+        assertThat(queued.getX()).isZero();
+    }
+
+    @Test
+    void rejectsAssetsFromOtherChannels() {
+        assertThat(coalescer.submit("someone-else", asset.getId(), move(10))).isFalse();
+    }
+
+    @Test
+    void commitsFromOtherChannelsKeepPendingState() {
+        coalescer.submit("caster", asset.getId(), move(10));
+
+        assertThat(coalescer.commit("someone-else", asset.getId(), move(40))).isEmpty();
+        coalescer.tick();
+
+        verify(channelDirectoryService, never()).updateTransform(anyString(), anyString(), any());
+        assertThat(merged).extracting(VisualAsset::getX).containsExactly(10.0);
+    }
+
+    private TransformRequest move(double x) {
+        TransformRequest request = new TransformRequest();
+        request.setX(x);
+        request.setY(0.0);
+        request.setWidth(100.0);
+        request.setHeight(100.0);
+        request.setRotation(0.0);
+        return request;
+    }
+}
@@ -0,0 +1,102 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.UploadJob;
+import dev.kruhlmann.imgfloat.service.media.MediaUpload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class AssetUploadServiceTest {
+
+    private final ChannelDirectoryService channelDirectoryService = mock(ChannelDirectoryService.class);
+    private final ChannelEventPublisher eventPublisher = mock(ChannelEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AssetUploadService service;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void limitsConcurrentUploadsPerChannel() throws Exception {
+        blockProcessing();
+        service = new AssetUploadService(channelDirectoryService, eventPublisher, meterRegistry, 2, 4, 1);
+
+        service.submit("caster", upload());
+
+        assertThatThrownBy(() -> service.submit("Caster", upload()))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting((e) -> ((ResponseStatusException) e).getStatusCode())
+            .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(service.submit("other", upload()).status()).isEqualTo(UploadJob.Status.QUEUED);
+    }
+
+    @Test
+    void rejectsUploadsWhenQueueIsFull() throws Exception {
+        blockProcessing();
+        service = new AssetUploadService(channelDirectoryService, eventPublisher, meterRegistry, 1, 1, 10);
+
+        service.submit("caster", upload());
+        verify(channelDirectoryService, timeout(1000)).createAsset(anyString(), any(MediaUpload.class));
+        service.submit("caster", upload());
+
+        assertThatThrownBy(() -> service.submit("caster", upload()))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting((e) -> ((ResponseStatusException) e).getStatusCode())
+            .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    void publishesFailureWhenUploadCannotBeProcessed() throws Exception {
+        when(channelDirectoryService.createAsset(anyString(), any(MediaUpload.class))).thenReturn(Optional.empty());
+        service = new AssetUploadService(channelDirectoryService, eventPublisher, meterRegistry, 1, 1, 1);
+
+        UploadJob job = service.submit("caster", upload());
+
+        verify(eventPublisher, timeout(1000)).publish(
+            eq("caster"),
+            argThat(
+                (Object event) ->
+                    event instanceof AssetEvent assetEvent && assetEvent.getType() == AssetEvent.Type.UPLOAD_FAILED
+            )
+        );
+        assertThat(service.findJob("caster", job.id()).orElseThrow().status()).isEqualTo(UploadJob.Status.FAILED);
+        assertThat(service.findJob("other", job.id())).isEmpty();
+    }
+
+    private void blockProcessing() throws Exception {
+        when(channelDirectoryService.createAsset(anyString(), any(MediaUpload.class))).thenAnswer((invocation) -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+    }
+
+    private MediaUpload upload() throws IOException {
+        Path file = Files.createTempFile("imgfloat-upload", ".png");
+        Files.write(file, new byte[] { 1 });
+        return new MediaUpload("image.png", "image/png", file, 1);
+    }
+}
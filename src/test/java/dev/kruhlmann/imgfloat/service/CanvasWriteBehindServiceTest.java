@@ -0,0 +1,136 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.model.VisualAsset;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class CanvasWriteBehindServiceTest {
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CanvasWriteBehindService service;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void groupsQueuedUpdatesIntoOneTransaction() {
+        service = create("async", 60_000);
+        VisualAsset first = new VisualAsset("a", "first", 10, 10);
+        VisualAsset replaced = new VisualAsset("a", "first", 20, 20);
+        VisualAsset second = new VisualAsset("b", "second", 10, 10);
+
+        service.save(first, "a");
+        service.save(second, "b");
+        service.save(replaced, "a");
+
+        assertThat(service.pending(VisualAsset.class, "a")).containsSame(replaced);
+        assertThat(service.overlay(VisualAsset.class, List.of(first, second), VisualAsset::getId)).containsExactly(
+            replaced,
+            second
+        );
+        service.shutdown();
+
+        verify(transactionManager, times(1)).commit(any());
+        verify(entityManager).merge(replaced);
+        verify(entityManager).merge(second);
+        verify(entityManager, never()).merge(first);
+        assertThat(meterRegistry.summary("imgfloat.canvas.write.batch").totalAmount()).isEqualTo(2.0);
+        assertThat(service.pending(VisualAsset.class, "a")).isEmpty();
+    }
+
+    @Test
+    void commitDurabilityWaitsUntilTheUpdateIsWritten() {
+        service = create("commit", 0);
+        VisualAsset asset = new VisualAsset("a", "asset", 10, 10);
+
+        service.save(asset, "a");
+
+        verify(entityManager).merge(asset);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void mergesChangesIntoQueuedStateInsteadOfReplacingIt() {
+        service = create("async", 60_000);
+        VisualAsset shown = new VisualAsset("a", "asset", 10, 10);
+        shown.setHidden(false);
+        service.save(shown, "a");
+
+        boolean merged = service.mergePending(
+            VisualAsset.class,
+            "a",
+            () -> Optional.of(new VisualAsset("a", "asset", 10, 10)),
+            (visual) -> visual.setX(30)
+        );
+        boolean loaded = service.mergePending(
+            VisualAsset.class,
+            "b",
+            () -> Optional.of(new VisualAsset("b", "other", 10, 10)),
+            (visual) -> visual.setX(40)
+        );
+
+        assertThat(merged).isTrue();
+        assertThat(loaded).isTrue();
+        assertThat(service.pending(VisualAsset.class, "a")).containsSame(shown);
+        assertThat(shown.getX()).isEqualTo(30);
+        assertThat(shown.isHidden()).isFalse();
+        assertThat(service.pending(VisualAsset.class, "b")).map(VisualAsset::getX).contains(40.0);
+        assertThat(service.mergePending(VisualAsset.class, "c", Optional::empty, (visual) -> {})).isFalse();
+    }
+
+    @Test
+    void discardedUpdatesAreNotWritten() {
+        service = create("async", 60_000);
+        service.save(new VisualAsset("a", "asset", 10, 10), "a");
+
+        service.discard(VisualAsset.class, "a");
+        service.shutdown();
+
+        verify(entityManager, never()).merge(any());
+    }
+
+    @Test
+    void retriesUpdatesIndividuallyWhenABatchFails() {
+        service = create("async", 60_000);
+        VisualAsset good = new VisualAsset("a", "good", 10, 10);
+        VisualAsset bad = new VisualAsset("b", "bad", 10, 10);
+        when(entityManager.merge(bad)).thenThrow(new IllegalStateException("constraint"));
+
+        service.save(good, "a");
+        service.save(bad, "b");
+        service.shutdown();
+
+        verify(entityManager, times(2)).merge(good);
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    private CanvasWriteBehindService create(String durability, long flushIntervalMillis) {
+        return new CanvasWriteBehindService(
+            entityManager,
+            new TransactionTemplate(transactionManager),
+            meterRegistry,
+            durability,
+            64,
+            flushIntervalMillis
+        );
+    }
+}
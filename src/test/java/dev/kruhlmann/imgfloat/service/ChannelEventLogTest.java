@@ -0,0 +1,97 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetView;
+import dev.kruhlmann.imgfloat.model.ChannelSync;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ChannelEventLogTest {
+
+    private final ChannelEventLog log = new ChannelEventLog(3, "30m");
+    private final List<AssetEvent> sent = new ArrayList<>();
+
+    @Test
+    void returnsEventsMissedSinceSequence() {
+        append("first");
+        String epoch = log.resume("caster", null, null, List::of).epoch();
+        append("second");
+        append("third");
+
+        ChannelSync sync = log.resume("Caster", epoch, 1L, this::failSnapshot);
+
+        assertThat(sync.seq()).isEqualTo(3);
+        assertThat(sync.assets()).isNull();
+        assertThat(sync.events()).extracting(AssetEvent::getAssetId).containsExactly("second", "third");
+        assertThat(sent).extracting(AssetEvent::getSeq).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void returnsSnapshotOnceMissedEventsAgedOut() {
+        append("first");
+        String epoch = log.resume("caster", null, null, List::of).epoch();
+        append("second");
+        append("third");
+        append("fourth");
+
+        assertThat(log.resume("caster", epoch, 1L, this::failSnapshot).events()).hasSize(3);
+        ChannelSync sync = log.resume("caster", epoch, 0L, List::of);
+        assertThat(sync.events()).isNull();
+        assertThat(sync.assets()).isEmpty();
+        assertThat(sync.seq()).isEqualTo(4);
+    }
+
+    @Test
+    void returnsSnapshotForUnknownEpochOrSequence() {
+        append("first");
+
+        assertThat(log.resume("caster", "previous-run", 1L, List::of).assets()).isEmpty();
+        String epoch = log.resume("caster", null, null, List::of).epoch();
+        assertThat(log.resume("caster", epoch, 5L, List::of).assets()).isEmpty();
+        assertThat(log.resume("caster", epoch, 1L, this::failSnapshot).events()).isEmpty();
+    }
+
+    @Test
+    void resumingUnknownChannelsDoesNotCreateLogs() {
+        ChannelSync first = log.resume("nobody", null, null, List::of);
+        ChannelSync second = log.resume("nobody", first.epoch(), 0L, List::of);
+
+        assertThat(first.seq()).isZero();
+        assertThat(second.assets()).isEmpty();
+        assertThat(second.epoch()).isNotEqualTo(first.epoch());
+    }
+
+    @Test
+    void dropsLogsOfIdleChannels() throws InterruptedException {
+        ChannelEventLog idleLog = new ChannelEventLog(3, "1ms");
+        idleLog.append("idle", AssetEvent.deleted("idle", "first"), sent::add);
+        String epoch = idleLog.resume("idle", null, null, List::of).epoch();
+        Thread.sleep(5);
+
+        idleLog.append("caster", AssetEvent.deleted("caster", "second"), sent::add);
+
+        ChannelSync sync = idleLog.resume("idle", epoch, 1L, List::of);
+        assertThat(sync.assets()).isEmpty();
+        assertThat(sync.seq()).isZero();
+        assertThat(sync.epoch()).isNotEqualTo(epoch);
+    }
+
+    @Test
+    void doesNotNumberPlaybackOrUploadEvents() {
+        log.append("caster", AssetEvent.play("caster", mock(AssetView.class), true), sent::add);
+
+        assertThat(sent).extracting(AssetEvent::getSeq).containsOnlyNulls();
+    }
+
+    private void append(String assetId) {
+        log.append("caster", AssetEvent.deleted("caster", assetId), sent::add);
+    }
+
+    private List<AssetView> failSnapshot() {
+        throw new AssertionError("Expected the missed events, not a snapshot");
+    }
+}
@@ -0,0 +1,94 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetEvent;
+import dev.kruhlmann.imgfloat.model.AssetPatch;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+class ChannelEventPublisherTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final ChannelEventPublisher publisher = new ChannelEventPublisher(
+        messagingTemplate,
+        new ObjectMapper(),
+        new ChannelEventLog(128, "30m")
+    );
+
+    @Test
+    void publishesSerializedEventToChannelTopic() {
+        AssetEvent event = AssetEvent.deleted("caster", "asset");
+        Message<byte[]> frame = publisher.frame(event);
+
+        publisher.publish("Caster", event);
+
+        verify(messagingTemplate).send(eq("/topic/channel/caster"), any());
+        assertThat(new String(frame.getPayload(), StandardCharsets.UTF_8)).isEqualTo(
+            "{\"type\":\"DELETED\",\"channel\":\"caster\",\"assetId\":\"asset\"}"
+        );
+        assertThat(frame.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(
+            MimeTypeUtils.APPLICATION_JSON
+        );
+        assertThat(coalesceKey(frame)).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void numbersAssetEventsPerChannel() {
+        publisher.publish("caster", AssetEvent.deleted("caster", "first"));
+        publisher.publish("Caster", AssetEvent.deleted("caster", "second"));
+        publisher.publish("other", AssetEvent.deleted("other", "third"));
+
+        ArgumentCaptor<Message<byte[]>> frames = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, times(3)).send(anyString(), frames.capture());
+        assertThat(frames.getAllValues())
+            .extracting((frame) -> new String(frame.getPayload(), StandardCharsets.UTF_8))
+            .satisfiesExactly(
+                (first) -> assertThat(first).contains("\"seq\":1"),
+                (second) -> assertThat(second).contains("\"seq\":2"),
+                (third) -> assertThat(third).contains("\"seq\":1")
+            );
+    }
+
+    @Test
+    void marksPatchesWithTheirAssetForCoalescing() {
+        AssetPatch patch = new AssetPatch(
+            "asset",
+            1.0,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null
+        );
+
+        Message<byte[]> frame = publisher.frame(AssetEvent.updated("caster", patch));
+
+        assertThat(coalesceKey(frame)).isEqualTo("asset");
+    }
+
+    private static String coalesceKey(Message<?> frame) {
+        return frame.getHeaders().get(AssetEvent.COALESCE_KEY_HEADER, String.class);
+    }
+}
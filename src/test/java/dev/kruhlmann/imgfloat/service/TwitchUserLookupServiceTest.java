@@ -0,0 +1,231 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.kruhlmann.imgfloat.model.TwitchUserProfile;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TwitchUserLookupServiceTest {
+
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger peakRequests = new AtomicInteger();
+    private final AtomicInteger moderatorPages = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile long moderatorsLatencyMillis;
+    private volatile long usersLatencyMillis;
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/helix/users", this::users);
+        server.createContext("/helix/moderation/moderators", this::moderators);
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void batchesLookupsAndServesRepeatsFromCache() {
+        TwitchUserLookupService service = service("1h");
+        List<String> logins = IntStream.range(0, 150).mapToObj((i) -> "user" + i).toList();
+
+        List<TwitchUserProfile> profiles = service.fetchProfiles(logins, "token", "client");
+        service.fetchProfiles(List.of("USER7", "user149"), "token", "client");
+
+        assertThat(profiles).hasSize(150);
+        assertThat(profiles.get(7).displayName()).isEqualTo("User7");
+        assertThat(requests).extracting(List::size).containsExactlyInAnyOrder(100, 50);
+    }
+
+    @Test
+    void concurrentLookupsShareOneRequest() throws Exception {
+        TwitchUserLookupService service = service("1h");
+        release = new CountDownLatch(1);
+
+        CompletableFuture<List<TwitchUserProfile>> first = CompletableFuture.supplyAsync(() ->
+            service.fetchProfiles(List.of("caster"), "token", "client")
+        );
+        while (requests.isEmpty()) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<List<TwitchUserProfile>> second = CompletableFuture.supplyAsync(() ->
+            service.fetchProfiles(List.of("caster"), "token", "client")
+        );
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).get(0).displayName()).isEqualTo("Caster");
+        assertThat(second.get(5, TimeUnit.SECONDS).get(0).displayName()).isEqualTo("Caster");
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void servesExpiredProfilesWhileRefreshing() throws Exception {
+        TwitchUserLookupService service = service("0s");
+        service.fetchProfiles(List.of("caster"), "token", "client");
+        release = new CountDownLatch(1);
+
+        List<TwitchUserProfile> stale = service.fetchProfiles(List.of("caster"), "token", "client");
+
+        assertThat(stale.get(0).displayName()).isEqualTo("Caster");
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (requests.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    void hydratesModeratorPagesWithinConcurrencyBudget() throws Exception {
+        TwitchUserLookupService service = service("1h", 2, "5s");
+        moderatorsLatencyMillis = 50;
+        usersLatencyMillis = 50;
+
+        List<TwitchUserProfile> moderators = service
+            .fetchModerators("Caster", List.of("mod0"), "token", "client")
+            .get(5, TimeUnit.SECONDS);
+
+        assertThat(moderators).hasSize(249);
+        assertThat(moderators).extracting(TwitchUserProfile::login).doesNotContain("mod0", "caster");
+        assertThat(moderators).extracting(TwitchUserProfile::displayName).contains("Mod1", "Mod249");
+        assertThat(requests.stream().mapToInt(List::size).max().orElse(0)).isLessThanOrEqualTo(100);
+        assertThat(peakRequests.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void returnsPartialModeratorsWhenTheDeadlineExpires() throws Exception {
+        TwitchUserLookupService service = service("1h", 4, "1s");
+        service.fetchProfiles(List.of("caster"), "token", "client");
+        usersLatencyMillis = 3_000;
+
+        long started = System.nanoTime();
+        List<TwitchUserProfile> moderators = service
+            .fetchModerators("caster", List.of(), "token", "client")
+            .get(5, TimeUnit.SECONDS);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(2_500);
+        assertThat(moderators).hasSize(250);
+        assertThat(moderators.get(0)).isEqualTo(new TwitchUserProfile("mod0", "mod0", null));
+    }
+
+    @Test
+    void stopsPagingModeratorsOnceTheDeadlineExpires() throws Exception {
+        TwitchUserLookupService service = service("1h", 4, "500ms");
+        service.fetchProfiles(List.of("caster"), "token", "client");
+        moderatorsLatencyMillis = 300;
+
+        List<TwitchUserProfile> moderators = service
+            .fetchModerators("caster", List.of(), "token", "client")
+            .get(5, TimeUnit.SECONDS);
+        Thread.sleep(1_000);
+
+        assertThat(moderators).hasSize(100);
+        assertThat(moderatorPages.get()).isEqualTo(2);
+    }
+
+    private TwitchUserLookupService service(String ttl) {
+        return service(ttl, 4, "5s");
+    }
+
+    private TwitchUserLookupService service(String ttl, int maxConcurrentRequests, String deadline) {
+        return new TwitchUserLookupService(
+            new ObjectMapper(),
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/helix",
+            ttl,
+            1000,
+            maxConcurrentRequests,
+            deadline
+        );
+    }
+
+    private void users(HttpExchange exchange) throws IOException {
+        List<String> logins = query(exchange, "login");
+        requests.add(logins);
+        await(usersLatencyMillis);
+        String data = logins
+            .stream()
+            .map((login) ->
+                "{\"id\":\"" +
+                login.hashCode() +
+                "\",\"login\":\"" +
+                login +
+                "\",\"display_name\":\"" +
+                Character.toUpperCase(login.charAt(0)) +
+                login.substring(1) +
+                "\"}"
+            )
+            .collect(Collectors.joining(","));
+        respond(exchange, "{\"data\":[" + data + "]}");
+    }
+
+    /** Serves 250 moderators, mod0 to mod249, in pages of 100. */
+    private void moderators(HttpExchange exchange) throws IOException {
+        List<String> after = query(exchange, "after");
+        moderatorPages.incrementAndGet();
+        await(moderatorsLatencyMillis);
+        int from = after.isEmpty() ? 0 : Integer.parseInt(after.get(0));
+        int to = Math.min(from + 100, 250);
+        String data = IntStream.range(from, to)
+            .mapToObj((i) -> "{\"user_id\":\"" + i + "\",\"user_login\":\"mod" + i + "\"}")
+            .collect(Collectors.joining(","));
+        String cursor = to < 250 ? "\"cursor\":\"" + to + "\"" : "";
+        respond(exchange, "{\"data\":[" + data + "],\"pagination\":{" + cursor + "}}");
+    }
+
+    private List<String> query(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        return Arrays.stream(query == null ? new String[0] : query.split("&"))
+            .filter((parameter) -> parameter.startsWith(name + "="))
+            .map((parameter) -> URLDecoder.decode(parameter.substring(name.length() + 1), StandardCharsets.UTF_8))
+            .toList();
+    }
+
+    private void await(long latencyMillis) {
+        peakRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+        try {
+            release.await(5, TimeUnit.SECONDS);
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, String json) throws IOException {
+        activeRequests.decrementAndGet();
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
@@ -0,0 +1,101 @@
+package dev.kruhlmann.imgfloat.service.media;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.jcodec.common.DemuxerTrackMeta;
+import org.jcodec.common.io.NIOUtils;
+import org.jcodec.containers.mp4.demuxer.MP4Demuxer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GifTranscoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final GifTranscoder transcoder = new GifTranscoder(2);
+
+    @AfterEach
+    void tearDown() {
+        transcoder.shutdown();
+    }
+
+    @Test
+    void encodesEachFrameOnceWithItsOwnDuration() throws IOException {
+        Path gif = writeGif(new int[] { 10, 20, 30 });
+        Path mp4 = tempDir.resolve("out.mp4");
+
+        BufferedImage cover = transcoder.transcode(gif, mp4).orElseThrow();
+
+        assertThat(cover.getWidth()).isEqualTo(34);
+        assertThat(cover.getHeight()).isEqualTo(26);
+        try (var channel = NIOUtils.readableChannel(mp4.toFile())) {
+            DemuxerTrackMeta meta = MP4Demuxer.createMP4Demuxer(channel).getVideoTracks().get(0).getMeta();
+            assertThat(meta.getTotalFrames()).isEqualTo(3);
+            assertThat(meta.getTotalDuration()).isCloseTo(0.6, within(0.01));
+        }
+    }
+
+    @Test
+    void failsForFilesThatAreNotGifs() throws IOException {
+        Path notGif = Files.write(tempDir.resolve("broken.gif"), new byte[] { 1, 2, 3 });
+
+        assertThatThrownBy(() -> transcoder.transcode(notGif, tempDir.resolve("out.mp4"))).isInstanceOf(
+            IOException.class
+        );
+    }
+
+    private Path writeGif(int[] delaysInHundredths) throws IOException {
+        Path file = tempDir.resolve("animated.gif");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            for (int i = 0; i < delaysInHundredths.length; i++) {
+                BufferedImage frame = new BufferedImage(33, 25, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = frame.createGraphics();
+                graphics.setColor(new Color(i * 80, 0, 0));
+                graphics.fillRect(0, 0, 33, 25);
+                graphics.dispose();
+                IIOMetadata metadata = frameMetadata(writer, frame, delaysInHundredths[i]);
+                writer.writeToSequence(new IIOImage(frame, null, metadata), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+
+    private IIOMetadata frameMetadata(ImageWriter writer, BufferedImage frame, int delayInHundredths)
+        throws IOException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delayInHundredths));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+}
@@ -3,6 +3,7 @@ package dev.kruhlmann.imgfloat.service.media;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockMultipartFile;
 
@@ -15,20 +16,24 @@ class MediaDetectionServiceTest {
         byte[] png = new byte[] { (byte) 0x89, 0x50, 0x4E, 0x47 };
         MockMultipartFile file = new MockMultipartFile("file", "image.png", "text/plain", png);
 
-        assertThat(service.detectAllowedMediaType(file, file.getBytes())).contains("image/png");
+        assertThat(detect(file)).contains("image/png");
     }
 
     @Test
     void fallsBackToFilenameAllowlist() throws IOException {
         MockMultipartFile file = new MockMultipartFile("file", "picture.png", null, new byte[] { 1, 2, 3 });
 
-        assertThat(service.detectAllowedMediaType(file, file.getBytes())).contains("image/png");
+        assertThat(detect(file)).contains("image/png");
     }
 
     @Test
     void rejectsUnknownTypes() throws IOException {
         MockMultipartFile file = new MockMultipartFile("file", "unknown.bin", null, new byte[] { 1, 2, 3 });
 
-        assertThat(service.detectAllowedMediaType(file, file.getBytes())).isEmpty();
+        assertThat(detect(file)).isEmpty();
+    }
+
+    private Optional<String> detect(MockMultipartFile file) throws IOException {
+        return service.detectAllowedMediaType(file.getContentType(), file.getOriginalFilename(), file.getBytes());
     }
 }
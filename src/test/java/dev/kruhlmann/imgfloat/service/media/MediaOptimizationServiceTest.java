@@ -3,29 +3,34 @@ package dev.kruhlmann.imgfloat.service.media;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import javax.imageio.ImageIO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class MediaOptimizationServiceTest {
 
+    @TempDir
+    Path tempDir;
+
     private MediaOptimizationService service;
 
     @BeforeEach
     void setUp() {
-        service = new MediaOptimizationService(new MediaPreviewService());
+        service = new MediaOptimizationService(new MediaPreviewService(), new GifTranscoder(2));
     }
 
     @Test
     void returnsNullForEmptyInput() throws IOException {
-        assertThat(service.optimizeAsset(new byte[0], "image/png")).isNull();
+        assertThat(service.optimizeAsset(write(new byte[0]), "image/png")).isNull();
     }
 
     @Test
     void optimizesPngImages() throws IOException {
-        byte[] png = samplePng();
+        Path png = samplePng();
 
         OptimizedAsset optimized = service.optimizeAsset(png, "image/png");
 
@@ -34,20 +39,36 @@ class MediaOptimizationServiceTest {
         assertThat(optimized.width()).isEqualTo(2);
         assertThat(optimized.height()).isEqualTo(2);
         assertThat(optimized.previewBytes()).isNull();
+        assertThat(optimized.file()).isNotEqualTo(png);
+        assertThat(ImageIO.read(optimized.file().toFile())).isNotNull();
+        Files.deleteIfExists(optimized.file());
+    }
+
+    @Test
+    void passesThroughMediaThatNeedsNoConversion() throws IOException {
+        Path audio = write(new byte[] { 1, 2, 3 });
+
+        OptimizedAsset optimized = service.optimizeAsset(audio, "audio/mpeg");
+
+        assertThat(optimized).isNotNull();
+        assertThat(optimized.file()).isEqualTo(audio);
     }
 
     @Test
     void returnsNullForUnsupportedBytes() throws IOException {
-        OptimizedAsset optimized = service.optimizeAsset(new byte[] { 1, 2, 3 }, "application/octet-stream");
+        OptimizedAsset optimized = service.optimizeAsset(write(new byte[] { 1, 2, 3 }), "application/octet-stream");
 
         assertThat(optimized).isNull();
     }
 
-    private byte[] samplePng() throws IOException {
+    private Path samplePng() throws IOException {
         BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "png", out);
-            return out.toByteArray();
-        }
+        Path file = tempDir.resolve("sample.png");
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        return Files.write(Files.createTempFile(tempDir, "upload", ".bin"), bytes);
     }
 }